@@ -0,0 +1,113 @@
+/*
+ * Copyright 2000-2024 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.hilla;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Holds back the start of a streamed response body, so that an error found
+ * while serializing a value that fits the buffer can still be reported with an
+ * error status instead of a truncated body.
+ * <p>
+ * The bytes are written to the target stream once the buffer is full or the
+ * value has been written completely, see {@link #finish()}. Closing this stream
+ * does not write nor close the target stream, as Jackson also closes it when
+ * serialization fails.
+ * <p>
+ * For internal use only. May be renamed or removed in a future release.
+ */
+final class DeferredCommitOutputStream extends OutputStream {
+
+    private final OutputStream target;
+    private final int bufferSize;
+    private ByteArrayOutputStream buffer;
+
+    /**
+     * Creates a stream holding back up to the given number of bytes.
+     *
+     * @param target
+     *            the stream to write to
+     * @param bufferSize
+     *            the maximum number of bytes held back
+     */
+    DeferredCommitOutputStream(OutputStream target, int bufferSize) {
+        this.target = target;
+        this.bufferSize = bufferSize;
+        this.buffer = new ByteArrayOutputStream(Math.min(bufferSize, 1024));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (buffer != null) {
+            if (buffer.size() + len <= bufferSize) {
+                buffer.write(b, off, len);
+                return;
+            }
+            writeBuffer();
+        }
+        target.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // Flushing the held back bytes would commit the response
+        if (buffer == null) {
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        // The target is closed by the container
+    }
+
+    /**
+     * Checks if any bytes have been written to the target stream, so that the
+     * response can no longer be replaced with an error response.
+     *
+     * @return {@code true} if bytes have been written to the target
+     */
+    boolean isCommitted() {
+        return buffer == null;
+    }
+
+    /**
+     * Writes the held back bytes to the target stream, once the value has been
+     * written completely.
+     *
+     * @throws IOException
+     *             if writing to the target fails
+     */
+    void finish() throws IOException {
+        if (buffer != null) {
+            writeBuffer();
+        }
+        target.flush();
+    }
+
+    private void writeBuffer() throws IOException {
+        ByteArrayOutputStream bytes = buffer;
+        buffer = null;
+        bytes.writeTo(target);
+    }
+}
@@ -16,26 +16,39 @@
 package com.vaadin.hilla;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.vaadin.flow.server.VaadinServletContext;
 import com.vaadin.flow.server.startup.ApplicationConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -52,13 +65,16 @@ import com.vaadin.hilla.EndpointInvocationException.EndpointAccessDeniedExceptio
 import com.vaadin.hilla.EndpointInvocationException.EndpointBadRequestException;
 import com.vaadin.hilla.EndpointInvocationException.EndpointInternalException;
 import com.vaadin.hilla.EndpointInvocationException.EndpointNotFoundException;
+import com.vaadin.hilla.EndpointMetrics.Outcome;
 import com.vaadin.hilla.auth.CsrfChecker;
 import com.vaadin.hilla.auth.EndpointAccessChecker;
 import com.vaadin.hilla.engine.EngineConfiguration;
 import com.vaadin.hilla.exception.EndpointException;
+import com.vaadin.hilla.exception.EndpointValidationException;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.context.WebApplicationContext;
 
 /**
@@ -86,11 +102,21 @@ public class EndpointController {
 
     static final String ENDPOINT_METHODS = "/{endpoint}/{method}";
 
+    static final String ENDPOINT_BATCH = "/batch";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     /**
      * A qualifier to override the request and response default json mapper.
      */
     public static final String ENDPOINT_MAPPER_FACTORY_BEAN_QUALIFIER = "endpointMapperFactory";
 
+    /**
+     * A qualifier to override the executor used to run endpoint methods in
+     * asynchronous mode.
+     */
+    public static final String ENDPOINT_EXECUTOR_BEAN_QUALIFIER = "endpointExecutor";
+
     private final ApplicationContext context;
 
     EndpointRegistry endpointRegistry;
@@ -99,6 +125,10 @@ public class EndpointController {
 
     private final EndpointInvoker endpointInvoker;
 
+    private int batchMaxCalls = 100;
+
+    private int batchMaxConcurrency = 8;
+
     /**
      * A constructor used to initialize the controller.
      *
@@ -120,6 +150,38 @@ public class EndpointController {
         this.endpointRegistry = endpointRegistry;
     }
 
+    /**
+     * Applies the batch limits from the endpoint properties.
+     *
+     * @param endpointProperties
+     *            the endpoint properties
+     */
+    @Autowired(required = false)
+    void configure(EndpointProperties endpointProperties) {
+        setBatchLimits(endpointProperties.getBatchMaxCalls(),
+                endpointProperties.getBatchMaxConcurrency());
+    }
+
+    /**
+     * Sets the limits of the batch requests, see
+     * {@link EndpointProperties#getBatchMaxCalls()} and
+     * {@link EndpointProperties#getBatchMaxConcurrency()}.
+     *
+     * @param maxCalls
+     *            the maximum number of calls in a batch
+     * @param maxConcurrency
+     *            the maximum number of calls of a batch running at the same
+     *            time
+     */
+    public void setBatchLimits(int maxCalls, int maxConcurrency) {
+        if (maxCalls < 1 || maxConcurrency < 1) {
+            throw new IllegalArgumentException(
+                    "The batch limits must be positive");
+        }
+        this.batchMaxCalls = maxCalls;
+        this.batchMaxConcurrency = maxConcurrency;
+    }
+
     /**
      * Initializes the controller by registering all endpoints found in the
      * OpenApi definition or, as a fallback, in the Spring context.
@@ -183,35 +245,450 @@ public class EndpointController {
         LOGGER.debug("Endpoint: {}, method: {}, request body: {}", endpointName,
                 methodName, body);
 
+        return doServeEndpoint(request, endpointName, methodName,
+                () -> endpointInvoker.invoke(endpointName, methodName, body,
+                        request.getUserPrincipal(), request::isUserInRole),
+                returnValue -> writeReturnValue(endpointName, methodName,
+                        returnValue));
+    }
+
+    /**
+     * Captures and processes the Vaadin endpoint requests, streaming the
+     * request and response bodies.
+     * <p>
+     * Works the same as
+     * {@link #serveEndpoint(String, String, ObjectNode, HttpServletRequest)},
+     * except that the method parameters are deserialized directly from the
+     * request input stream, and the return value is serialized directly to the
+     * response output stream, which lowers the memory needed for calls with
+     * large parameters or return values. Registered with the mapping of
+     * {@code serveEndpoint} instead of that method when
+     * {@link EndpointProperties#isStreaming()} is enabled.
+     * <p>
+     * If serializing the return value fails after a part of it has already been
+     * sent to the client, the response cannot be replaced with an error and is
+     * left incomplete.
+     *
+     * @param endpointName
+     *            the name of an endpoint to address the calls to, not case
+     *            sensitive
+     * @param methodName
+     *            the method name to execute on an endpoint, not case sensitive
+     * @param request
+     *            the current request which triggers the endpoint call
+     * @param response
+     *            the response the execution result is written to
+     * @return {@code null} if the execution result has been written to the
+     *         response, or an error message string
+     */
+    public ResponseEntity<String> serveEndpointStreaming(
+            @PathVariable("endpoint") String endpointName,
+            @PathVariable("method") String methodName,
+            HttpServletRequest request, HttpServletResponse response) {
+        LOGGER.debug("Endpoint: {}, method: {}, streamed request body",
+                endpointName, methodName);
+
+        return doServeEndpoint(request, endpointName, methodName,
+                () -> endpointInvoker.invokeStreaming(endpointName, methodName,
+                        request.getInputStream(), request.getUserPrincipal(),
+                        request::isUserInRole),
+                returnValue -> streamReturnValue(endpointName, methodName,
+                        returnValue, response));
+    }
+
+    /**
+     * Captures and processes the Vaadin endpoint requests asynchronously.
+     * <p>
+     * Works the same as
+     * {@link #serveEndpoint(String, String, ObjectNode, HttpServletRequest)},
+     * except that the endpoint method is executed on the endpoint executor and
+     * the response is completed through Servlet async processing, so that the
+     * container thread is released while the method runs. Registered with the
+     * mapping of {@code serveEndpoint} instead of that method when
+     * {@link EndpointProperties#isAsync()} is enabled.
+     *
+     * @param endpointName
+     *            the name of an endpoint to address the calls to, not case
+     *            sensitive
+     * @param methodName
+     *            the method name to execute on an endpoint, not case sensitive
+     * @param body
+     *            optional request body, that should be specified if the method
+     *            called has parameters
+     * @param request
+     *            the current request which triggers the endpoint call
+     * @return a future completed with the execution result as a JSON string or
+     *         an error message string
+     */
+    public CompletableFuture<ResponseEntity<String>> serveEndpointAsync(
+            @PathVariable("endpoint") String endpointName,
+            @PathVariable("method") String methodName,
+            @RequestBody(required = false) ObjectNode body,
+            HttpServletRequest request) {
+        LOGGER.debug("Endpoint: {}, method: {}, request body: {}", endpointName,
+                methodName, body);
+
+        return doServeEndpointAsync(request, endpointName, methodName,
+                () -> endpointInvoker.invokeAsync(endpointName, methodName,
+                        body, request.getUserPrincipal(),
+                        request::isUserInRole),
+                returnValue -> writeReturnValue(endpointName, methodName,
+                        returnValue));
+    }
+
+    /**
+     * Captures and processes the Vaadin endpoint requests asynchronously,
+     * streaming the request and response bodies.
+     * <p>
+     * Combines
+     * {@link #serveEndpointStreaming(String, String, HttpServletRequest, HttpServletResponse)}
+     * and
+     * {@link #serveEndpointAsync(String, String, ObjectNode, HttpServletRequest)}.
+     * Registered with the mapping of {@code serveEndpoint} instead of that
+     * method when both {@link EndpointProperties#isStreaming()} and
+     * {@link EndpointProperties#isAsync()} are enabled.
+     *
+     * @param endpointName
+     *            the name of an endpoint to address the calls to, not case
+     *            sensitive
+     * @param methodName
+     *            the method name to execute on an endpoint, not case sensitive
+     * @param request
+     *            the current request which triggers the endpoint call
+     * @param response
+     *            the response the execution result is written to
+     * @return a future completed with {@code null} if the execution result has
+     *         been written to the response, or with an error message string
+     */
+    public CompletableFuture<ResponseEntity<String>> serveEndpointStreamingAsync(
+            @PathVariable("endpoint") String endpointName,
+            @PathVariable("method") String methodName,
+            HttpServletRequest request, HttpServletResponse response) {
+        LOGGER.debug("Endpoint: {}, method: {}, streamed request body",
+                endpointName, methodName);
+
+        return doServeEndpointAsync(request, endpointName, methodName,
+                () -> endpointInvoker.invokeStreamingAsync(endpointName,
+                        methodName, request.getInputStream(),
+                        request.getUserPrincipal(), request::isUserInRole),
+                returnValue -> streamReturnValue(endpointName, methodName,
+                        returnValue, response));
+    }
+
+    /**
+     * Captures and processes a batch of Vaadin endpoint calls sent in a single
+     * request.
+     * <p>
+     * The request body is a JSON array with an object for each call, holding
+     * the {@code endpoint} and {@code method} names and the optional
+     * {@code params} object. Each call is handled the same way as in
+     * {@link #serveEndpoint(String, String, ObjectNode, HttpServletRequest)}.
+     * The response is a JSON array with an object for each call, in the same
+     * order, holding the HTTP {@code status} the call would have been answered
+     * with, and either its {@code result} or its {@code error}.
+     * <p>
+     * The calls run concurrently when the endpoint invoker has an executor (see
+     * {@link EndpointProperties#isAsync()}), up to
+     * {@link EndpointProperties#getBatchMaxConcurrency()} at a time, and one
+     * after the other otherwise. Batches of more than
+     * {@link EndpointProperties#getBatchMaxCalls()} calls are rejected.
+     *
+     * @param calls
+     *            the calls to make
+     * @param request
+     *            the current request which triggers the endpoint calls
+     * @return a future completed with the results of the calls as a JSON
+     *         string, or an error message string
+     */
+    @PostMapping(path = ENDPOINT_BATCH, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public CompletableFuture<ResponseEntity<String>> serveEndpointBatch(
+            @RequestBody ArrayNode calls, HttpServletRequest request) {
+        LOGGER.debug("Endpoint batch of {} calls", calls.size());
+
         if (!csrfChecker.validateCsrfTokenInRequest(request)) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+            return CompletableFuture
+                    .completedFuture(createAccessDeniedResponse());
+        }
+
+        if (calls.size() > batchMaxCalls) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                    .body(endpointInvoker.createResponseErrorObject(String
+                            .format("A batch can have at most %d calls, got %d",
+                                    batchMaxCalls, calls.size()))));
+        }
+
+        List<CompletableFuture<ResponseEntity<String>>> responses = new ArrayList<>(
+                calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            responses.add(new CompletableFuture<>());
+        }
+        // The calls are started on the threads completing the previous ones,
+        // where the service and the security context of the request are not
+        // available otherwise
+        VaadinService service = VaadinService.getCurrent();
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        AtomicInteger nextCall = new AtomicInteger();
+        for (int i = 0; i < Math.min(batchMaxConcurrency, calls.size()); i++) {
+            serveNextBatchedCall(calls, nextCall, responses, request, service,
+                    securityContext);
+        }
+        return CompletableFuture
+                .allOf(responses.toArray(CompletableFuture[]::new))
+                .thenApply(ignore -> createBatchResponse(responses));
+    }
+
+    private void serveNextBatchedCall(ArrayNode calls, AtomicInteger nextCall,
+            List<CompletableFuture<ResponseEntity<String>>> responses,
+            HttpServletRequest request, VaadinService service,
+            SecurityContext securityContext) {
+        int index = nextCall.getAndIncrement();
+        if (index >= calls.size()) {
+            return;
+        }
+        serveBatchedCall(calls.get(index), request, service, securityContext)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        responses.get(index).completeExceptionally(error);
+                    } else {
+                        responses.get(index).complete(response);
+                    }
+                    serveNextBatchedCall(calls, nextCall, responses, request,
+                            service, securityContext);
+                });
+    }
+
+    private CompletableFuture<ResponseEntity<String>> serveBatchedCall(
+            JsonNode call, HttpServletRequest request, VaadinService service,
+            SecurityContext securityContext) {
+        JsonNode endpoint = call.path("endpoint");
+        JsonNode method = call.path("method");
+        JsonNode params = call.path("params");
+        if (!endpoint.isTextual() || !method.isTextual()
+                || !(params.isMissingNode() || params.isNull()
+                        || params.isObject())) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest()
                     .body(endpointInvoker.createResponseErrorObject(
-                            EndpointAccessChecker.ACCESS_DENIED_MSG));
+                            "A batched call must have 'endpoint' and 'method' "
+                                    + "names, and an optional 'params' object")));
         }
 
+        String endpointName = endpoint.asText();
+        String methodName = method.asText();
+        ObjectNode body = params.isObject() ? (ObjectNode) params : null;
+        EndpointMetrics.MethodMetrics methodMetrics = endpointInvoker
+                .getMethodMetrics(endpointName, methodName);
+        long startTime = methodMetrics.start();
+        Map<Class<?>, CurrentInstance> previousInstances = CurrentInstance
+                .getInstances();
+        SecurityContext previousSecurityContext = SecurityContextHolder
+                .getContext();
+        CompletableFuture<Object> result;
         try {
-            // Put a VaadinRequest in the instances object so as the request is
-            // available in the endpoint method
-            VaadinServletService service = (VaadinServletService) VaadinService
-                    .getCurrent();
-            CurrentInstance.set(VaadinRequest.class,
-                    new VaadinServletRequest(request, service));
-            Object returnValue = endpointInvoker.invoke(endpointName,
-                    methodName, body, request.getUserPrincipal(),
-                    request::isUserInRole);
-            try {
-                return ResponseEntity
-                        .ok(endpointInvoker.writeValueAsString(returnValue));
-            } catch (JsonProcessingException e) {
-                String errorMessage = String.format(
-                        "Failed to serialize endpoint '%s' method '%s' response. "
-                                + "Double check method's return type or specify a custom mapper bean with qualifier '%s'",
-                        endpointName, methodName,
-                        EndpointController.ENDPOINT_MAPPER_FACTORY_BEAN_QUALIFIER);
-                LOGGER.error(errorMessage, e);
-                throw new EndpointInternalException(errorMessage);
+            setCurrentRequest(request, service);
+            // Also passed on to the executor thread by the endpoint invoker
+            SecurityContextHolder.setContext(securityContext);
+            result = endpointInvoker.invokeAsync(endpointName, methodName, body,
+                    request.getUserPrincipal(), request::isUserInRole);
+        } finally {
+            SecurityContextHolder.setContext(previousSecurityContext);
+            CurrentInstance.clearAll();
+            CurrentInstance.restoreInstances(previousInstances);
+        }
+        return result.handle((returnValue, error) -> handleEndpointCall(request,
+                service, methodMetrics, startTime,
+                () -> getAsyncResult(returnValue, error),
+                value -> writeReturnValue(endpointName, methodName, value)));
+    }
+
+    private ResponseEntity<String> createBatchResponse(
+            List<CompletableFuture<ResponseEntity<String>>> responses) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            generator.writeStartArray();
+            for (CompletableFuture<ResponseEntity<String>> future : responses) {
+                ResponseEntity<String> response = future.join();
+                boolean successful = response.getStatusCode().is2xxSuccessful();
+                generator.writeStartObject();
+                generator.writeNumberField("status",
+                        response.getStatusCode().value());
+                String body = response.getBody();
+                if (body != null) {
+                    generator.writeFieldName(successful ? "result" : "error");
+                    // Error objects are JSON, except for the plain message
+                    // used when the error object cannot be serialized
+                    if (successful || body.startsWith("{")) {
+                        generator.writeRawValue(body);
+                    } else {
+                        generator.writeString(body);
+                    }
+                }
+                generator.writeEndObject();
             }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ResponseEntity.ok(json.toString());
+    }
+
+    private ResponseEntity<String> writeReturnValue(String endpointName,
+            String methodName, Object returnValue)
+            throws EndpointInternalException {
+        try {
+            return ResponseEntity.ok(endpointInvoker
+                    .writeValueAsString(endpointName, methodName, returnValue));
+        } catch (JsonProcessingException e) {
+            throw createSerializationException(endpointName, methodName, e);
+        }
+    }
+
+    private ResponseEntity<String> streamReturnValue(String endpointName,
+            String methodName, Object returnValue, HttpServletResponse response)
+            throws EndpointInternalException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        DeferredCommitOutputStream out;
+        try {
+            out = new DeferredCommitOutputStream(response.getOutputStream(),
+                    response.getBufferSize());
+        } catch (IOException e) {
+            throw createSerializationException(endpointName, methodName, e);
+        }
+        try {
+            endpointInvoker.writeValue(endpointName, methodName, returnValue,
+                    out);
+            out.finish();
+        } catch (IOException e) {
+            failStreamedResponse(response, out,
+                    createSerializationException(endpointName, methodName, e));
+        } catch (EndpointInternalException e) {
+            failStreamedResponse(response, out, e);
+        }
+        // The response has been written, there is nothing left for Spring to
+        // handle
+        return null;
+    }
+
+    private static void failStreamedResponse(HttpServletResponse response,
+            DeferredCommitOutputStream out, EndpointInternalException e)
+            throws EndpointInternalException {
+        if (out.isCommitted()) {
+            // Too late for an error response. Failing the request makes the
+            // container abort the response, rather than end it as if the
+            // truncated body was complete.
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        response.resetBuffer();
+        throw e;
+    }
+
+    private EndpointInternalException createSerializationException(
+            String endpointName, String methodName, IOException e) {
+        String errorMessage = String.format(
+                "Failed to serialize endpoint '%s' method '%s' response. "
+                        + "Double check method's return type or specify a custom mapper bean with qualifier '%s'",
+                endpointName, methodName,
+                EndpointController.ENDPOINT_MAPPER_FACTORY_BEAN_QUALIFIER);
+        LOGGER.error(errorMessage, e);
+        return new EndpointInternalException(errorMessage);
+    }
+
+    private ResponseEntity<String> doServeEndpoint(HttpServletRequest request,
+            String endpointName, String methodName, EndpointCall endpointCall,
+            ReturnValueWriter returnValueWriter) {
+        EndpointMetrics.MethodMetrics methodMetrics = startCall(request,
+                endpointName, methodName);
+        long startTime = methodMetrics.start();
+        if (!csrfChecker.validateCsrfTokenInRequest(request)) {
+            methodMetrics.recordCall(Outcome.ACCESS_DENIED, startTime);
+            return createAccessDeniedResponse();
+        }
+        return handleEndpointCall(request, VaadinService.getCurrent(),
+                methodMetrics, startTime, endpointCall, returnValueWriter);
+    }
+
+    private CompletableFuture<ResponseEntity<String>> doServeEndpointAsync(
+            HttpServletRequest request, String endpointName, String methodName,
+            AsyncEndpointCall endpointCall,
+            ReturnValueWriter returnValueWriter) {
+        EndpointMetrics.MethodMetrics methodMetrics = startCall(request,
+                endpointName, methodName);
+        long startTime = methodMetrics.start();
+        if (!csrfChecker.validateCsrfTokenInRequest(request)) {
+            methodMetrics.recordCall(Outcome.ACCESS_DENIED, startTime);
+            return CompletableFuture
+                    .completedFuture(createAccessDeniedResponse());
+        }
+
+        // The result may complete on another thread, where the service is not
+        // available otherwise
+        VaadinService service = VaadinService.getCurrent();
+        CompletableFuture<Object> result;
+        try {
+            // The endpoint invoker passes the current instances on to the
+            // thread executing the endpoint method
+            setCurrentRequest(request, service);
+            result = endpointCall.invoke();
+        } catch (IOException e) {
+            result = CompletableFuture.failedFuture(e);
+        } finally {
+            CurrentInstance.set(VaadinRequest.class, null);
+        }
+        return result.handle((returnValue, error) -> handleEndpointCall(request,
+                service, methodMetrics, startTime,
+                () -> getAsyncResult(returnValue, error), returnValueWriter));
+    }
+
+    private EndpointMetrics.MethodMetrics startCall(HttpServletRequest request,
+            String endpointName, String methodName) {
+        EndpointMetrics.MethodMetrics methodMetrics = endpointInvoker
+                .getMethodMetrics(endpointName, methodName);
+        long contentLength = request.getContentLengthLong();
+        if (contentLength >= 0) {
+            methodMetrics.recordRequestSize(contentLength);
+        }
+        return methodMetrics;
+    }
+
+    private ResponseEntity<String> createAccessDeniedResponse() {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(endpointInvoker.createResponseErrorObject(
+                        EndpointAccessChecker.ACCESS_DENIED_MSG));
+    }
+
+    private void setCurrentRequest(HttpServletRequest request,
+            VaadinService service) {
+        // Put a VaadinRequest in the instances object so as the request is
+        // available in the endpoint method
+        if (service != null) {
+            CurrentInstance.set(VaadinService.class, service);
+        }
+        CurrentInstance.set(VaadinRequest.class, new VaadinServletRequest(
+                request, (VaadinServletService) service));
+    }
+
+    private ResponseEntity<String> handleEndpointCall(
+            HttpServletRequest request, VaadinService service,
+            EndpointMetrics.MethodMetrics methodMetrics, long startTime,
+            EndpointCall endpointCall, ReturnValueWriter returnValueWriter) {
+        // Asynchronous calls are completed on the thread completing the
+        // result, which must not keep the instances of this request
+        Map<Class<?>, CurrentInstance> previousInstances = CurrentInstance
+                .getInstances();
+        // Unexpected exceptions are handled by Spring as internal errors
+        Outcome outcome = Outcome.INTERNAL_ERROR;
+        try {
+            setCurrentRequest(request, service);
+            Object returnValue = endpointCall.invoke();
+            ResponseEntity<String> response = returnValueWriter
+                    .write(returnValue);
+            outcome = Outcome.OK;
+            return response;
         } catch (EndpointException e) {
+            outcome = e instanceof EndpointValidationException
+                    ? Outcome.VALIDATION_ERROR
+                    : Outcome.ENDPOINT_ERROR;
             try {
                 return ResponseEntity.badRequest().body(endpointInvoker
                         .createResponseErrorObject(e.getSerializationData()));
@@ -221,20 +698,50 @@ public class EndpointController {
                 return ResponseEntity.internalServerError().body(errorMessage);
             }
         } catch (EndpointNotFoundException e) {
+            // Not recorded, as the metrics of unknown methods are disabled
             return ResponseEntity.notFound().build();
         } catch (EndpointAccessDeniedException e) {
+            outcome = Outcome.ACCESS_DENIED;
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
                     endpointInvoker.createResponseErrorObject(e.getMessage()));
-        } catch (EndpointBadRequestException e) {
+        } catch (EndpointBadRequestException | IOException e) {
+            outcome = Outcome.BAD_REQUEST;
             return ResponseEntity.badRequest().body(
                     endpointInvoker.createResponseErrorObject(e.getMessage()));
         } catch (EndpointInternalException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
                     endpointInvoker.createResponseErrorObject(e.getMessage()));
         } finally {
-            CurrentInstance.set(VaadinRequest.class, null);
+            CurrentInstance.clearAll();
+            CurrentInstance.restoreInstances(previousInstances);
+            methodMetrics.recordCall(outcome, startTime);
         }
+    }
 
+    private static Object getAsyncResult(Object returnValue, Throwable error)
+            throws EndpointNotFoundException, EndpointAccessDeniedException,
+            EndpointBadRequestException, EndpointInternalException,
+            IOException {
+        Throwable cause = error instanceof CompletionException
+                && error.getCause() != null ? error.getCause() : error;
+        if (cause == null) {
+            return returnValue;
+        } else if (cause instanceof EndpointNotFoundException e) {
+            throw e;
+        } else if (cause instanceof EndpointAccessDeniedException e) {
+            throw e;
+        } else if (cause instanceof EndpointBadRequestException e) {
+            throw e;
+        } else if (cause instanceof EndpointInternalException e) {
+            throw e;
+        } else if (cause instanceof IOException e) {
+            throw e;
+        } else if (cause instanceof RuntimeException e) {
+            throw e;
+        } else if (cause instanceof Error e) {
+            throw e;
+        }
+        throw new IllegalStateException(cause);
     }
 
     /**
@@ -310,4 +817,34 @@ public class EndpointController {
 
         return null;
     }
+
+    /**
+     * A call to the endpoint invoker, made once the request has passed the CSRF
+     * check.
+     */
+    @FunctionalInterface
+    private interface EndpointCall {
+        Object invoke() throws EndpointNotFoundException,
+                EndpointAccessDeniedException, EndpointBadRequestException,
+                EndpointInternalException, IOException;
+    }
+
+    /**
+     * An asynchronous call to the endpoint invoker, made once the request has
+     * passed the CSRF check.
+     */
+    @FunctionalInterface
+    private interface AsyncEndpointCall {
+        CompletableFuture<Object> invoke() throws IOException;
+    }
+
+    /**
+     * Creates the successful response for the value returned from the endpoint
+     * method.
+     */
+    @FunctionalInterface
+    private interface ReturnValueWriter {
+        ResponseEntity<String> write(Object returnValue)
+                throws EndpointInternalException;
+    }
 }
@@ -17,7 +17,10 @@
 package com.vaadin.hilla;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -25,6 +28,7 @@ import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 import org.springframework.web.util.pattern.PathPatternParser;
@@ -111,6 +115,11 @@ public class EndpointControllerConfiguration {
      *            the servlet context
      * @param endpointRegistry
      *            the registry used to store endpoint information
+     * @param endpointExecutor
+     *            optional executor bean to override the default executor used
+     *            to run endpoint methods in asynchronous mode. Use
+     *            {@link EndpointController#ENDPOINT_EXECUTOR_BEAN_QUALIFIER}
+     *            qualifier to override the executor.
      *
      * @return the endpoint invoker
      */
@@ -118,9 +127,34 @@ public class EndpointControllerConfiguration {
     EndpointInvoker endpointInvoker(ApplicationContext applicationContext,
             @Autowired(required = false) @Qualifier(EndpointController.ENDPOINT_MAPPER_FACTORY_BEAN_QUALIFIER) JacksonObjectMapperFactory endpointMapperFactory,
             ExplicitNullableTypeChecker explicitNullableTypeChecker,
-            ServletContext servletContext, EndpointRegistry endpointRegistry) {
-        return new EndpointInvoker(applicationContext, endpointMapperFactory,
-                explicitNullableTypeChecker, servletContext, endpointRegistry);
+            ServletContext servletContext, EndpointRegistry endpointRegistry,
+            @Autowired(required = false) @Qualifier(EndpointController.ENDPOINT_EXECUTOR_BEAN_QUALIFIER) Executor endpointExecutor) {
+        if (endpointExecutor == null && endpointProperties.isAsync()) {
+            endpointExecutor = createDefaultEndpointExecutor();
+        }
+        var endpointInvoker = new EndpointInvoker(applicationContext,
+                endpointMapperFactory, explicitNullableTypeChecker,
+                servletContext, endpointRegistry, endpointExecutor,
+                endpointProperties.isSerializationNullCheck());
+        endpointInvoker.setReturnValueValidationSampleRate(
+                endpointProperties.getReturnValueValidationSampleRate());
+        endpointInvoker.setMetrics(EndpointMetrics.create(applicationContext));
+        return endpointInvoker;
+    }
+
+    private static Executor createDefaultEndpointExecutor() {
+        var executor = new SimpleAsyncTaskExecutor("hilla-endpoint-");
+        try {
+            executor.setVirtualThreads(true);
+        } catch (UnsupportedOperationException e) {
+            LoggerFactory.getLogger(EndpointControllerConfiguration.class).warn(
+                    "Virtual threads are not available, endpoint methods "
+                            + "will run on a new platform thread for each call. "
+                            + "Consider defining an executor bean qualified "
+                            + "with '{}'.",
+                    EndpointController.ENDPOINT_EXECUTOR_BEAN_QUALIFIER);
+        }
+        return executor;
     }
 
     /**
@@ -192,6 +226,7 @@ public class EndpointControllerConfiguration {
 
                         if (EndpointController.class
                                 .equals(method.getDeclaringClass())) {
+                            method = getEndpointHandlerMethod(method);
                             mapping = prependEndpointPrefixUrl(mapping);
                         }
 
@@ -202,6 +237,31 @@ public class EndpointControllerConfiguration {
         };
     }
 
+    /**
+     * Gets the {@link EndpointController} method that should handle the
+     * requests matching the mapping of the given method. Depending on
+     * {@link EndpointProperties#isStreaming()} and
+     * {@link EndpointProperties#isAsync()}, endpoint calls are handled by the
+     * method streaming the request and response bodies, by the method executing
+     * the endpoint asynchronously, or by the one doing both.
+     *
+     * @return the handler method to register
+     */
+    private Method getEndpointHandlerMethod(Method method) {
+        if (!"serveEndpoint".equals(method.getName())) {
+            return method;
+        }
+        String handlerName = method.getName()
+                + (endpointProperties.isStreaming() ? "Streaming" : "")
+                + (endpointProperties.isAsync() ? "Async" : "");
+        return Stream.of(EndpointController.class.getMethods())
+                .filter(handler -> handler.getName().equals(handlerName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException(
+                        String.format("Endpoint handler method '%s' not found",
+                                handlerName)));
+    }
+
     /**
      * Prepends the endpoint prefix URL from the Vaadin properties to the
      * {@code pattern} of a {@link RequestMappingInfo} object, and returns the
@@ -0,0 +1,552 @@
+/*
+ * Copyright 2000-2024 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.hilla;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Stream;
+
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.lang.NonNullApi;
+import org.springframework.util.ClassUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.googlecode.gentyref.GenericTypeReflector;
+
+import jakarta.validation.Validator;
+import jakarta.validation.metadata.MethodDescriptor;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Holds everything needed to invoke an endpoint method that can be resolved
+ * once, when the endpoint is registered, instead of on every call.
+ * <p>
+ * The method is called through a {@link MethodHandle} bound to the endpoint
+ * instance rather than through {@link Method#invoke(Object, Object...)}. The
+ * handle is held in a static final field of a hidden class generated for the
+ * plan, as the JIT only inlines the target of a constant handle.
+ * <p>
+ * The Jackson readers and writer depend on the mapper configured in
+ * {@link EndpointInvoker}, so they are bound lazily on the first invocation and
+ * then reused for as long as the same mapper is used. Likewise, whether the
+ * method has any Bean Validation constraints is looked up once from the
+ * validator used in {@link EndpointInvoker}, so that the validator is not
+ * called at all for unconstrained methods.
+ * <p>
+ * For internal use only. May be renamed or removed in a future release.
+ */
+final class EndpointInvocationPlan {
+
+    private static final String DISPATCHER_IMPL_NAME = "com/vaadin/hilla/EndpointInvocationPlan$DispatcherImpl";
+    private static final String OBJECT_NAME = "java/lang/Object";
+    private static final String METHOD_HANDLES_NAME = "java/lang/invoke/MethodHandles";
+    private static final String HANDLE_FIELD = "HANDLE";
+    private static final String HANDLE_DESCRIPTOR = "Ljava/lang/invoke/MethodHandle;";
+    private static final String INVOKE_DESCRIPTOR = "([Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final MethodHandle CHECK_ARGUMENT;
+
+    static {
+        try {
+            CHECK_ARGUMENT = MethodHandles.lookup().findStatic(
+                    EndpointInvocationPlan.class, "checkArgument",
+                    MethodType.methodType(Object.class, int.class, Class.class,
+                            boolean.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object endpointObject;
+    private final Class<?> endpointClass;
+    private final Method method;
+    private final Type[] parameterTypes;
+    private final Class<?>[] parameterClasses;
+    private final Dispatcher dispatcher;
+    private final boolean accessCheckedByMethod;
+    private final boolean nonNullApi;
+    private final boolean returnValueRequired;
+    private final Type asyncResultType;
+    private final boolean sharedSubscription;
+
+    private volatile MapperBinding mapperBinding;
+    private volatile ValidatorBinding validatorBinding;
+    private volatile MetricsBinding metricsBinding;
+
+    /**
+     * Creates the plan for the given endpoint method.
+     *
+     * @param endpointObject
+     *            the endpoint instance the method is invoked on
+     * @param endpointClass
+     *            the user class of the endpoint, i.e. not a proxy class
+     * @param method
+     *            the endpoint method
+     */
+    EndpointInvocationPlan(Object endpointObject, Class<?> endpointClass,
+            Method method) {
+        this.endpointObject = endpointObject;
+        this.endpointClass = endpointClass;
+        this.method = method;
+        this.parameterTypes = GenericTypeReflector
+                .getExactParameterTypes(method, endpointClass);
+        // Methods inherited from an @EndpointExposed class are checked using
+        // the annotations of the endpoint class instead
+        this.accessCheckedByMethod = method.getDeclaringClass()
+                .equals(endpointClass);
+        this.nonNullApi = isNonNullApi(method.getDeclaringClass().getPackage());
+        this.returnValueRequired = ExplicitNullableTypeChecker
+                .isRequired(method, nonNullApi);
+        this.parameterClasses = method.getParameterTypes();
+        this.dispatcher = createDispatcher(
+                createMethodHandle(endpointObject, method));
+        this.asyncResultType = getAsyncResultType(
+                GenericTypeReflector.getExactReturnType(method, endpointClass));
+        this.sharedSubscription = method.getReturnType() == Flux.class
+                && method.isAnnotationPresent(SharedSubscription.class);
+    }
+
+    Object getEndpointObject() {
+        return endpointObject;
+    }
+
+    Class<?> getEndpointClass() {
+        return endpointClass;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the exact parameter types of the method, with the type variables
+     * resolved against the endpoint class.
+     *
+     * @return the parameter types
+     */
+    Type[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * Checks whether access is determined by the method annotations, or by the
+     * endpoint class annotations for methods inherited from a parent class.
+     *
+     * @return {@code true} if the method should be used for the access check,
+     *         {@code false} if the endpoint class should be used
+     */
+    boolean isAccessCheckedByMethod() {
+        return accessCheckedByMethod;
+    }
+
+    /**
+     * Checks if the package declaring the method is annotated with
+     * {@link NonNullApi}, meaning that values are required by context.
+     *
+     * @return {@code true} if the declaring package is non-null by default
+     */
+    boolean isNonNullApi() {
+        return nonNullApi;
+    }
+
+    /**
+     * Checks if the value returned from the method is required, i.e. not
+     * nullable, according to the method annotations and
+     * {@link #isNonNullApi()}.
+     *
+     * @return {@code true} if the return value is required
+     */
+    boolean isReturnValueRequired() {
+        return returnValueRequired;
+    }
+
+    /**
+     * Checks if the method returns its result asynchronously, as a
+     * {@link CompletionStage} or a {@link Mono}.
+     *
+     * @return {@code true} if the method result is asynchronous
+     */
+    boolean isAsync() {
+        return asyncResultType != null;
+    }
+
+    /**
+     * Checks if the method returns a {@link Flux} shared by the identical push
+     * subscriptions, as marked with {@link SharedSubscription}.
+     *
+     * @return {@code true} if the subscriptions to the method are shared
+     */
+    boolean isSharedSubscription() {
+        return sharedSubscription;
+    }
+
+    /**
+     * Gets the type of the value an asynchronous method completes with.
+     *
+     * @return the result type, or {@code null} if the method is not
+     *         asynchronous
+     */
+    Type getAsyncResultType() {
+        return asyncResultType;
+    }
+
+    /**
+     * Invokes the endpoint method with the given arguments, after checking that
+     * they can be passed to the method, performing the same checks as
+     * reflective invocation.
+     *
+     * @param arguments
+     *            the arguments, in declaration order
+     * @return the value returned from the method, or {@code null} for void
+     *         methods
+     * @throws ArgumentMismatchException
+     *             if the arguments do not match the method parameters
+     * @throws Throwable
+     *             anything thrown by the endpoint method
+     */
+    Object invoke(Object[] arguments) throws Throwable {
+        if (arguments.length != parameterClasses.length) {
+            throw new ArgumentMismatchException(String.format(
+                    "Wrong number of arguments: expected %d, got %d",
+                    parameterClasses.length, arguments.length));
+        }
+        return dispatcher.invoke(arguments);
+    }
+
+    /**
+     * Gets the readers for the method parameters, in declaration order.
+     *
+     * @param mapper
+     *            the mapper used to deserialize the parameters
+     * @return the parameter readers
+     */
+    ObjectReader[] getParameterReaders(ObjectMapper mapper) {
+        return bind(mapper).parameterReaders();
+    }
+
+    /**
+     * Gets the writer for the values returned from the method.
+     *
+     * @param mapper
+     *            the mapper used to serialize the return value
+     * @return the return value writer
+     */
+    ObjectWriter getReturnValueWriter(ObjectMapper mapper) {
+        return bind(mapper).returnValueWriter();
+    }
+
+    /**
+     * Checks if the method parameters need to be validated, i.e. if they have
+     * constraints or are marked for cascaded validation.
+     *
+     * @param validator
+     *            the validator used to validate the parameters
+     * @return {@code true} if the parameters need to be validated
+     */
+    boolean hasParameterConstraints(Validator validator) {
+        return bind(validator).parametersConstrained();
+    }
+
+    /**
+     * Checks if the value returned from the method needs to be validated, i.e.
+     * if it has constraints or is marked for cascaded validation.
+     *
+     * @param validator
+     *            the validator used to validate the return value
+     * @return {@code true} if the return value needs to be validated
+     */
+    boolean hasReturnValueConstraints(Validator validator) {
+        return bind(validator).returnValueConstrained();
+    }
+
+    /**
+     * Gets the metrics of the method, tagged with the registered endpoint and
+     * method names.
+     *
+     * @param metrics
+     *            the metrics used in the invoker
+     * @return the metrics of the method
+     */
+    EndpointMetrics.MethodMetrics getMethodMetrics(EndpointMetrics metrics) {
+        var binding = metricsBinding;
+        if (binding == null || binding.metrics() != metrics) {
+            binding = new MetricsBinding(metrics, metrics.forMethod(
+                    EndpointRegistry.getEndpointNameForClass(endpointClass),
+                    method.getName()));
+            metricsBinding = binding;
+        }
+        return binding.methodMetrics();
+    }
+
+    private ValidatorBinding bind(Validator validator) {
+        var binding = validatorBinding;
+        if (binding == null || binding.validator() != validator) {
+            binding = createValidatorBinding(validator);
+            validatorBinding = binding;
+        }
+        return binding;
+    }
+
+    /**
+     * Checks if the parameter at the given index is marked for cascaded
+     * validation, so that the bean passed as the parameter is validated
+     * together with the method parameters.
+     *
+     * @param validator
+     *            the validator used to validate the parameters
+     * @param index
+     *            the index of the parameter
+     * @return {@code true} if the parameter is validated in cascade
+     */
+    boolean isParameterCascaded(Validator validator, int index) {
+        return bind(validator).cascadedParameters()[index];
+    }
+
+    private ValidatorBinding createValidatorBinding(Validator validator) {
+        boolean[] cascadedParameters = new boolean[parameterClasses.length];
+        MethodDescriptor descriptor;
+        try {
+            descriptor = validator.getConstraintsForClass(endpointClass)
+                    .getConstraintsForMethod(method.getName(),
+                            parameterClasses);
+        } catch (RuntimeException e) {
+            // Let the validator report invalid constraint metadata on the call
+            return new ValidatorBinding(validator, true, true,
+                    cascadedParameters);
+        }
+        if (descriptor == null) {
+            return new ValidatorBinding(validator, false, false,
+                    cascadedParameters);
+        }
+        descriptor.getParameterDescriptors().forEach(parameter -> {
+            cascadedParameters[parameter.getIndex()] = parameter.isCascaded();
+        });
+        return new ValidatorBinding(validator,
+                descriptor.hasConstrainedParameters(),
+                descriptor.hasConstrainedReturnValue(), cascadedParameters);
+    }
+
+    private MapperBinding bind(ObjectMapper mapper) {
+        var binding = mapperBinding;
+        if (binding == null || binding.mapper() != mapper) {
+            binding = new MapperBinding(mapper, createReaders(mapper),
+                    createWriter(mapper));
+            mapperBinding = binding;
+        }
+        return binding;
+    }
+
+    private ObjectReader[] createReaders(ObjectMapper mapper) {
+        var typeFactory = mapper.getTypeFactory();
+        return Stream.of(parameterTypes)
+                .map(type -> mapper.readerFor(typeFactory.constructType(type)))
+                .toArray(ObjectReader[]::new);
+    }
+
+    private ObjectWriter createWriter(ObjectMapper mapper) {
+        // Only a final class is guaranteed to be the runtime type of the
+        // returned value, otherwise subclass properties would be lost
+        var returnType = isAsync() ? asyncResultType
+                : method.getGenericReturnType();
+        if (returnType instanceof Class<?> returnClass
+                && returnClass != void.class && (returnClass.isPrimitive()
+                        || Modifier.isFinal(returnClass.getModifiers()))) {
+            return mapper.writerFor(returnClass);
+        }
+        return mapper.writer();
+    }
+
+    private static MethodHandle createMethodHandle(Object endpointObject,
+            Method method) {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(String.format(
+                    "Unable to access endpoint method '%s'", method), e);
+        }
+        if (!Modifier.isStatic(method.getModifiers())) {
+            handle = handle.bindTo(endpointObject);
+        }
+        int parameterCount = method.getParameterCount();
+        handle = handle.asType(MethodType.genericMethodType(parameterCount));
+        // The arguments are checked in the handle, where the parameter types
+        // are constants
+        Class<?>[] parameterClasses = method.getParameterTypes();
+        MethodHandle[] checks = new MethodHandle[parameterCount];
+        for (int i = 0; i < parameterCount; i++) {
+            checks[i] = MethodHandles.insertArguments(CHECK_ARGUMENT, 0, i,
+                    ClassUtils.resolvePrimitiveIfNecessary(parameterClasses[i]),
+                    parameterClasses[i].isPrimitive());
+        }
+        return MethodHandles.filterArguments(handle, 0, checks)
+                .asSpreader(Object[].class, parameterCount);
+    }
+
+    private static Object checkArgument(int index, Class<?> type,
+            boolean primitive, Object argument) {
+        if (argument == null ? primitive : !type.isInstance(argument)) {
+            throw new ArgumentMismatchException(
+                    String.format("Argument type mismatch at index %d", index));
+        }
+        return argument;
+    }
+
+    private static Dispatcher createDispatcher(MethodHandle handle) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17,
+                Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+                DISPATCHER_IMPL_NAME, null, OBJECT_NAME,
+                new String[] { org.springframework.asm.Type
+                        .getInternalName(Dispatcher.class) });
+        writer.visitField(
+                Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+                HANDLE_FIELD, HANDLE_DESCRIPTOR, null, null).visitEnd();
+
+        // The handle is passed as the class data of the hidden class
+        MethodVisitor init = writer.visitMethod(Opcodes.ACC_STATIC, "<clinit>",
+                "()V", null, null);
+        init.visitCode();
+        init.visitMethodInsn(Opcodes.INVOKESTATIC, METHOD_HANDLES_NAME,
+                "lookup",
+                org.springframework.asm.Type
+                        .getMethodDescriptor(org.springframework.asm.Type
+                                .getType(MethodHandles.Lookup.class)),
+                false);
+        init.visitLdcInsn("_");
+        init.visitLdcInsn(
+                org.springframework.asm.Type.getType(MethodHandle.class));
+        init.visitMethodInsn(Opcodes.INVOKESTATIC, METHOD_HANDLES_NAME,
+                "classData",
+                org.springframework.asm.Type.getMethodDescriptor(
+                        org.springframework.asm.Type.getType(Object.class),
+                        org.springframework.asm.Type
+                                .getType(MethodHandles.Lookup.class),
+                        org.springframework.asm.Type.getType(String.class),
+                        org.springframework.asm.Type.getType(Class.class)),
+                false);
+        init.visitTypeInsn(Opcodes.CHECKCAST, org.springframework.asm.Type
+                .getInternalName(MethodHandle.class));
+        init.visitFieldInsn(Opcodes.PUTSTATIC, DISPATCHER_IMPL_NAME,
+                HANDLE_FIELD, HANDLE_DESCRIPTOR);
+        init.visitInsn(Opcodes.RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor constructor = writer.visitMethod(0, "<init>", "()V", null,
+                null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT_NAME,
+                "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor invoke = writer.visitMethod(Opcodes.ACC_PUBLIC, "invoke",
+                INVOKE_DESCRIPTOR, null,
+                new String[] { org.springframework.asm.Type
+                        .getInternalName(Throwable.class) });
+        invoke.visitCode();
+        invoke.visitFieldInsn(Opcodes.GETSTATIC, DISPATCHER_IMPL_NAME,
+                HANDLE_FIELD, HANDLE_DESCRIPTOR);
+        invoke.visitVarInsn(Opcodes.ALOAD, 1);
+        invoke.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                org.springframework.asm.Type
+                        .getInternalName(MethodHandle.class),
+                "invokeExact", INVOKE_DESCRIPTOR, false);
+        invoke.visitInsn(Opcodes.ARETURN);
+        invoke.visitMaxs(0, 0);
+        invoke.visitEnd();
+        writer.visitEnd();
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClassWithClassData(writer.toByteArray(),
+                            handle, true);
+            return (Dispatcher) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException(
+                    "Unable to create the dispatcher of an endpoint method", e);
+        }
+    }
+
+    private static Type getAsyncResultType(Type returnType) {
+        Class<?> returnClass = GenericTypeReflector.erase(returnType);
+        TypeVariable<? extends Class<?>> resultVariable;
+        if (CompletionStage.class.isAssignableFrom(returnClass)) {
+            resultVariable = CompletionStage.class.getTypeParameters()[0];
+        } else if (Mono.class.isAssignableFrom(returnClass)) {
+            resultVariable = Mono.class.getTypeParameters()[0];
+        } else {
+            return null;
+        }
+        Type resultType = GenericTypeReflector.getTypeParameter(returnType,
+                resultVariable);
+        return resultType != null ? resultType : Object.class;
+    }
+
+    private static boolean isNonNullApi(Package pkg) {
+        return Stream.of(pkg.getAnnotations())
+                .anyMatch(ann -> ann.annotationType().getSimpleName()
+                        .equals(NonNullApi.class.getSimpleName()));
+    }
+
+    /**
+     * Thrown when the arguments passed to a plan do not match the method
+     * parameters, as opposed to an {@link IllegalArgumentException} thrown by
+     * the endpoint method itself.
+     */
+    static final class ArgumentMismatchException
+            extends IllegalArgumentException {
+        ArgumentMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Invokes the method handle of a plan, implemented by a hidden class per
+     * plan.
+     */
+    interface Dispatcher {
+        Object invoke(Object[] arguments) throws Throwable;
+    }
+
+    private record MapperBinding(ObjectMapper mapper,
+            ObjectReader[] parameterReaders, ObjectWriter returnValueWriter) {
+    }
+
+    private record ValidatorBinding(Validator validator,
+            boolean parametersConstrained, boolean returnValueConstrained,
+            boolean[] cascadedParameters) {
+    }
+
+    private record MetricsBinding(EndpointMetrics metrics,
+            EndpointMetrics.MethodMetrics methodMetrics) {
+    }
+}
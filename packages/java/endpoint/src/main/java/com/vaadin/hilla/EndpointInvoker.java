@@ -15,17 +15,24 @@
  */
 package com.vaadin.hilla;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.googlecode.gentyref.GenericTypeReflector;
+import com.vaadin.flow.internal.CurrentInstance;
 import com.vaadin.flow.server.VaadinServletContext;
 import com.vaadin.hilla.EndpointInvocationException.EndpointAccessDeniedException;
 import com.vaadin.hilla.EndpointInvocationException.EndpointBadRequestException;
 import com.vaadin.hilla.EndpointInvocationException.EndpointInternalException;
 import com.vaadin.hilla.EndpointInvocationException.EndpointNotFoundException;
+import com.vaadin.hilla.EndpointMetrics.Stage;
 import com.vaadin.hilla.EndpointRegistry.VaadinEndpointData;
+import com.vaadin.hilla.ExplicitNullableSerializerModifier.NullabilityViolationException;
 import com.vaadin.hilla.auth.EndpointAccessChecker;
 import com.vaadin.hilla.endpointransfermapper.EndpointTransferMapper;
 import com.vaadin.hilla.exception.EndpointException;
@@ -34,18 +41,22 @@ import com.vaadin.hilla.exception.EndpointValidationException.ValidationErrorDat
 import com.vaadin.hilla.parser.jackson.JacksonObjectMapperFactory;
 import jakarta.servlet.ServletContext;
 import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ElementKind;
+import jakarta.validation.Path;
 import jakarta.validation.Validation;
 import jakarta.validation.Validator;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
-import org.springframework.lang.NonNullApi;
-import org.springframework.util.ClassUtils;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.security.Principal;
@@ -53,11 +64,17 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -80,6 +97,22 @@ public class EndpointInvoker {
     private final ExplicitNullableTypeChecker explicitNullableTypeChecker;
     private final ServletContext servletContext;
     private final Validator validator;
+    private final Executor executor;
+    private final boolean serializationNullCheck;
+    private final ClassValue<Boolean> constrainedBeanTypes = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return validator.getConstraintsForClass(type)
+                        .isBeanConstrained();
+            } catch (RuntimeException e) {
+                // Let the validator report invalid constraint metadata
+                return true;
+            }
+        }
+    };
+    private double returnValueValidationSampleRate = 1;
+    private EndpointMetrics metrics = EndpointMetrics.DISABLED;
 
     /**
      * Creates an instance of this bean.
@@ -104,6 +137,83 @@ public class EndpointInvoker {
             JacksonObjectMapperFactory endpointMapperFactory,
             ExplicitNullableTypeChecker explicitNullableTypeChecker,
             ServletContext servletContext, EndpointRegistry endpointRegistry) {
+        this(applicationContext, endpointMapperFactory,
+                explicitNullableTypeChecker, servletContext, endpointRegistry,
+                null);
+    }
+
+    /**
+     * Creates an instance of this bean that executes the endpoint methods
+     * called through the asynchronous invoke methods on the given executor.
+     *
+     * @param applicationContext
+     *            The Spring application context
+     * @param endpointMapperFactory
+     *            optional factory bean to override the default
+     *            {@link JacksonObjectMapperFactory} that is used for
+     *            serializing and deserializing request and response bodies Use
+     *            {@link EndpointController#ENDPOINT_MAPPER_FACTORY_BEAN_QUALIFIER}
+     *            qualifier to override the mapper.
+     * @param explicitNullableTypeChecker
+     *            the method parameter and return value type checker to verify
+     *            that null values are explicit
+     * @param servletContext
+     *            the servlet context
+     * @param endpointRegistry
+     *            the registry used to store endpoint information
+     * @param executor
+     *            the executor for asynchronous invocations, or {@code null} to
+     *            execute them on the calling thread
+     */
+    public EndpointInvoker(ApplicationContext applicationContext,
+            JacksonObjectMapperFactory endpointMapperFactory,
+            ExplicitNullableTypeChecker explicitNullableTypeChecker,
+            ServletContext servletContext, EndpointRegistry endpointRegistry,
+            Executor executor) {
+        this(applicationContext, endpointMapperFactory,
+                explicitNullableTypeChecker, servletContext, endpointRegistry,
+                executor, false);
+    }
+
+    /**
+     * Creates an instance of this bean that executes the endpoint methods
+     * called through the asynchronous invoke methods on the given executor, and
+     * optionally checks the nullability of the returned values while they are
+     * serialized.
+     * <p>
+     * When the values are checked while serialized, the invoke methods only
+     * check that the returned value itself is not {@code null}, and the rest of
+     * the value is checked when written with
+     * {@link #writeValueAsString(String, String, Object)} or
+     * {@link #writeValue(String, String, Object, OutputStream)}.
+     *
+     * @param applicationContext
+     *            The Spring application context
+     * @param endpointMapperFactory
+     *            optional factory bean to override the default
+     *            {@link JacksonObjectMapperFactory} that is used for
+     *            serializing and deserializing request and response bodies Use
+     *            {@link EndpointController#ENDPOINT_MAPPER_FACTORY_BEAN_QUALIFIER}
+     *            qualifier to override the mapper.
+     * @param explicitNullableTypeChecker
+     *            the method parameter and return value type checker to verify
+     *            that null values are explicit
+     * @param servletContext
+     *            the servlet context
+     * @param endpointRegistry
+     *            the registry used to store endpoint information
+     * @param executor
+     *            the executor for asynchronous invocations, or {@code null} to
+     *            execute them on the calling thread
+     * @param serializationNullCheck
+     *            {@code true} to check the nullability of the returned values
+     *            while serializing them, {@code false} to check them before
+     */
+    public EndpointInvoker(ApplicationContext applicationContext,
+            JacksonObjectMapperFactory endpointMapperFactory,
+            ExplicitNullableTypeChecker explicitNullableTypeChecker,
+            ServletContext servletContext, EndpointRegistry endpointRegistry,
+            Executor executor, boolean serializationNullCheck) {
         this.applicationContext = applicationContext;
         this.servletContext = servletContext;
         this.endpointMapper = endpointMapperFactory != null
@@ -113,8 +223,19 @@ public class EndpointInvoker {
             this.endpointMapper
                     .registerModule(endpointTransferMapper.getJacksonModule());
         }
+        this.serializationNullCheck = serializationNullCheck
+                && this.endpointMapper != null;
+        if (this.serializationNullCheck) {
+            this.endpointMapper
+                    .registerModule(new SimpleModule().setSerializerModifier(
+                            new ExplicitNullableSerializerModifier()));
+        }
         this.explicitNullableTypeChecker = explicitNullableTypeChecker;
         this.endpointRegistry = endpointRegistry;
+        // The security context of the caller is made available to the
+        // endpoint method on the executor thread
+        this.executor = executor == null ? null
+                : new DelegatingSecurityContextExecutor(executor);
 
         Validator validator = null;
         try {
@@ -128,6 +249,56 @@ public class EndpointInvoker {
                 : validator;
     }
 
+    /**
+     * Sets the share of the endpoint method calls whose return value is
+     * validated with Bean Validation. By default, all return values are
+     * validated.
+     * <p>
+     * Parameters are always validated, and methods without any return value
+     * constraints are never validated regardless of the rate.
+     *
+     * @param sampleRate
+     *            the share of the calls to validate, from {@code 0} (none) to
+     *            {@code 1} (all)
+     */
+    void setReturnValueValidationSampleRate(double sampleRate) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException(String.format(
+                    "Return value validation sample rate must be between 0 and 1, got %s",
+                    sampleRate));
+        }
+        this.returnValueValidationSampleRate = sampleRate;
+    }
+
+    /**
+     * Sets the metrics recorded for the endpoint calls.
+     *
+     * @param metrics
+     *            the metrics
+     */
+    void setMetrics(EndpointMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the metrics of the given endpoint method, for recording the parts of
+     * the call outside this invoker.
+     *
+     * @param endpointName
+     *            the name of the endpoint, not case sensitive
+     * @param methodName
+     *            the name of the method, not case sensitive
+     * @return the metrics of the method, or metrics that record nothing if the
+     *         method is not found
+     */
+    EndpointMetrics.MethodMetrics getMethodMetrics(String endpointName,
+            String methodName) {
+        EndpointInvocationPlan plan = getInvocationPlan(endpointName,
+                methodName);
+        return plan == null ? EndpointMetrics.MethodMetrics.DISABLED
+                : plan.getMethodMetrics(metrics);
+    }
+
     private static ObjectMapper createDefaultEndpointMapper(
             ApplicationContext applicationContext) {
         var endpointMapper = new JacksonObjectMapperFactory.Json().build();
@@ -150,13 +321,106 @@ public class EndpointInvoker {
      *            the name of the method
      */
     public Class<?> getReturnType(String endpointName, String methodName) {
-        Method method = getMethod(endpointName, methodName);
-        if (method == null) {
+        EndpointInvocationPlan plan = getInvocationPlan(endpointName,
+                methodName);
+        if (plan == null) {
             getLogger().debug("Method '{}' not found in endpoint '{}'",
                     methodName, endpointName);
             return null;
         }
-        return method.getReturnType();
+        return plan.getMethod().getReturnType();
+    }
+
+    /**
+     * Gets the name under which the endpoint of the given method is registered.
+     * As the names are not case sensitive, it may differ from the given name.
+     *
+     * @param endpointName
+     *            the name of the endpoint, not case sensitive
+     * @param methodName
+     *            the name of the method, not case sensitive
+     * @return the registered endpoint name, or {@code null} if the method is
+     *         not found
+     */
+    public String getRegisteredEndpointName(String endpointName,
+            String methodName) {
+        EndpointInvocationPlan plan = getInvocationPlan(endpointName,
+                methodName);
+        return plan == null ? null
+                : EndpointRegistry
+                        .getEndpointNameForClass(plan.getEndpointClass());
+    }
+
+    /**
+     * Gets the name of the given method as declared in the endpoint. As the
+     * names are not case sensitive, it may differ from the given name.
+     *
+     * @param endpointName
+     *            the name of the endpoint, not case sensitive
+     * @param methodName
+     *            the name of the method, not case sensitive
+     * @return the declared method name, or {@code null} if the method is not
+     *         found
+     */
+    public String getRegisteredMethodName(String endpointName,
+            String methodName) {
+        EndpointInvocationPlan plan = getInvocationPlan(endpointName,
+                methodName);
+        return plan == null ? null : plan.getMethod().getName();
+    }
+
+    /**
+     * Checks if the push subscriptions to the given method share the flux it
+     * returns, as the method is annotated with {@link SharedSubscription}.
+     *
+     * @param endpointName
+     *            the name of the endpoint, not case sensitive
+     * @param methodName
+     *            the name of the method, not case sensitive
+     * @return {@code true} if the subscriptions are shared, {@code false} if
+     *         not or if the method is not found
+     */
+    public boolean isSharedSubscription(String endpointName,
+            String methodName) {
+        EndpointInvocationPlan plan = getInvocationPlan(endpointName,
+                methodName);
+        return plan != null && plan.isSharedSubscription();
+    }
+
+    /**
+     * Checks that the given endpoint method could be invoked with the given
+     * parameters, without invoking it: the user must have access to the method
+     * and the parameters must be valid.
+     *
+     * @param endpointName
+     *            the name of the endpoint
+     * @param methodName
+     *            the name of the method in the endpoint
+     * @param body
+     *            optional request body, that should be specified if the method
+     *            called has parameters
+     * @param principal
+     *            the user principal object
+     * @param rolesChecker
+     *            a function for checking if a user is in a given role
+     * @throws EndpointNotFoundException
+     *             if the endpoint was not found
+     * @throws EndpointAccessDeniedException
+     *             if access to the endpoint was denied
+     * @throws EndpointBadRequestException
+     *             if there was a problem with the request data
+     */
+    public void checkInvocation(String endpointName, String methodName,
+            ObjectNode body, Principal principal,
+            Function<String, Boolean> rolesChecker)
+            throws EndpointNotFoundException, EndpointAccessDeniedException,
+            EndpointBadRequestException {
+        EndpointInvocationPlan plan = findInvocationPlan(endpointName,
+                methodName);
+        checkAccess(endpointName, methodName, plan, principal, rolesChecker);
+        validateEndpointParameters(endpointName, methodName, plan,
+                getVaadinEndpointParameters(body, plan, methodName,
+                        endpointName));
     }
 
     /**
@@ -190,24 +454,138 @@ public class EndpointInvoker {
             Function<String, Boolean> rolesChecker)
             throws EndpointNotFoundException, EndpointAccessDeniedException,
             EndpointBadRequestException, EndpointInternalException {
-        VaadinEndpointData vaadinEndpointData = endpointRegistry
-                .get(endpointName);
-        if (vaadinEndpointData == null) {
-            getLogger().debug("Endpoint '{}' not found", endpointName);
-            throw new EndpointNotFoundException();
-        }
+        EndpointInvocationPlan plan = findInvocationPlan(endpointName,
+                methodName);
+        return invokeVaadinEndpointMethod(endpointName, methodName, plan,
+                () -> getVaadinEndpointParameters(body, plan, methodName,
+                        endpointName),
+                principal, rolesChecker);
+    }
 
-        Method methodToInvoke = getMethod(endpointName, methodName);
-        if (methodToInvoke == null) {
-            getLogger().debug("Method '{}' not found in endpoint '{}'",
-                    methodName, endpointName);
-            throw new EndpointNotFoundException();
-        }
+    /**
+     * Invoke the given endpoint method if the user has access to do so, reading
+     * the parameters directly from the given JSON stream.
+     * <p>
+     * Unlike {@link #invoke(String, String, ObjectNode, Principal, Function)},
+     * the request body is never materialized as a JSON tree: each parameter is
+     * deserialized straight from the stream into the parameter type. The stream
+     * is only read after the access check has passed, and it is closed before
+     * the endpoint method is called.
+     *
+     * @param endpointName
+     *            the name of the endpoint
+     * @param methodName
+     *            the name of the method in the endpoint
+     * @param body
+     *            the request body stream containing a JSON object with the
+     *            method parameters, may be empty if the method has no
+     *            parameters
+     * @param principal
+     *            the user principal object
+     * @param rolesChecker
+     *            a function for checking if a user is in a given role
+     * @return the return value of the invoked endpoint method
+     * @throws EndpointNotFoundException
+     *             if the endpoint was not found
+     * @throws EndpointAccessDeniedException
+     *             if access to the endpoint was denied
+     * @throws EndpointBadRequestException
+     *             if there was a problem with the request data
+     * @throws EndpointInternalException
+     *             if there was an internal error executing the endpoint method
+     */
+    public Object invokeStreaming(String endpointName, String methodName,
+            InputStream body, Principal principal,
+            Function<String, Boolean> rolesChecker)
+            throws EndpointNotFoundException, EndpointAccessDeniedException,
+            EndpointBadRequestException, EndpointInternalException {
+        EndpointInvocationPlan plan = findInvocationPlan(endpointName,
+                methodName);
+        return invokeVaadinEndpointMethod(endpointName, methodName, plan,
+                () -> getVaadinEndpointParameters(body, plan, methodName,
+                        endpointName),
+                principal, rolesChecker);
+    }
 
-        return invokeVaadinEndpointMethod(endpointName, methodName,
-                methodToInvoke, body, vaadinEndpointData, principal,
-                rolesChecker);
+    /**
+     * Invoke the given endpoint method asynchronously if the user has access to
+     * do so.
+     * <p>
+     * The method is executed on the executor given to this invoker, with the
+     * current instances and the security context of the calling thread. If the
+     * method returns a {@link CompletionStage} or a {@link Mono}, the returned
+     * future completes with its result, without blocking a thread to wait for
+     * it.
+     *
+     * @param endpointName
+     *            the name of the endpoint
+     * @param methodName
+     *            the name of the method in the endpoint
+     * @param body
+     *            optional request body, that should be specified if the method
+     *            called has parameters
+     * @param principal
+     *            the user principal object
+     * @param rolesChecker
+     *            a function for checking if a user is in a given role
+     * @return a future completed with the return value of the invoked endpoint
+     *         method, or with one of the exceptions listed in
+     *         {@link #invoke(String, String, ObjectNode, Principal, Function)}
+     */
+    public CompletableFuture<Object> invokeAsync(String endpointName,
+            String methodName, ObjectNode body, Principal principal,
+            Function<String, Boolean> rolesChecker) {
+        EndpointInvocationPlan plan;
+        try {
+            plan = findInvocationPlan(endpointName, methodName);
+        } catch (EndpointNotFoundException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return invokeVaadinEndpointMethodAsync(endpointName, methodName, plan,
+                () -> getVaadinEndpointParameters(body, plan, methodName,
+                        endpointName),
+                principal, rolesChecker);
+    }
 
+    /**
+     * Invoke the given endpoint method asynchronously if the user has access to
+     * do so, reading the parameters directly from the given JSON stream.
+     * <p>
+     * Combines
+     * {@link #invokeStreaming(String, String, InputStream, Principal, Function)}
+     * with
+     * {@link #invokeAsync(String, String, ObjectNode, Principal, Function)}.
+     * The stream is read on the executor thread.
+     *
+     * @param endpointName
+     *            the name of the endpoint
+     * @param methodName
+     *            the name of the method in the endpoint
+     * @param body
+     *            the request body stream containing a JSON object with the
+     *            method parameters, may be empty if the method has no
+     *            parameters
+     * @param principal
+     *            the user principal object
+     * @param rolesChecker
+     *            a function for checking if a user is in a given role
+     * @return a future completed with the return value of the invoked endpoint
+     *         method, or with one of the exceptions listed in
+     *         {@link #invoke(String, String, ObjectNode, Principal, Function)}
+     */
+    public CompletableFuture<Object> invokeStreamingAsync(String endpointName,
+            String methodName, InputStream body, Principal principal,
+            Function<String, Boolean> rolesChecker) {
+        EndpointInvocationPlan plan;
+        try {
+            plan = findInvocationPlan(endpointName, methodName);
+        } catch (EndpointNotFoundException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return invokeVaadinEndpointMethodAsync(endpointName, methodName, plan,
+                () -> getVaadinEndpointParameters(body, plan, methodName,
+                        endpointName),
+                principal, rolesChecker);
     }
 
     String createResponseErrorObject(String errorMessage) {
@@ -238,25 +616,119 @@ public class EndpointInvoker {
         return endpointMapper.writeValueAsString(returnValue);
     }
 
+    String writeValueAsString(String endpointName, String methodName,
+            Object returnValue)
+            throws JsonProcessingException, EndpointInternalException {
+        EndpointInvocationPlan plan = getInvocationPlan(endpointName,
+                methodName);
+        if (plan == null) {
+            return writeValueAsString(returnValue);
+        }
+        EndpointMetrics.MethodMetrics methodMetrics = plan
+                .getMethodMetrics(metrics);
+        long stageTime = methodMetrics.start();
+        try {
+            String json = getReturnValueWriter(plan)
+                    .writeValueAsString(returnValue);
+            if (methodMetrics.isEnabled()) {
+                methodMetrics.recordStage(Stage.SERIALIZATION, stageTime);
+                methodMetrics
+                        .recordResponseSize(EndpointMetrics.utf8Length(json));
+            }
+            return json;
+        } catch (NullabilityViolationException e) {
+            throw createReturnValueNullabilityException(endpointName,
+                    methodName, e);
+        }
+    }
+
+    /**
+     * Serializes the value returned from the given endpoint method directly to
+     * the given stream, as UTF-8 encoded JSON.
+     *
+     * @param endpointName
+     *            the name of the endpoint
+     * @param methodName
+     *            the name of the method in the endpoint
+     * @param returnValue
+     *            the value returned from the method
+     * @param out
+     *            the stream to write to, closed when done
+     * @throws IOException
+     *             if serializing or writing the value fails
+     * @throws EndpointInternalException
+     *             if the value does not match the nullability of the method
+     *             return type
+     */
+    void writeValue(String endpointName, String methodName, Object returnValue,
+            OutputStream out) throws IOException, EndpointInternalException {
+        EndpointInvocationPlan plan = getInvocationPlan(endpointName,
+                methodName);
+        if (plan == null) {
+            endpointMapper.writer().writeValue(out, returnValue);
+            return;
+        }
+        EndpointMetrics.MethodMetrics methodMetrics = plan
+                .getMethodMetrics(metrics);
+        long stageTime = methodMetrics.start();
+        try {
+            if (methodMetrics.isEnabled()) {
+                var countingOut = new CountingOutputStream(out);
+                getReturnValueWriter(plan).writeValue(countingOut, returnValue);
+                methodMetrics.recordStage(Stage.SERIALIZATION, stageTime);
+                methodMetrics.recordResponseSize(countingOut.getByteCount());
+            } else {
+                getReturnValueWriter(plan).writeValue(out, returnValue);
+            }
+        } catch (NullabilityViolationException e) {
+            throw createReturnValueNullabilityException(endpointName,
+                    methodName, e);
+        }
+    }
+
+    private ObjectWriter getReturnValueWriter(EndpointInvocationPlan plan) {
+        ObjectWriter writer = plan.getReturnValueWriter(endpointMapper);
+        if (!serializationNullCheck || !plan.isReturnValueRequired()) {
+            return writer;
+        }
+        return ExplicitNullableSerializerModifier.withCheck(writer,
+                plan.isAsync() ? plan.getAsyncResultType()
+                        : plan.getMethod().getGenericReturnType(),
+                plan.isNonNullApi());
+    }
+
+    private EndpointInternalException createReturnValueNullabilityException(
+            String endpointName, String methodName,
+            NullabilityViolationException e) {
+        String errorMessage = String.format(
+                "Unexpected return value in endpoint '%s' method '%s'. %s",
+                endpointName, methodName, e.getError());
+        getLogger().error(errorMessage);
+        return new EndpointInternalException(errorMessage);
+    }
+
     private List<ValidationErrorData> createBeanValidationErrors(
             Collection<ConstraintViolation<Object>> beanConstraintViolations) {
-        return beanConstraintViolations.stream().map(constraintViolation -> {
-            String parameterPath = constraintViolation.getPropertyPath()
-                    .toString();
-            StringBuilder builder = new StringBuilder();
-            builder.append("Object of type '")
-                    .append(constraintViolation.getRootBeanClass());
-            if (parameterPath != null && !parameterPath.isEmpty()) {
-                builder.append("' has invalid property '")
-                        .append(parameterPath);
-            }
-            builder.append("' with value '")
-                    .append(constraintViolation.getInvalidValue())
-                    .append("', validation error: '")
-                    .append(constraintViolation.getMessage()).append("'");
-            return new ValidationErrorData(builder.toString(), parameterPath,
-                    constraintViolation.getMessage());
-        }).collect(Collectors.toList());
+        return beanConstraintViolations.stream()
+                .map(constraintViolation -> createBeanValidationError(
+                        constraintViolation.getRootBeanClass(),
+                        constraintViolation.getPropertyPath().toString(),
+                        constraintViolation.getInvalidValue(),
+                        constraintViolation.getMessage()))
+                .collect(Collectors.toList());
+    }
+
+    private ValidationErrorData createBeanValidationError(Class<?> beanClass,
+            String parameterPath, Object invalidValue, String message) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Object of type '").append(beanClass);
+        if (parameterPath != null && !parameterPath.isEmpty()) {
+            builder.append("' has invalid property '").append(parameterPath);
+        }
+        builder.append("' with value '").append(invalidValue)
+                .append("', validation error: '").append(message).append("'");
+        return new ValidationErrorData(builder.toString(), parameterPath,
+                message);
     }
 
     private List<ValidationErrorData> createMethodValidationErrors(
@@ -299,19 +771,33 @@ public class EndpointInvoker {
         return new EndpointValidationException(message, validationErrorData);
     }
 
-    private Type[] getJavaParameters(Method methodToInvoke, Type classType) {
-        return Stream.of(GenericTypeReflector
-                .getExactParameterTypes(methodToInvoke, classType))
-                .toArray(Type[]::new);
+    private EndpointInvocationPlan findInvocationPlan(String endpointName,
+            String methodName) throws EndpointNotFoundException {
+        VaadinEndpointData vaadinEndpointData = endpointRegistry
+                .get(endpointName);
+        if (vaadinEndpointData == null) {
+            getLogger().debug("Endpoint '{}' not found", endpointName);
+            throw new EndpointNotFoundException();
+        }
+
+        EndpointInvocationPlan plan = vaadinEndpointData
+                .getInvocationPlan(methodName);
+        if (plan == null) {
+            getLogger().debug("Method '{}' not found in endpoint '{}'",
+                    methodName, endpointName);
+            throw new EndpointNotFoundException();
+        }
+        return plan;
     }
 
-    private Method getMethod(String endpointName, String methodName) {
+    private EndpointInvocationPlan getInvocationPlan(String endpointName,
+            String methodName) {
         VaadinEndpointData endpointData = endpointRegistry.get(endpointName);
         if (endpointData == null) {
             getLogger().debug("Endpoint '{}' not found", endpointName);
             return null;
         }
-        return endpointData.getMethod(methodName).orElse(null);
+        return endpointData.getInvocationPlan(methodName);
     }
 
     private Map<String, JsonNode> getRequestParameters(ObjectNode body) {
@@ -323,28 +809,117 @@ public class EndpointInvoker {
         return parametersData;
     }
 
+    private Object[] getVaadinEndpointParameters(ObjectNode body,
+            EndpointInvocationPlan plan, String methodName, String endpointName)
+            throws EndpointBadRequestException {
+        Map<String, JsonNode> requestParameters = getRequestParameters(body);
+        Type[] javaParameters = plan.getParameterTypes();
+        if (javaParameters.length != requestParameters.size()) {
+            throw getIncorrectParameterCountException(endpointName, methodName,
+                    javaParameters.length, requestParameters.size());
+        }
+        return getVaadinEndpointParameters(requestParameters, plan, methodName,
+                endpointName);
+    }
+
+    private Object[] getVaadinEndpointParameters(InputStream body,
+            EndpointInvocationPlan plan, String methodName, String endpointName)
+            throws EndpointBadRequestException {
+        try (JsonParser parser = endpointMapper.createParser(body)) {
+            return getVaadinEndpointParameters(parser, plan, methodName,
+                    endpointName);
+        } catch (IOException e) {
+            String errorMessage = String.format(
+                    "Unable to read the request body for endpoint '%s' method '%s'",
+                    endpointName, methodName);
+            getLogger().debug(errorMessage, e);
+            throw new EndpointBadRequestException(errorMessage);
+        }
+    }
+
+    private Object[] getVaadinEndpointParameters(JsonParser parser,
+            EndpointInvocationPlan plan, String methodName, String endpointName)
+            throws IOException, EndpointBadRequestException {
+        Type[] javaParameters = plan.getParameterTypes();
+        ObjectReader[] parameterReaders = plan
+                .getParameterReaders(endpointMapper);
+        Object[] endpointParameters = new Object[javaParameters.length];
+        Map<String, String> errorParams = new HashMap<>();
+        int parameterCount = 0;
+
+        JsonToken token = parser.nextToken();
+        if (token != null && token != JsonToken.VALUE_NULL) {
+            if (token != JsonToken.START_OBJECT) {
+                throw new EndpointBadRequestException(String.format(
+                        "Request body for endpoint '%s' method '%s' must be a JSON object",
+                        endpointName, methodName));
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String parameterName = parser.currentName();
+                parser.nextToken();
+                int index = parameterCount++;
+                if (index >= javaParameters.length) {
+                    // Only counted, the request is rejected below
+                    parser.skipChildren();
+                    continue;
+                }
+                try {
+                    Object parameter = parameterReaders[index]
+                            .readValue(parser);
+                    endpointParameters[index] = parameter;
+                } catch (IOException e) {
+                    String typeName = javaParameters[index].getTypeName();
+                    getLogger().error(
+                            "Unable to deserialize an endpoint '{}' method '{}' "
+                                    + "parameter '{}' with type '{}'",
+                            endpointName, methodName, parameterName, typeName,
+                            e);
+                    errorParams.put(parameterName, typeName);
+                    // The parser position is unknown after a failure, so the
+                    // remaining parameters cannot be read
+                    break;
+                }
+            }
+        }
+
+        if (errorParams.isEmpty() && parameterCount != javaParameters.length) {
+            throw getIncorrectParameterCountException(endpointName, methodName,
+                    javaParameters.length, parameterCount);
+        }
+        if (errorParams.isEmpty()) {
+            return endpointParameters;
+        }
+        throw getInvalidEndpointParametersException(methodName, endpointName,
+                errorParams,
+                validateParameterBeans(plan, endpointParameters, true));
+    }
+
+    private EndpointBadRequestException getIncorrectParameterCountException(
+            String endpointName, String methodName, int expected, int actual) {
+        return new EndpointBadRequestException(String.format(
+                "Incorrect number of parameters for endpoint '%s' method '%s', "
+                        + "expected: %s, got: %s",
+                endpointName, methodName, expected, actual));
+    }
+
     private Object[] getVaadinEndpointParameters(
-            Map<String, JsonNode> requestParameters, Type[] javaParameters,
-            String methodName, String endpointName) {
+            Map<String, JsonNode> requestParameters,
+            EndpointInvocationPlan plan, String methodName,
+            String endpointName) {
+        Type[] javaParameters = plan.getParameterTypes();
+        ObjectReader[] parameterReaders = plan
+                .getParameterReaders(endpointMapper);
         Object[] endpointParameters = new Object[javaParameters.length];
         String[] parameterNames = new String[requestParameters.size()];
         requestParameters.keySet().toArray(parameterNames);
         Map<String, String> errorParams = new HashMap<>();
-        Set<ConstraintViolation<Object>> constraintViolations = new LinkedHashSet<>();
 
         for (int i = 0; i < javaParameters.length; i++) {
             Type parameterType = javaParameters[i];
-            Type incomingType = parameterType;
             try {
-                Object parameter = endpointMapper
-                        .readerFor(endpointMapper.getTypeFactory()
-                                .constructType(incomingType))
+                Object parameter = parameterReaders[i]
                         .readValue(requestParameters.get(parameterNames[i]));
                 endpointParameters[i] = parameter;
-
-                if (parameter != null) {
-                    constraintViolations.addAll(validator.validate(parameter));
-                }
             } catch (IOException e) {
                 String typeName = parameterType.getTypeName();
                 getLogger().error(
@@ -356,19 +931,19 @@ public class EndpointInvoker {
             }
         }
 
-        if (errorParams.isEmpty() && constraintViolations.isEmpty()) {
+        if (errorParams.isEmpty()) {
             return endpointParameters;
         }
         throw getInvalidEndpointParametersException(methodName, endpointName,
-                errorParams, constraintViolations);
+                errorParams,
+                validateParameterBeans(plan, endpointParameters, true));
     }
 
     private ResponseEntity<String> handleMethodExecutionError(
-            String endpointName, String methodName, InvocationTargetException e)
+            String endpointName, String methodName, Throwable e)
             throws EndpointInternalException {
-        if (EndpointException.class.isAssignableFrom(e.getCause().getClass())) {
-            EndpointException endpointException = ((EndpointException) e
-                    .getCause());
+        if (e instanceof EndpointException) {
+            EndpointException endpointException = (EndpointException) e;
             getLogger().debug("Endpoint '{}' method '{}' aborted the execution",
                     endpointName, methodName, endpointException);
             throw endpointException;
@@ -382,64 +957,180 @@ public class EndpointInvoker {
     }
 
     private Object invokeVaadinEndpointMethod(String endpointName,
-            String methodName, Method methodToInvoke, ObjectNode body,
-            VaadinEndpointData vaadinEndpointData, Principal principal,
+            String methodName, EndpointInvocationPlan plan,
+            ParametersReader parametersReader, Principal principal,
             Function<String, Boolean> rolesChecker)
             throws EndpointAccessDeniedException, EndpointBadRequestException,
             EndpointInternalException {
-        EndpointAccessChecker accessChecker = getAccessChecker();
-
-        var methodDeclaringClass = methodToInvoke.getDeclaringClass();
-        var invokedEndpointClass = ClassUtils
-                .getUserClass(vaadinEndpointData.getEndpointObject());
+        Object returnValue = callVaadinEndpointMethod(endpointName, methodName,
+                plan, parametersReader, principal, rolesChecker);
+        if (!plan.isAsync()) {
+            return returnValue;
+        }
+        // Synchronous callers have to wait for the asynchronous result
+        CompletableFuture<Object> result = resolveAsyncResult(endpointName,
+                methodName, plan, returnValue);
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof EndpointInternalException internalException) {
+                throw internalException;
+            } else if (e
+                    .getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
 
-        String checkError;
-        if (methodDeclaringClass.equals(invokedEndpointClass)) {
-            checkError = accessChecker.check(methodToInvoke, principal,
-                    rolesChecker);
+    private CompletableFuture<Object> invokeVaadinEndpointMethodAsync(
+            String endpointName, String methodName, EndpointInvocationPlan plan,
+            ParametersReader parametersReader, Principal principal,
+            Function<String, Boolean> rolesChecker) {
+        CompletableFuture<Object> returnValue;
+        if (executor == null) {
+            try {
+                returnValue = CompletableFuture.completedFuture(
+                        callVaadinEndpointMethod(endpointName, methodName, plan,
+                                parametersReader, principal, rolesChecker));
+            } catch (EndpointInvocationException | RuntimeException e) {
+                returnValue = CompletableFuture.failedFuture(e);
+            }
         } else {
-            checkError = accessChecker.check(invokedEndpointClass, principal,
-                    rolesChecker);
+            Map<Class<?>, CurrentInstance> instances = CurrentInstance
+                    .getInstances();
+            returnValue = CompletableFuture.supplyAsync(() -> {
+                CurrentInstance.restoreInstances(instances);
+                try {
+                    return callVaadinEndpointMethod(endpointName, methodName,
+                            plan, parametersReader, principal, rolesChecker);
+                } catch (EndpointInvocationException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    CurrentInstance.clearAll();
+                }
+            }, executor);
         }
-        if (checkError != null) {
-            throw new EndpointAccessDeniedException(String.format(
-                    "Endpoint '%s' method '%s' request cannot be accessed, reason: '%s'",
-                    endpointName, methodName, checkError));
+        if (!plan.isAsync()) {
+            return returnValue;
         }
+        return returnValue.thenCompose(value -> resolveAsyncResult(endpointName,
+                methodName, plan, value));
+    }
 
-        Map<String, JsonNode> requestParameters = getRequestParameters(body);
-        Type[] javaParameters = getJavaParameters(methodToInvoke, ClassUtils
-                .getUserClass(vaadinEndpointData.getEndpointObject()));
-        if (javaParameters.length != requestParameters.size()) {
-            throw new EndpointBadRequestException(String.format(
-                    "Incorrect number of parameters for endpoint '%s' method '%s', "
-                            + "expected: %s, got: %s",
-                    endpointName, methodName, javaParameters.length,
-                    requestParameters.size()));
+    /**
+     * Waits for the result of an asynchronous endpoint method without blocking,
+     * and checks it the same way as synchronous return values.
+     */
+    private CompletableFuture<Object> resolveAsyncResult(String endpointName,
+            String methodName, EndpointInvocationPlan plan,
+            Object asyncResult) {
+        return toCompletableFuture(asyncResult).handle((value, error) -> {
+            try {
+                if (error != null) {
+                    handleMethodExecutionError(endpointName, methodName,
+                            error instanceof CompletionException
+                                    && error.getCause() != null
+                                            ? error.getCause()
+                                            : error);
+                }
+                checkAsyncResultValue(endpointName, methodName, plan, value);
+                return value;
+            } catch (EndpointInternalException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Checks the resolved value of an asynchronous endpoint method. The
+     * constraints of the return value cannot be applied to the value a future
+     * or a {@link Mono} resolves to, so the value is validated as a bean when
+     * the return value is constrained, for instance annotated with
+     * {@link jakarta.validation.Valid}.
+     */
+    private void checkAsyncResultValue(String endpointName, String methodName,
+            EndpointInvocationPlan plan, Object value)
+            throws EndpointInternalException {
+        EndpointMetrics.MethodMetrics methodMetrics = plan
+                .getMethodMetrics(metrics);
+        long stageTime = methodMetrics.start();
+        // Non-null values are checked while serialized, if enabled
+        if (plan.isReturnValueRequired()
+                && !(serializationNullCheck && value != null)) {
+            String implicitNullError = explicitNullableTypeChecker
+                    .checkValueForType(value, plan.getAsyncResultType(),
+                            plan.isNonNullApi());
+            stageTime = methodMetrics.recordStage(Stage.NULLABILITY_CHECK,
+                    stageTime);
+            if (implicitNullError != null) {
+                String errorMessage = String.format(
+                        "Unexpected return value in endpoint '%s' method '%s'. %s",
+                        endpointName, methodName, implicitNullError);
+                getLogger().error(errorMessage);
+                throw new EndpointInternalException(errorMessage);
+            }
         }
 
-        Object[] vaadinEndpointParameters = getVaadinEndpointParameters(
-                requestParameters, javaParameters, methodName, endpointName);
+        if (value != null && plan.hasReturnValueConstraints(validator)
+                && isReturnValueValidationSampled()) {
+            checkReturnValueConstraints(endpointName, methodName,
+                    validator.validate(value));
+            methodMetrics.recordStage(Stage.RETURN_VALUE_VALIDATION, stageTime);
+        }
+    }
 
-        Set<ConstraintViolation<Object>> methodParameterConstraintViolations = validator
-                .forExecutables()
-                .validateParameters(vaadinEndpointData.getEndpointObject(),
-                        methodToInvoke, vaadinEndpointParameters);
-        if (!methodParameterConstraintViolations.isEmpty()) {
-            throw new EndpointValidationException(
-                    String.format(
-                            "Validation error in endpoint '%s' method '%s'",
-                            endpointName, methodName),
-                    createMethodValidationErrors(
-                            methodParameterConstraintViolations));
+    private static void checkReturnValueConstraints(String endpointName,
+            String methodName,
+            Set<ConstraintViolation<Object>> returnValueConstraintViolations)
+            throws EndpointInternalException {
+        if (!returnValueConstraintViolations.isEmpty()) {
+            String errorMessage = String.format(
+                    "Endpoint '%s' method '%s' returned a value that has validation errors: '%s'",
+                    endpointName, methodName, returnValueConstraintViolations);
+            throw new EndpointInternalException(errorMessage);
         }
+    }
+
+    private static CompletableFuture<Object> toCompletableFuture(
+            Object asyncResult) {
+        if (asyncResult instanceof Mono<?> mono) {
+            return mono.<Object> map(value -> value).toFuture();
+        } else if (asyncResult instanceof CompletionStage<?> stage) {
+            return stage.<Object> thenApply(value -> value)
+                    .toCompletableFuture();
+        }
+        // The method returned null instead of a stage or a Mono
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private Object callVaadinEndpointMethod(String endpointName,
+            String methodName, EndpointInvocationPlan plan,
+            ParametersReader parametersReader, Principal principal,
+            Function<String, Boolean> rolesChecker)
+            throws EndpointAccessDeniedException, EndpointBadRequestException,
+            EndpointInternalException {
+        Method methodToInvoke = plan.getMethod();
+        Object endpointObject = plan.getEndpointObject();
+        EndpointMetrics.MethodMetrics methodMetrics = plan
+                .getMethodMetrics(metrics);
+        long stageTime = methodMetrics.start();
+
+        checkAccess(endpointName, methodName, plan, principal, rolesChecker);
+        stageTime = methodMetrics.recordStage(Stage.ACCESS_CHECK, stageTime);
+
+        Type[] javaParameters = plan.getParameterTypes();
+        Object[] vaadinEndpointParameters = parametersReader.read();
+        stageTime = methodMetrics.recordStage(Stage.DESERIALIZATION, stageTime);
+
+        validateEndpointParameters(endpointName, methodName, plan,
+                vaadinEndpointParameters);
+        stageTime = methodMetrics.recordStage(Stage.VALIDATION, stageTime);
 
         Object returnValue;
         try {
-            returnValue = methodToInvoke.invoke(
-                    vaadinEndpointData.getEndpointObject(),
-                    vaadinEndpointParameters);
-        } catch (IllegalArgumentException e) {
+            returnValue = plan.invoke(vaadinEndpointParameters);
+        } catch (EndpointInvocationPlan.ArgumentMismatchException e) {
             String errorMessage = String.format(
                     "Received incorrect arguments for endpoint '%s' method '%s'. "
                             + "Expected parameter types (and their order) are: '[%s]'",
@@ -447,20 +1138,20 @@ public class EndpointInvoker {
                     listMethodParameterTypes(javaParameters));
             getLogger().debug(errorMessage, e);
             throw new EndpointBadRequestException(errorMessage);
-        } catch (IllegalAccessException e) {
-            String errorMessage = String.format(
-                    "Endpoint '%s' method '%s' access failure", endpointName,
-                    methodName);
-            getLogger().error(errorMessage, e);
-            throw new EndpointInternalException(errorMessage);
-        } catch (InvocationTargetException e) {
+        } catch (Throwable e) {
+            methodMetrics.recordStage(Stage.INVOCATION, stageTime);
             return handleMethodExecutionError(endpointName, methodName, e);
         }
+        stageTime = methodMetrics.recordStage(Stage.INVOCATION, stageTime);
 
-        String implicitNullError = this.explicitNullableTypeChecker
-                .checkValueForAnnotatedElement(returnValue, methodToInvoke,
-                        isNonNullApi(methodToInvoke.getDeclaringClass()
-                                .getPackage()));
+        // Asynchronous results are checked once they are available, and
+        // non-null values while serialized, if enabled
+        String implicitNullError = plan.isAsync()
+                || serializationNullCheck && returnValue != null
+                        ? null
+                        : this.explicitNullableTypeChecker
+                                .checkValueForAnnotatedElement(returnValue,
+                                        methodToInvoke, plan.isNonNullApi());
         if (implicitNullError != null) {
             String errorMessage = String.format(
                     "Unexpected return value in endpoint '%s' method '%s'. %s",
@@ -468,25 +1159,169 @@ public class EndpointInvoker {
             getLogger().error(errorMessage);
             throw new EndpointInternalException(errorMessage);
         }
+        stageTime = methodMetrics.recordStage(Stage.NULLABILITY_CHECK,
+                stageTime);
 
-        Set<ConstraintViolation<Object>> returnValueConstraintViolations = validator
-                .forExecutables()
-                .validateReturnValue(vaadinEndpointData.getEndpointObject(),
-                        methodToInvoke, returnValue);
-        if (!returnValueConstraintViolations.isEmpty()) {
-            String errorMessage = String.format(
-                    "Endpoint '%s' method '%s' returned a value that has validation errors: '%s'",
-                    endpointName, methodName, returnValueConstraintViolations);
-            throw new EndpointInternalException(errorMessage);
+        // Asynchronous results are validated once they are available
+        if (!plan.isAsync() && plan.hasReturnValueConstraints(validator)
+                && isReturnValueValidationSampled()) {
+            checkReturnValueConstraints(endpointName, methodName,
+                    validator.forExecutables().validateReturnValue(
+                            endpointObject, methodToInvoke, returnValue));
+            methodMetrics.recordStage(Stage.RETURN_VALUE_VALIDATION, stageTime);
         }
 
         return returnValue;
     }
 
-    private boolean isNonNullApi(Package pkg) {
-        return Stream.of(pkg.getAnnotations())
-                .anyMatch(ann -> ann.annotationType().getSimpleName()
-                        .equals(NonNullApi.class.getSimpleName()));
+    private void checkAccess(String endpointName, String methodName,
+            EndpointInvocationPlan plan, Principal principal,
+            Function<String, Boolean> rolesChecker)
+            throws EndpointAccessDeniedException {
+        EndpointAccessChecker accessChecker = getAccessChecker();
+        String checkError;
+        if (plan.isAccessCheckedByMethod()) {
+            checkError = accessChecker.check(plan.getMethod(), principal,
+                    rolesChecker);
+        } else {
+            checkError = accessChecker.check(plan.getEndpointClass(), principal,
+                    rolesChecker);
+        }
+        if (checkError != null) {
+            throw new EndpointAccessDeniedException(String.format(
+                    "Endpoint '%s' method '%s' request cannot be accessed, reason: '%s'",
+                    endpointName, methodName, checkError));
+        }
+    }
+
+    /**
+     * Validates the deserialized parameters so that each argument graph is
+     * validated only once: the beans passed to parameters marked for cascaded
+     * validation are validated together with the method parameters, and the
+     * other beans on their own. The errors are reported the same way in both
+     * cases.
+     */
+    private void validateEndpointParameters(String endpointName,
+            String methodName, EndpointInvocationPlan plan,
+            Object[] parameters) {
+        Set<ConstraintViolation<Object>> beanConstraintViolations = validateParameterBeans(
+                plan, parameters, false);
+        Set<ConstraintViolation<Object>> methodParameterConstraintViolations = plan
+                .hasParameterConstraints(validator)
+                        ? validator.forExecutables().validateParameters(
+                                plan.getEndpointObject(), plan.getMethod(),
+                                parameters)
+                        : Set.of();
+        if (beanConstraintViolations.isEmpty()
+                && methodParameterConstraintViolations.isEmpty()) {
+            return;
+        }
+
+        // Bean errors take precedence over the errors of the method
+        // parameters themselves
+        List<ValidationErrorData> beanErrors = new ArrayList<>(
+                createBeanValidationErrors(beanConstraintViolations));
+        for (ConstraintViolation<Object> constraintViolation : methodParameterConstraintViolations) {
+            ValidationErrorData error = createCascadedBeanValidationError(
+                    constraintViolation, parameters);
+            if (error != null) {
+                beanErrors.add(error);
+            }
+        }
+        throw new EndpointValidationException(
+                String.format("Validation error in endpoint '%s' method '%s'",
+                        endpointName, methodName),
+                beanErrors.isEmpty()
+                        ? createMethodValidationErrors(
+                                methodParameterConstraintViolations)
+                        : beanErrors);
+    }
+
+    private Set<ConstraintViolation<Object>> validateParameterBeans(
+            EndpointInvocationPlan plan, Object[] parameters,
+            boolean includeCascaded) {
+        Set<ConstraintViolation<Object>> constraintViolations = new LinkedHashSet<>();
+        for (int i = 0; i < parameters.length; i++) {
+            if ((includeCascaded || !plan.isParameterCascaded(validator, i))
+                    && isBeanConstrained(parameters[i])) {
+                constraintViolations.addAll(validator.validate(parameters[i]));
+            }
+        }
+        return constraintViolations;
+    }
+
+    /**
+     * Creates the error for a violation inside a bean passed to a parameter
+     * marked for cascaded validation, as if the bean was validated on its own.
+     * Returns {@code null} for the other violations, including the ones inside
+     * container elements.
+     */
+    private ValidationErrorData createCascadedBeanValidationError(
+            ConstraintViolation<Object> constraintViolation,
+            Object[] parameters) {
+        Iterator<Path.Node> nodes = constraintViolation.getPropertyPath()
+                .iterator();
+        if (!nodes.hasNext()) {
+            return null;
+        }
+        Path.Node methodNode = nodes.next();
+        if (methodNode.getKind() != ElementKind.METHOD || !nodes.hasNext()) {
+            return null;
+        }
+        Path.Node parameterNode = nodes.next();
+        if (parameterNode.getKind() != ElementKind.PARAMETER || !nodes.hasNext()
+                || nodes.next().isInIterable()) {
+            return null;
+        }
+        Object bean = parameters[parameterNode.as(Path.ParameterNode.class)
+                .getParameterIndex()];
+        if (bean == null) {
+            return null;
+        }
+        return createBeanValidationError(bean.getClass(),
+                getBeanPath(constraintViolation.getPropertyPath()),
+                constraintViolation.getInvalidValue(),
+                constraintViolation.getMessage());
+    }
+
+    /**
+     * Gets the path of a violation inside a bean passed to a method parameter,
+     * made of the nodes after the method and parameter nodes, in the same form
+     * as the path of the violation when the bean is validated on its own.
+     */
+    private static String getBeanPath(Path path) {
+        StringBuilder beanPath = new StringBuilder();
+        Iterator<Path.Node> nodes = path.iterator();
+        // Skip the method and parameter nodes
+        nodes.next();
+        nodes.next();
+        while (nodes.hasNext()) {
+            Path.Node node = nodes.next();
+            if (node.isInIterable()) {
+                Object position = node.getIndex() != null ? node.getIndex()
+                        : node.getKey();
+                beanPath.append('[').append(position != null ? position : "")
+                        .append(']');
+            }
+            if (node.getName() != null) {
+                if (beanPath.length() > 0) {
+                    beanPath.append('.');
+                }
+                beanPath.append(node.getName());
+            }
+        }
+        return beanPath.toString();
+    }
+
+    private boolean isBeanConstrained(Object parameter) {
+        return parameter != null
+                && constrainedBeanTypes.get(parameter.getClass());
+    }
+
+    private boolean isReturnValueValidationSampled() {
+        double sampleRate = returnValueValidationSampleRate;
+        return sampleRate >= 1 || sampleRate > 0
+                && ThreadLocalRandom.current().nextDouble() < sampleRate;
     }
 
     private String listMethodParameterTypes(Type[] javaParameters) {
@@ -494,6 +1329,15 @@ public class EndpointInvoker {
                 .collect(Collectors.joining(", "));
     }
 
+    /**
+     * Reads the endpoint method parameters from the request body, once access
+     * to the method has been granted.
+     */
+    @FunctionalInterface
+    private interface ParametersReader {
+        Object[] read() throws EndpointBadRequestException;
+    }
+
     private static class VaadinConnectAccessCheckerWrapper {
         private final EndpointAccessChecker accessChecker;
 
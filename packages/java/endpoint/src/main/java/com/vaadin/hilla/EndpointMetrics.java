@@ -0,0 +1,214 @@
+/*
+ * Copyright 2000-2024 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.hilla;
+
+import java.util.Locale;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Records the metrics of endpoint calls, per endpoint method.
+ * <p>
+ * Metrics are only recorded when Micrometer is available and the application
+ * context has a {@code MeterRegistry} bean, see
+ * {@link #create(ApplicationContext)}. Otherwise, {@link #DISABLED} is used,
+ * which does not even read the clock.
+ * <p>
+ * For internal use only. May be renamed or removed in a future release.
+ */
+abstract class EndpointMetrics {
+    private static final String METER_REGISTRY_CLASS_NAME = "io.micrometer.core.instrument.MeterRegistry";
+
+    /**
+     * Metrics that record nothing.
+     */
+    static final EndpointMetrics DISABLED = new EndpointMetrics() {
+        @Override
+        MethodMetrics forMethod(String endpointName, String methodName) {
+            return MethodMetrics.DISABLED;
+        }
+    };
+
+    /**
+     * The stages of an endpoint call that are timed separately.
+     */
+    enum Stage {
+        ACCESS_CHECK, DESERIALIZATION, VALIDATION, INVOCATION, NULLABILITY_CHECK, RETURN_VALUE_VALIDATION, SERIALIZATION;
+
+        private final String tag = name().toLowerCase(Locale.ENGLISH);
+
+        String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * The outcomes of an endpoint call.
+     */
+    enum Outcome {
+        OK, VALIDATION_ERROR, ENDPOINT_ERROR, ACCESS_DENIED, BAD_REQUEST, INTERNAL_ERROR;
+
+        private final String tag = name().toLowerCase(Locale.ENGLISH);
+
+        String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Records the metrics of a single endpoint method.
+     * <p>
+     * The times are measured with {@link System#nanoTime()}: {@link #start()}
+     * returns the start time of a call, and each recorded stage returns its end
+     * time, so that it can be used as the start time of the next stage.
+     */
+    interface MethodMetrics {
+        /**
+         * Metrics that record nothing.
+         */
+        MethodMetrics DISABLED = new MethodMetrics() {
+            @Override
+            public long start() {
+                return 0;
+            }
+
+            @Override
+            public long recordStage(Stage stage, long startTime) {
+                return 0;
+            }
+
+            @Override
+            public void recordCall(Outcome outcome, long startTime) {
+            }
+
+            @Override
+            public void recordRequestSize(long bytes) {
+            }
+
+            @Override
+            public void recordResponseSize(long bytes) {
+            }
+
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+        };
+
+        /**
+         * Gets the start time of a call or a stage.
+         *
+         * @return the current time, or {@code 0} if disabled
+         */
+        long start();
+
+        /**
+         * Records the duration of a stage of a call.
+         *
+         * @param stage
+         *            the stage
+         * @param startTime
+         *            the time when the stage started
+         * @return the current time, or {@code 0} if disabled
+         */
+        long recordStage(Stage stage, long startTime);
+
+        /**
+         * Records a completed call.
+         *
+         * @param outcome
+         *            the outcome of the call
+         * @param startTime
+         *            the time when the call started
+         */
+        void recordCall(Outcome outcome, long startTime);
+
+        /**
+         * Records the size of a request body.
+         *
+         * @param bytes
+         *            the size in bytes
+         */
+        void recordRequestSize(long bytes);
+
+        /**
+         * Records the size of a response body.
+         *
+         * @param bytes
+         *            the size in bytes
+         */
+        void recordResponseSize(long bytes);
+
+        /**
+         * Checks if the metrics are recorded.
+         *
+         * @return {@code true} if the metrics are recorded
+         */
+        boolean isEnabled();
+    }
+
+    /**
+     * Creates the metrics for the given application context.
+     *
+     * @param applicationContext
+     *            the Spring application context
+     * @return the Micrometer metrics, if a meter registry is available, or
+     *         {@link #DISABLED} otherwise
+     */
+    static EndpointMetrics create(ApplicationContext applicationContext) {
+        if (!ClassUtils.isPresent(METER_REGISTRY_CLASS_NAME,
+                EndpointMetrics.class.getClassLoader())) {
+            return DISABLED;
+        }
+        // Only loaded when Micrometer is available
+        return MicrometerEndpointMetrics.create(applicationContext);
+    }
+
+    /**
+     * Gets the metrics of the given endpoint method. The names are expected to
+     * be the registered ones, not the ones used in the request, to avoid
+     * creating meters for each spelling.
+     *
+     * @param endpointName
+     *            the name of the endpoint
+     * @param methodName
+     *            the name of the method
+     * @return the metrics of the method
+     */
+    abstract MethodMetrics forMethod(String endpointName, String methodName);
+
+    /**
+     * Counts the bytes of the given string in UTF-8 without encoding it.
+     *
+     * @param value
+     *            the string
+     * @return the number of bytes
+     */
+    static long utf8Length(String value) {
+        long bytes = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                // Surrogate pairs take four bytes for two characters
+                bytes += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2000-2024 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.hilla;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable map from endpoint or method names to values, where the names are
+ * compared ignoring case.
+ * <p>
+ * Lookups neither lowercase the name nor allocate: the hash is computed by
+ * folding the case of each character, and the names are compared with
+ * {@link String#equalsIgnoreCase(String)}. Updates return a new index, so an
+ * instance can be read concurrently without synchronization.
+ *
+ * @param <V>
+ *            the type of the values
+ */
+final class EndpointNameIndex<V> {
+    private static final EndpointNameIndex<?> EMPTY = new EndpointNameIndex<>(
+            new String[0], new Object[0]);
+
+    private final String[] names;
+    private final Object[] values;
+    // Open addressing table of positions in names, offset by one so that
+    // zero marks an empty slot
+    private final int[] slots;
+
+    private EndpointNameIndex(String[] names, Object[] values) {
+        this.names = names;
+        this.values = values;
+        this.slots = new int[Integer
+                .highestOneBit(Math.max(names.length, 1) * 2 - 1) << 1];
+        for (int i = 0; i < names.length; i++) {
+            int slot = hash(names[i]) & (slots.length - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Returns an empty index.
+     *
+     * @param <V>
+     *            the type of the values
+     * @return the empty index
+     */
+    @SuppressWarnings("unchecked")
+    static <V> EndpointNameIndex<V> empty() {
+        return (EndpointNameIndex<V>) EMPTY;
+    }
+
+    /**
+     * Creates an index with the entries of the given map. If several names
+     * differ only by case, the last one wins.
+     *
+     * @param entries
+     *            the entries to index
+     * @param <V>
+     *            the type of the values
+     * @return the index
+     */
+    static <V> EndpointNameIndex<V> of(Map<String, ? extends V> entries) {
+        String[] names = new String[entries.size()];
+        Object[] values = new Object[entries.size()];
+        int size = 0;
+        for (Map.Entry<String, ? extends V> entry : entries.entrySet()) {
+            int position = indexOf(names, size, entry.getKey());
+            if (position < 0) {
+                position = size++;
+            }
+            names[position] = entry.getKey();
+            values[position] = entry.getValue();
+        }
+        return size == 0 ? empty()
+                : new EndpointNameIndex<>(Arrays.copyOf(names, size),
+                        Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Returns a copy of this index with the given entry added, replacing the
+     * entry with the same name, if any.
+     *
+     * @param name
+     *            the name of the entry
+     * @param value
+     *            the value of the entry
+     * @return the new index
+     */
+    EndpointNameIndex<V> with(String name, V value) {
+        int position = indexOf(names, names.length, name);
+        String[] newNames = Arrays.copyOf(names,
+                position < 0 ? names.length + 1 : names.length);
+        Object[] newValues = Arrays.copyOf(values, newNames.length);
+        if (position < 0) {
+            position = names.length;
+        }
+        newNames[position] = name;
+        newValues[position] = value;
+        return new EndpointNameIndex<>(newNames, newValues);
+    }
+
+    /**
+     * Finds the value for the given name, ignoring case.
+     *
+     * @param name
+     *            the name to look for
+     * @return the value, or {@code null} if there is no entry with the name
+     */
+    @SuppressWarnings("unchecked")
+    V get(String name) {
+        int slot = hash(name) & (slots.length - 1);
+        int position;
+        while ((position = slots[slot]) != 0) {
+            if (names[position - 1].equalsIgnoreCase(name)) {
+                return (V) values[position - 1];
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return null;
+    }
+
+    boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    private static int indexOf(String[] names, int size, String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + foldCase(name.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    // Characters equal according to String.equalsIgnoreCase fold to the same
+    // value, so that equal names always have the same hash
+    private static char foldCase(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
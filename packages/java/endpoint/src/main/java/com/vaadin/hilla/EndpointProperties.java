@@ -19,6 +19,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import com.vaadin.hilla.push.PushOverflowStrategy;
+
 /**
  * Class that contains all Vaadin endpoint customizable properties.
  */
@@ -29,6 +31,57 @@ public class EndpointProperties {
     @Value("${vaadin.endpoint.prefix:/connect}")
     private String endpointPrefix;
 
+    @Value("${vaadin.endpoint.streaming:false}")
+    private boolean streaming;
+
+    @Value("${vaadin.endpoint.async:false}")
+    private boolean async;
+
+    @Value("${vaadin.endpoint.serialization-null-check:false}")
+    private boolean serializationNullCheck;
+
+    @Value("${vaadin.endpoint.return-value-validation-sample-rate:1}")
+    private double returnValueValidationSampleRate;
+
+    @Value("${vaadin.endpoint.batch-max-calls:100}")
+    private int batchMaxCalls;
+
+    @Value("${vaadin.endpoint.batch-max-concurrency:8}")
+    private int batchMaxConcurrency;
+
+    @Value("${vaadin.endpoint.push-buffer-size:0}")
+    private int pushBufferSize;
+
+    @Value("${vaadin.endpoint.push-overflow-strategy:ERROR}")
+    private PushOverflowStrategy pushOverflowStrategy;
+
+    @Value("${vaadin.endpoint.push-batch-size:1}")
+    private int pushBatchSize;
+
+    @Value("${vaadin.endpoint.push-batch-window:0}")
+    private long pushBatchWindow;
+
+    @Value("${vaadin.endpoint.push-binary-encoding:false}")
+    private boolean pushBinaryEncoding;
+
+    @Value("${vaadin.endpoint.push-resume-grace-period:0}")
+    private long pushResumeGracePeriod;
+
+    @Value("${vaadin.endpoint.push-replay-buffer-size:100}")
+    private int pushReplayBufferSize;
+
+    @Value("${vaadin.endpoint.push-subscribe-threads:0}")
+    private int pushSubscribeThreads;
+
+    @Value("${vaadin.endpoint.push-subscribe-timeout:30000}")
+    private long pushSubscribeTimeout;
+
+    @Value("${vaadin.endpoint.push-heartbeat-interval:0}")
+    private long pushHeartbeatInterval;
+
+    @Value("${vaadin.endpoint.push-idle-timeout:90000}")
+    private long pushIdleTimeout;
+
     /**
      * Customize the prefix for all Vaadin endpoints. See default value in the
      * {@link EndpointProperties#endpointPrefix} field annotation.
@@ -39,4 +92,264 @@ public class EndpointProperties {
         return endpointPrefix;
     }
 
+    /**
+     * Whether endpoint calls are served in streaming mode, where method
+     * parameters are deserialized directly from the request input stream and
+     * return values are serialized directly to the response output stream,
+     * instead of holding the whole request and response bodies in memory. See
+     * default value in the {@link EndpointProperties#streaming} field
+     * annotation.
+     *
+     * @return {@code true} if endpoint request and response bodies should be
+     *         streamed
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Whether endpoint methods are executed asynchronously on the endpoint
+     * executor, releasing the servlet container thread until the response is
+     * ready. See default value in the {@link EndpointProperties#async} field
+     * annotation.
+     * <p>
+     * The executor can be customized with a bean qualified with
+     * {@link EndpointController#ENDPOINT_EXECUTOR_BEAN_QUALIFIER}. By default,
+     * a virtual thread is started for each call when running on Java 21 or
+     * newer.
+     *
+     * @return {@code true} if endpoint methods should be executed
+     *         asynchronously
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Whether the nullability of the values returned from endpoint methods is
+     * checked while they are serialized, instead of traversing them once more
+     * before serializing. See default value in the
+     * {@link EndpointProperties#serializationNullCheck} field annotation.
+     * <p>
+     * The same values are rejected with the same error messages, except that
+     * only the bean properties that are serialized are checked.
+     *
+     * @return {@code true} if the return values should be checked while
+     *         serialized
+     */
+    public boolean isSerializationNullCheck() {
+        return serializationNullCheck;
+    }
+
+    /**
+     * The share of the endpoint method calls whose return value is validated
+     * with Bean Validation, from {@code 0} (none) to {@code 1} (all). See
+     * default value in the
+     * {@link EndpointProperties#returnValueValidationSampleRate} field
+     * annotation.
+     * <p>
+     * Lowering the rate in production reduces the validation cost of frequently
+     * called endpoints, while still detecting invalid return values in some of
+     * the calls. Methods without return value constraints are never validated.
+     *
+     * @return the share of the return values to validate
+     */
+    public double getReturnValueValidationSampleRate() {
+        return returnValueValidationSampleRate;
+    }
+
+    /**
+     * The maximum number of calls in a batch request. See default value in the
+     * {@link EndpointProperties#batchMaxCalls} field annotation.
+     * <p>
+     * Larger batches are rejected with a bad request response, without making
+     * any of their calls.
+     *
+     * @return the maximum number of calls in a batch
+     */
+    public int getBatchMaxCalls() {
+        return batchMaxCalls;
+    }
+
+    /**
+     * The maximum number of calls of a batch request that run at the same time.
+     * See default value in the {@link EndpointProperties#batchMaxConcurrency}
+     * field annotation.
+     * <p>
+     * Only used when the calls run {@link #isAsync() asynchronously}, so that a
+     * single batch request cannot occupy the endpoint executor.
+     *
+     * @return the maximum number of concurrent calls of a batch
+     */
+    public int getBatchMaxConcurrency() {
+        return batchMaxConcurrency;
+    }
+
+    /**
+     * The number of items of each push subscription that can wait to be sent to
+     * the client, or {@code 0} to send the items directly from the thread
+     * emitting them. See default value in the
+     * {@link EndpointProperties#pushBufferSize} field annotation.
+     * <p>
+     * When set, the items are sent to each client in order on a thread of its
+     * connection, so that slow clients do not hold up the flux nor the other
+     * clients, and the items that do not fit in the buffer are handled with the
+     * {@link #getPushOverflowStrategy() overflow strategy}. The limit applies
+     * to each subscription separately, so a connection with several
+     * subscriptions can have up to this many items waiting for each of them.
+     *
+     * @return the buffer size of each push subscription
+     */
+    public int getPushBufferSize() {
+        return pushBufferSize;
+    }
+
+    /**
+     * What to do when the buffer of a push subscription is full. See default
+     * value in the {@link EndpointProperties#pushOverflowStrategy} field
+     * annotation. Only used with a {@link #getPushBufferSize() buffer size}.
+     *
+     * @return the overflow strategy of the push subscriptions
+     */
+    public PushOverflowStrategy getPushOverflowStrategy() {
+        return pushOverflowStrategy;
+    }
+
+    /**
+     * The maximum number of push messages written to a connection at once. See
+     * default value in the {@link EndpointProperties#pushBatchSize} field
+     * annotation.
+     * <p>
+     * Combining the messages sent within the {@link #getPushBatchWindow() batch
+     * window} into one write lowers the number of frames and system calls for
+     * fluxes that emit frequently, at the cost of delaying the messages for up
+     * to the window. Batching is disabled if either the size is {@code 1} or
+     * the window is {@code 0}.
+     *
+     * @return the maximum number of messages written at once
+     */
+    public int getPushBatchSize() {
+        return pushBatchSize;
+    }
+
+    /**
+     * The maximum time in milliseconds a push message waits for other messages
+     * to be written with. See default value in the
+     * {@link EndpointProperties#pushBatchWindow} field annotation.
+     *
+     * @return the batch window in milliseconds
+     */
+    public long getPushBatchWindow() {
+        return pushBatchWindow;
+    }
+
+    /**
+     * The time in milliseconds the subscriptions of a dropped push connection
+     * are kept for the client to reconnect. See default value in the
+     * {@link EndpointProperties#pushResumeGracePeriod} field annotation.
+     * <p>
+     * When the client reconnects within the grace period, with the same
+     * Atmosphere tracking id, HTTP session and user, its subscriptions continue
+     * with the still running fluxes, and it receives the messages sent while it
+     * was disconnected. The endpoint methods are not called again. Connections
+     * made without an HTTP session, and all connections if the grace period is
+     * {@code 0}, are not resumed.
+     *
+     * @return the resume grace period in milliseconds
+     */
+    public long getPushResumeGracePeriod() {
+        return pushResumeGracePeriod;
+    }
+
+    /**
+     * The maximum number of push messages kept for a dropped connection until
+     * the client reconnects. See default value in the
+     * {@link EndpointProperties#pushReplayBufferSize} field annotation. A
+     * connection that misses more messages cannot be resumed, and its
+     * subscriptions are disposed right away. Only used with a
+     * {@link #getPushResumeGracePeriod() resume grace period}.
+     *
+     * @return the replay buffer size of each push connection
+     */
+    public int getPushReplayBufferSize() {
+        return pushReplayBufferSize;
+    }
+
+    /**
+     * Whether the push messages are sent in CBOR to the clients that ask for
+     * it. See default value in the
+     * {@link EndpointProperties#pushBinaryEncoding} field annotation.
+     * <p>
+     * Binary messages are smaller and faster to encode for numeric data. They
+     * need {@code com.fasterxml.jackson.dataformat:jackson-dataformat-cbor} on
+     * the classpath, and the websocket transport. Clients ask for them with the
+     * {@code binaryPush} option of the {@code ConnectClient}.
+     *
+     * @return {@code true} if binary push messages are enabled
+     */
+    public boolean isPushBinaryEncoding() {
+        return pushBinaryEncoding;
+    }
+
+    /**
+     * The number of threads invoking the endpoint methods of new push
+     * subscriptions. See default value in the
+     * {@link EndpointProperties#pushSubscribeThreads} field annotation.
+     * <p>
+     * With {@code 0}, the endpoint methods are invoked on the thread handling
+     * the subscribe message, so that a slow method holds up the other messages
+     * of the connection. A positive number uses a dedicated pool of at most
+     * that many threads, and a negative number a virtual thread per
+     * subscription on Java 21 or later. The fluxes are then also subscribed on
+     * these threads.
+     *
+     * @return the number of threads invoking the push endpoint methods
+     */
+    public int getPushSubscribeThreads() {
+        return pushSubscribeThreads;
+    }
+
+    /**
+     * The time in milliseconds after which a push subscription whose endpoint
+     * method has not returned fails. See default value in the
+     * {@link EndpointProperties#pushSubscribeTimeout} field annotation. No
+     * timeout is applied if it is {@code 0}. Only used with
+     * {@link #getPushSubscribeThreads() subscribe threads}.
+     *
+     * @return the subscribe timeout in milliseconds
+     */
+    public long getPushSubscribeTimeout() {
+        return pushSubscribeTimeout;
+    }
+
+    /**
+     * The time in milliseconds a push connection can be silent before the
+     * server sends it a heartbeat. See default value in the
+     * {@link EndpointProperties#pushHeartbeatInterval} field annotation.
+     * <p>
+     * Live clients reply to the heartbeats, so that the connections of clients
+     * gone without closing them, as with a half-open TCP connection, can be
+     * detected and closed after the {@link #getPushIdleTimeout() idle timeout}.
+     * Their subscriptions are then disposed, releasing the resources held by
+     * the endpoints. No heartbeats are sent if the interval is {@code 0}.
+     *
+     * @return the heartbeat interval in milliseconds
+     */
+    public long getPushHeartbeatInterval() {
+        return pushHeartbeatInterval;
+    }
+
+    /**
+     * The time in milliseconds a push connection can be silent before it is
+     * closed. See default value in the
+     * {@link EndpointProperties#pushIdleTimeout} field annotation. Must be
+     * longer than the {@link #getPushHeartbeatInterval() heartbeat interval},
+     * and is only used with it.
+     *
+     * @return the idle timeout in milliseconds
+     */
+    public long getPushIdleTimeout() {
+        return pushIdleTimeout;
+    }
+
 }
@@ -18,6 +18,7 @@ package com.vaadin.hilla;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
@@ -30,6 +31,10 @@ import org.springframework.util.ClassUtils;
 
 /**
  * Keeps track of registered endpoints.
+ * <p>
+ * The registered endpoints are kept in an immutable snapshot that is replaced
+ * on each registration, so lookups are lock-free and safe while endpoints are
+ * re-registered, e.g. on hot reload.
  */
 @Component
 public class EndpointRegistry {
@@ -41,17 +46,24 @@ public class EndpointRegistry {
      */
     public static class VaadinEndpointData {
         final Map<String, Method> methods = new HashMap<>();
+        private final EndpointNameIndex<EndpointInvocationPlan> invocationPlans;
         private final Object vaadinEndpointObject;
 
         private VaadinEndpointData(Object vaadinEndpointObject,
-                Method... endpointMethods) {
+                Class<?> endpointClass, Method... endpointMethods) {
             this.vaadinEndpointObject = vaadinEndpointObject;
+            Map<String, EndpointInvocationPlan> plans = new LinkedHashMap<>();
             Stream.of(endpointMethods)
                     .filter(method -> method.getDeclaringClass() != Object.class
                             && !method.isBridge())
-                    .forEach(method -> methods.put(
-                            method.getName().toLowerCase(Locale.ENGLISH),
-                            method));
+                    .forEach(method -> {
+                        String methodName = method.getName()
+                                .toLowerCase(Locale.ENGLISH);
+                        methods.put(methodName, method);
+                        plans.put(methodName, new EndpointInvocationPlan(
+                                vaadinEndpointObject, endpointClass, method));
+                    });
+            invocationPlans = EndpointNameIndex.of(plans);
         }
 
         /**
@@ -63,8 +75,19 @@ public class EndpointRegistry {
          *         optional if no method was found
          */
         public Optional<Method> getMethod(String methodName) {
-            return Optional.ofNullable(
-                    methods.get(methodName.toLowerCase(Locale.ENGLISH)));
+            return Optional.ofNullable(invocationPlans.get(methodName))
+                    .map(EndpointInvocationPlan::getMethod);
+        }
+
+        /**
+         * Finds the invocation plan for a method with the given name.
+         *
+         * @param methodName
+         *            the name to look for
+         * @return the invocation plan, or {@code null} if no method was found
+         */
+        EndpointInvocationPlan getInvocationPlan(String methodName) {
+            return invocationPlans.get(methodName);
         }
 
         public Object getEndpointObject() {
@@ -73,7 +96,9 @@ public class EndpointRegistry {
     }
 
     private final EndpointNameChecker endpointNameChecker;
-    private final Map<String, VaadinEndpointData> vaadinEndpoints = new HashMap<>();
+    private volatile EndpointNameIndex<VaadinEndpointData> vaadinEndpoints = EndpointNameIndex
+            .empty();
+    private volatile int version;
 
     /**
      * Creates a new registry using the given name checker.
@@ -86,14 +111,14 @@ public class EndpointRegistry {
         this.endpointNameChecker = endpointNameChecker;
     }
 
-    private static String getEndpointNameForClass(Class<?> beanType) {
+    static String getEndpointNameForClass(Class<?> beanType) {
         // BrowserCallable has no value so this works
         return Optional.ofNullable(beanType.getAnnotation(Endpoint.class))
                 .map(Endpoint::value).filter(value -> !value.isEmpty())
                 .orElse(beanType.getSimpleName());
     }
 
-    void registerEndpoint(Object endpointBean) {
+    synchronized void registerEndpoint(Object endpointBean) {
         // Check the bean type instead of the implementation type in
         // case of e.g. proxies
         Class<?> beanType = ClassUtils.getUserClass(endpointBean.getClass());
@@ -120,17 +145,29 @@ public class EndpointRegistry {
         Method[] endpointPublicMethods = beanType.getMethods();
         AccessibleObject.setAccessible(endpointPublicMethods, true);
 
-        vaadinEndpoints.put(endpointName.toLowerCase(Locale.ENGLISH),
-                new VaadinEndpointData(endpointBean, endpointPublicMethods));
+        vaadinEndpoints = vaadinEndpoints.with(endpointName,
+                new VaadinEndpointData(endpointBean, beanType,
+                        endpointPublicMethods));
+        version++;
         LOGGER.debug("Registered endpoint '{}' with class '{}'", endpointName,
                 beanType);
     }
 
     VaadinEndpointData get(String endpointName) {
-        return vaadinEndpoints.get(endpointName.toLowerCase(Locale.ENGLISH));
+        return vaadinEndpoints.get(endpointName);
     }
 
     boolean isEmpty() {
         return vaadinEndpoints.isEmpty();
     }
+
+    /**
+     * Gets a number that changes every time an endpoint is registered, so that
+     * the data derived from the registered endpoints can be invalidated.
+     *
+     * @return the current version of the registry
+     */
+    int getVersion() {
+        return version;
+    }
 }
@@ -15,12 +15,15 @@
  */
 package com.vaadin.hilla;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.vaadin.flow.internal.hilla.EndpointRequestUtil;
+import com.vaadin.flow.server.auth.AccessAnnotationChecker;
 import com.vaadin.hilla.auth.EndpointAccessChecker;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.server.PathContainer;
@@ -46,12 +49,21 @@ public class EndpointUtil implements EndpointRequestUtil {
     @Autowired
     private EndpointAccessChecker accessChecker;
 
+    // The number of distinct request paths to keep the classification for,
+    // not to grow without limit when e.g. crawled with random paths
+    private static final int MAX_CACHED_REQUEST_PATHS = 1024;
+
+    private PathPattern endpointPathPattern;
+    private PathPattern batchPathPattern;
+    private volatile EndpointDataCache endpointDataCache = new EndpointDataCache(
+            -1, new ConcurrentHashMap<>());
+
     /**
      * Checks if the request is for an endpoint.
      * <p>
      * Note even if this method returns <code>true</code>, there is no guarantee
      * that an endpoint method will actually be called, e.g. access might be
-     * denied.
+     * denied. Batch requests are endpoint requests.
      *
      * @param request
      *            the HTTP request
@@ -60,15 +72,17 @@ public class EndpointUtil implements EndpointRequestUtil {
      */
     @Override
     public boolean isEndpointRequest(HttpServletRequest request) {
-        return getEndpoint(request).isPresent();
-    }
-
-    private Optional<Method> getEndpoint(HttpServletRequest request) {
-        return getEndpointData(request).map(EndpointData::method);
+        EndpointData data = getEndpointData(request);
+        return data.method() != null || data.batch();
     }
 
     /**
      * Checks if the given request goes to an anonymous (public) endpoint.
+     * <p>
+     * Batch requests are considered anonymous, as the calls they carry are not
+     * known before the body is read. The access to each call of a batch is
+     * checked separately when the call is made, the same way as for the calls
+     * sent on their own.
      *
      * @param request
      *            the HTTP request to check
@@ -77,59 +91,111 @@ public class EndpointUtil implements EndpointRequestUtil {
      */
     @Override
     public boolean isAnonymousEndpoint(HttpServletRequest request) {
-        var endpointData = getEndpointData(request);
-        if (endpointData.isEmpty()) {
-            return false;
-        }
-        var invokedEndpointClass = ClassUtils
-                .getUserClass(endpointData.get().endpointObject());
-        var methodDeclaringClass = endpointData.get().method()
-                .getDeclaringClass();
-        if (methodDeclaringClass.equals(invokedEndpointClass)) {
-            return accessChecker.getAccessAnnotationChecker().hasAccess(
-                    endpointData.get().method(), null, role -> false);
-        } else {
-            return accessChecker.getAccessAnnotationChecker()
-                    .hasAccess(invokedEndpointClass, null, role -> false);
-        }
+        return getEndpointData(request).anonymous();
     }
 
-    private Optional<PathPattern.PathMatchInfo> getPathMatchInfo(
-            HttpServletRequest request) {
-        PathPatternParser pathParser = new PathPatternParser();
-        PathPattern pathPattern = pathParser
+    @PostConstruct
+    void compileEndpointPathPattern() {
+        endpointPathPattern = new PathPatternParser()
                 .parse(endpointProperties.getEndpointPrefix()
                         + EndpointController.ENDPOINT_METHODS);
+        batchPathPattern = new PathPatternParser()
+                .parse(endpointProperties.getEndpointPrefix()
+                        + EndpointController.ENDPOINT_BATCH);
+    }
 
+    private static PathContainer getPathWithinApplication(
+            HttpServletRequest request) {
         RequestPath requestPath = RequestPath.parse(request.getRequestURI(),
                 request.getContextPath());
-        PathContainer pathWithinApplication = requestPath
-                .pathWithinApplication();
-        PathPattern.PathMatchInfo matchInfo = pathPattern
-                .matchAndExtract(pathWithinApplication);
-        return Optional.ofNullable(matchInfo);
+        return requestPath.pathWithinApplication();
     }
 
-    private Optional<EndpointData> getEndpointData(HttpServletRequest request) {
-        Optional<PathPattern.PathMatchInfo> matchInfo = getPathMatchInfo(
-                request);
-        if (matchInfo.isEmpty()) {
-            return Optional.empty();
+    private EndpointData getEndpointData(HttpServletRequest request) {
+        if (accessChecker.getAccessAnnotationChecker()
+                .getClass() != AccessAnnotationChecker.class) {
+            // A custom checker may answer differently over time, e.g. based
+            // on configuration, so its answers are not cached
+            return findEndpointData(request);
+        }
+        int registryVersion = registry.getVersion();
+        EndpointDataCache cache = endpointDataCache;
+        if (cache.registryVersion() != registryVersion) {
+            cache = new EndpointDataCache(registryVersion,
+                    new ConcurrentHashMap<>());
+            endpointDataCache = cache;
+        }
+
+        String requestURI = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        EndpointData data = cache.entries().get(requestURI);
+        if (data != null && Objects.equals(data.contextPath(), contextPath)) {
+            return data;
         }
 
-        Map<String, String> uriVariables = matchInfo.get().getUriVariables();
+        data = findEndpointData(request);
+        if (cache.entries().size() >= MAX_CACHED_REQUEST_PATHS) {
+            // Start over rather than tracking the usage of the entries, the
+            // paths in use are quickly cached again
+            cache.entries().clear();
+        }
+        cache.entries().put(requestURI, data);
+        return data;
+    }
+
+    private EndpointData findEndpointData(HttpServletRequest request) {
+        String contextPath = request.getContextPath();
+        PathContainer path = getPathWithinApplication(request);
+        if (batchPathPattern.matches(path)) {
+            return new EndpointData(contextPath, null, true, true);
+        }
+        PathPattern.PathMatchInfo matchInfo = endpointPathPattern
+                .matchAndExtract(path);
+        if (matchInfo == null) {
+            return new EndpointData(contextPath, null, false, false);
+        }
+
+        Map<String, String> uriVariables = matchInfo.getUriVariables();
         String endpointName = uriVariables.get("endpoint");
         String methodName = uriVariables.get("method");
         EndpointRegistry.VaadinEndpointData data = registry.get(endpointName);
         if (data == null) {
-            return Optional.empty();
+            return new EndpointData(contextPath, null, false, false);
+        }
+        return data.getMethod(methodName)
+                .map(method -> new EndpointData(contextPath, method, false,
+                        isAnonymous(method, data.getEndpointObject())))
+                .orElseGet(() -> new EndpointData(contextPath, null, false,
+                        false));
+    }
+
+    private boolean isAnonymous(Method method, Object endpointObject) {
+        var invokedEndpointClass = ClassUtils.getUserClass(endpointObject);
+        var methodDeclaringClass = method.getDeclaringClass();
+        if (methodDeclaringClass.equals(invokedEndpointClass)) {
+            return accessChecker.getAccessAnnotationChecker().hasAccess(method,
+                    null, role -> false);
+        } else {
+            return accessChecker.getAccessAnnotationChecker()
+                    .hasAccess(invokedEndpointClass, null, role -> false);
         }
-        Optional<Method> endpointMethod = data.getMethod(methodName);
-        return endpointMethod.map(
-                method -> new EndpointData(method, data.getEndpointObject()));
     }
 
-    private record EndpointData(Method method, Object endpointObject) {
+    /**
+     * The classification of a request path: the endpoint method it calls, if
+     * any, whether it is a batch of calls, and whether it can be requested
+     * anonymously.
+     */
+    private record EndpointData(String contextPath, Method method,
+            boolean batch, boolean anonymous) {
+    }
+
+    /**
+     * The classifications of request paths, keyed by request URI, valid for the
+     * given version of the endpoint registry.
+     */
+    private record EndpointDataCache(int registryVersion,
+            Map<String, EndpointData> entries) {
     }
 
 }
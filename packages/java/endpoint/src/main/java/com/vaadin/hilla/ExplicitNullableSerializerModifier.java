@@ -0,0 +1,487 @@
+/*
+ * Copyright 2000-2024 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.hilla;
+
+import java.beans.Introspector;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.PropertyName;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.jsonFormatVisitors.JsonFormatVisitorWrapper;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.type.ArrayType;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.databind.type.MapType;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+
+import com.vaadin.hilla.ExplicitNullableTypeCheckerHelper.TypeKind;
+
+import static com.vaadin.hilla.ExplicitNullableTypeCheckerHelper.checkNullValue;
+import static com.vaadin.hilla.ExplicitNullableTypeCheckerHelper.getTypeKind;
+
+/**
+ * Enforces the rules of {@link ExplicitNullableTypeChecker} while a value is
+ * serialized, so that the value does not need to be walked separately before
+ * serialization.
+ * <p>
+ * The checks only apply to the values written with a writer returned from
+ * {@link #withCheck(ObjectWriter, Type, boolean)}, and fail the serialization
+ * with a {@link NullabilityViolationException} that has the same message as the
+ * error from the checker. The declared types are followed the same way as in
+ * the checker, with the following differences: only the bean properties that
+ * are actually serialized are checked, the properties are checked in the
+ * serialization order, and the null items of collections, arrays and maps are
+ * reported before the errors inside the other items. Thus, when a value has
+ * several errors, the reported one may differ from the checker.
+ */
+final class ExplicitNullableSerializerModifier extends BeanSerializerModifier {
+
+    private static final Object CHECK_ATTRIBUTE = NullabilityCheck.class;
+
+    /**
+     * Returns a writer that checks the written values against the given
+     * expected type.
+     *
+     * @param writer
+     *            the writer to use for the value
+     * @param expectedType
+     *            the declared type expected for the value
+     * @param requiredByContext
+     *            {@code true} if the context defines that the values are
+     *            required
+     * @return the checking writer
+     */
+    static ObjectWriter withCheck(ObjectWriter writer, Type expectedType,
+            boolean requiredByContext) {
+        return writer.withAttribute(CHECK_ATTRIBUTE,
+                new NullabilityCheck(expectedType, requiredByContext));
+    }
+
+    @Override
+    public List<BeanPropertyWriter> changeProperties(SerializationConfig config,
+            BeanDescription beanDesc, List<BeanPropertyWriter> beanProperties) {
+        beanProperties.replaceAll(NullCheckingPropertyWriter::new);
+        return beanProperties;
+    }
+
+    @Override
+    public JsonSerializer<?> modifyArraySerializer(SerializationConfig config,
+            ArrayType valueType, BeanDescription beanDesc,
+            JsonSerializer<?> serializer) {
+        return new NullCheckingContainerSerializer(serializer);
+    }
+
+    @Override
+    public JsonSerializer<?> modifyCollectionSerializer(
+            SerializationConfig config, CollectionType valueType,
+            BeanDescription beanDesc, JsonSerializer<?> serializer) {
+        return new NullCheckingContainerSerializer(serializer);
+    }
+
+    @Override
+    public JsonSerializer<?> modifyMapSerializer(SerializationConfig config,
+            MapType valueType, BeanDescription beanDesc,
+            JsonSerializer<?> serializer) {
+        return new NullCheckingContainerSerializer(serializer);
+    }
+
+    private static NullabilityCheck getCheck(SerializerProvider provider) {
+        return (NullabilityCheck) provider.getAttribute(CHECK_ATTRIBUTE);
+    }
+
+    /**
+     * Thrown when a value does not match the nullability rules of its declared
+     * type.
+     */
+    static class NullabilityViolationException extends JsonMappingException {
+        NullabilityViolationException(Closeable processor, String message) {
+            super(processor, message);
+        }
+
+        /**
+         * Gets the error message, as returned from
+         * {@link ExplicitNullableTypeChecker}.
+         *
+         * @return the error message
+         */
+        String getError() {
+            return getOriginalMessage();
+        }
+
+        private NullabilityViolationException withPrefix(String prefix) {
+            return new NullabilityViolationException(_processor,
+                    prefix + getError());
+        }
+    }
+
+    /**
+     * The state of the check of a single value, i.e. the declared type of the
+     * value currently being serialized, or {@code null} if the value is not
+     * checked.
+     */
+    private static final class NullabilityCheck {
+        private final boolean requiredByContext;
+        private Type expectedType;
+
+        private NullabilityCheck(Type expectedType, boolean requiredByContext) {
+            this.expectedType = expectedType;
+            this.requiredByContext = requiredByContext;
+        }
+    }
+
+    /**
+     * Checks a bean property, when the bean is checked for the declared type of
+     * a class that has the property.
+     */
+    private static final class NullCheckingPropertyWriter
+            extends BeanPropertyWriter {
+        private final String checkedName;
+        private final Class<?> declaringClass;
+        private final Type propertyType;
+        private final boolean requiredInContext;
+        private final boolean requiredOutOfContext;
+
+        private NullCheckingPropertyWriter(BeanPropertyWriter base) {
+            super(base);
+            Field field = getCheckedField(base);
+            if (field == null) {
+                checkedName = null;
+                declaringClass = null;
+                propertyType = null;
+                requiredInContext = false;
+                requiredOutOfContext = false;
+                return;
+            }
+            Method getter = ((AnnotatedMethod) base.getMember()).getAnnotated();
+            checkedName = field.getName();
+            declaringClass = getter.getDeclaringClass();
+            propertyType = getter.getGenericReturnType();
+            requiredInContext = ExplicitNullableTypeChecker.isRequired(field,
+                    true);
+            requiredOutOfContext = ExplicitNullableTypeChecker.isRequired(field,
+                    false);
+            // Null values left out with the NON_NULL inclusion are not
+            // serialized, and hence not checked
+            if (!hasNullSerializer() && !base.willSuppressNulls()) {
+                assignNullSerializer(NullValueSerializer.INSTANCE);
+            }
+        }
+
+        private NullCheckingPropertyWriter(NullCheckingPropertyWriter base,
+                PropertyName name) {
+            super(base, name);
+            checkedName = base.checkedName;
+            declaringClass = base.declaringClass;
+            propertyType = base.propertyType;
+            requiredInContext = base.requiredInContext;
+            requiredOutOfContext = base.requiredOutOfContext;
+        }
+
+        @Override
+        protected BeanPropertyWriter _new(PropertyName newName) {
+            return new NullCheckingPropertyWriter(this, newName);
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen,
+                SerializerProvider prov) throws Exception {
+            NullabilityCheck check = getCheck(prov);
+            if (check == null) {
+                super.serializeAsField(bean, gen, prov);
+                return;
+            }
+
+            Type beanType = check.expectedType;
+            boolean checked = isChecked(beanType, check.requiredByContext);
+            check.expectedType = checked ? propertyType : null;
+            try {
+                super.serializeAsField(bean, gen, prov);
+            } catch (NullabilityViolationException e) {
+                if (!checked) {
+                    throw e;
+                }
+                throw e.withPrefix(String.format(
+                        "Unexpected null value in Java "
+                                + "Bean type '%s' property '%s'. ",
+                        beanType.getTypeName(), checkedName));
+            } finally {
+                check.expectedType = beanType;
+            }
+        }
+
+        private boolean isChecked(Type beanType, boolean requiredByContext) {
+            return checkedName != null && beanType instanceof Class<?> clazz
+                    && getTypeKind(clazz) == TypeKind.BEAN
+                    && declaringClass.isAssignableFrom(clazz)
+                    && (requiredByContext ? requiredInContext
+                            : requiredOutOfContext);
+        }
+
+        // The same properties as in ExplicitNullableTypeCheckerHelper: the
+        // ones with a getter backed by a field in the same class
+        private static Field getCheckedField(BeanPropertyWriter writer) {
+            if (!(writer.getMember() instanceof AnnotatedMethod member)
+                    || member.getParameterCount() != 0) {
+                return null;
+            }
+            Method getter = member.getAnnotated();
+            String getterName = getter.getName();
+            String name;
+            if (getterName.startsWith("get") && getterName.length() > 3) {
+                name = Introspector.decapitalize(getterName.substring(3));
+            } else if (getterName.startsWith("is") && getterName.length() > 2
+                    && getter.getReturnType() == boolean.class) {
+                name = Introspector.decapitalize(getterName.substring(2));
+            } else {
+                return null;
+            }
+
+            Field field;
+            try {
+                field = getter.getDeclaringClass().getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                return null;
+            }
+            return !Modifier.isStatic(field.getModifiers())
+                    && !Modifier.isTransient(field.getModifiers())
+                    && !field.isAnnotationPresent(JsonIgnore.class) ? field
+                            : null;
+        }
+    }
+
+    /**
+     * Writes the null values of the checked bean properties, if allowed.
+     */
+    private static final class NullValueSerializer
+            extends JsonSerializer<Object> {
+        private static final NullValueSerializer INSTANCE = new NullValueSerializer();
+
+        @Override
+        public void serialize(Object value, JsonGenerator gen,
+                SerializerProvider serializers) throws IOException {
+            NullabilityCheck check = getCheck(serializers);
+            String error = check == null || check.expectedType == null ? null
+                    : checkNullValue(check.expectedType);
+            if (error != null) {
+                throw new NullabilityViolationException(gen, error);
+            }
+            gen.writeNull();
+        }
+    }
+
+    /**
+     * Checks the items of a collection or an array, or the values of a map,
+     * when the declared type of the container is checked.
+     */
+    private static final class NullCheckingContainerSerializer
+            extends JsonSerializer<Object>
+            implements ContextualSerializer, ResolvableSerializer {
+        private final JsonSerializer<Object> delegate;
+
+        @SuppressWarnings("unchecked")
+        private NullCheckingContainerSerializer(JsonSerializer<?> delegate) {
+            this.delegate = (JsonSerializer<Object>) delegate;
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator gen,
+                SerializerProvider serializers) throws IOException {
+            serialize(value, gen, serializers, null);
+        }
+
+        @Override
+        public void serializeWithType(Object value, JsonGenerator gen,
+                SerializerProvider serializers, TypeSerializer typeSer)
+                throws IOException {
+            serialize(value, gen, serializers, typeSer);
+        }
+
+        private void serialize(Object value, JsonGenerator gen,
+                SerializerProvider serializers, TypeSerializer typeSer)
+                throws IOException {
+            NullabilityCheck check = getCheck(serializers);
+            if (check == null) {
+                serializeWithDelegate(value, gen, serializers, typeSer);
+                return;
+            }
+
+            Type containerType = check.expectedType;
+            TypeKind kind = containerType == null ? null
+                    : getTypeKind(containerType);
+            Type itemType = null;
+            if (kind == TypeKind.ITERABLE && value instanceof Iterable<?>
+                    || kind == TypeKind.ARRAY && value instanceof Object[]) {
+                itemType = getItemType(containerType);
+            } else if (kind == TypeKind.MAP && value instanceof Map<?, ?>) {
+                itemType = containerType instanceof ParameterizedType parameterizedType
+                        ? parameterizedType.getActualTypeArguments()[1]
+                        : Object.class;
+            }
+            if (itemType != null) {
+                checkNullItems(value, gen, containerType, itemType);
+            }
+
+            check.expectedType = itemType;
+            try {
+                serializeWithDelegate(value, gen, serializers, typeSer);
+            } catch (NullabilityViolationException e) {
+                if (itemType == null) {
+                    throw e;
+                }
+                throw e.withPrefix(
+                        value instanceof Map<?, ?>
+                                ? String.format(
+                                        "Unexpected null value for key '%s' of "
+                                                + "map type '%s'. ",
+                                        e.getPath().isEmpty() ? null
+                                                : e.getPath().get(0)
+                                                        .getFieldName(),
+                                        containerType)
+                                : getItemPrefix(containerType));
+            } finally {
+                check.expectedType = containerType;
+            }
+        }
+
+        private void serializeWithDelegate(Object value, JsonGenerator gen,
+                SerializerProvider serializers, TypeSerializer typeSer)
+                throws IOException {
+            if (typeSer == null) {
+                delegate.serialize(value, gen, serializers);
+            } else {
+                delegate.serializeWithType(value, gen, serializers, typeSer);
+            }
+        }
+
+        private static void checkNullItems(Object value, JsonGenerator gen,
+                Type containerType, Type itemType)
+                throws NullabilityViolationException {
+            if (value instanceof Map<?, ?> map) {
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    String error = entry.getValue() == null
+                            ? checkNullValue(itemType)
+                            : null;
+                    if (error != null) {
+                        throw new NullabilityViolationException(gen,
+                                String.format(
+                                        "Unexpected null value for key '%s' of "
+                                                + "map type '%s'. %s",
+                                        entry.getKey(), containerType, error));
+                    }
+                }
+                return;
+            }
+
+            Iterable<?> items = value instanceof Object[] array
+                    ? Arrays.asList(array)
+                    : (Iterable<?>) value;
+            for (Object item : items) {
+                String error = item == null ? checkNullValue(itemType) : null;
+                if (error != null) {
+                    throw new NullabilityViolationException(gen,
+                            getItemPrefix(containerType) + error);
+                }
+            }
+        }
+
+        // The same item types as in ExplicitNullableTypeCheckerHelper
+        private static Type getItemType(Type containerType) {
+            if (containerType instanceof ParameterizedType parameterizedType) {
+                return parameterizedType.getActualTypeArguments()[0];
+            }
+            return ((Class<?>) containerType).getComponentType();
+        }
+
+        private static String getItemPrefix(Type containerType) {
+            return String.format("Unexpected null item in %s type '%s'. ",
+                    containerType instanceof ParameterizedType ? "collection"
+                            : "array",
+                    containerType);
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider prov,
+                BeanProperty property) throws JsonMappingException {
+            JsonSerializer<?> contextual = prov
+                    .handleSecondaryContextualization(delegate, property);
+            return contextual == delegate ? this
+                    : new NullCheckingContainerSerializer(contextual);
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider)
+                throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer resolvable) {
+                resolvable.resolve(provider);
+            }
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Object value) {
+            return delegate.isEmpty(provider, value);
+        }
+
+        @Override
+        public boolean usesObjectId() {
+            return delegate.usesObjectId();
+        }
+
+        @Override
+        public JsonSerializer<Object> unwrappingSerializer(
+                NameTransformer unwrapper) {
+            return delegate.unwrappingSerializer(unwrapper);
+        }
+
+        @Override
+        public Class<Object> handledType() {
+            return delegate.handledType();
+        }
+
+        @Override
+        public JsonSerializer<?> getDelegatee() {
+            return delegate;
+        }
+
+        @Override
+        public void acceptJsonFormatVisitor(JsonFormatVisitorWrapper visitor,
+                JavaType type) throws JsonMappingException {
+            delegate.acceptJsonFormatVisitor(visitor, type);
+        }
+    }
+}
@@ -19,6 +19,9 @@ package com.vaadin.hilla;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -26,15 +29,17 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.googlecode.gentyref.GenericTypeReflector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +50,32 @@ import static com.vaadin.hilla.ExplicitNullableTypeChecker.isRequired;
  */
 class ExplicitNullableTypeCheckerHelper {
 
+    private static final MethodType GETTER_TYPE = MethodType
+            .methodType(Object.class, Object.class);
+
+    // The kinds of values to check, by the raw class of the expected type
+    private static final ClassValue<TypeKind> TYPE_KINDS = new ClassValue<>() {
+        @Override
+        protected TypeKind computeValue(Class<?> type) {
+            return TypeKind.of(type);
+        }
+    };
+
+    // The bean properties to check, by bean class, when the bean property
+    // nullability is required by context or not
+    private static final ClassValue<BeanCheckPlan> REQUIRED_BEAN_PLANS = new ClassValue<>() {
+        @Override
+        protected BeanCheckPlan computeValue(Class<?> type) {
+            return BeanCheckPlan.of(type, true);
+        }
+    };
+    private static final ClassValue<BeanCheckPlan> BEAN_PLANS = new ClassValue<>() {
+        @Override
+        protected BeanCheckPlan computeValue(Class<?> type) {
+            return BeanCheckPlan.of(type, false);
+        }
+    };
+
     // A map for tracking already visited Beans.
     private Map<Type, Set<Object>> visitedBeans;
 
@@ -111,21 +142,46 @@ class ExplicitNullableTypeCheckerHelper {
         }
 
         if (value != null) {
-            if (Iterable.class.isAssignableFrom(clazz)) {
+            switch (TYPE_KINDS.get(clazz)) {
+            case ITERABLE:
                 return checkIterable((Iterable<?>) value, expectedType);
-            } else if (clazz.isArray() && value instanceof Object[]) {
-                return checkIterable(Arrays.asList((Object[]) value),
-                        expectedType);
-            } else if (Map.class.isAssignableFrom(clazz)) {
+            case ARRAY:
+                return value instanceof Object[]
+                        ? checkIterable(Arrays.asList((Object[]) value),
+                                expectedType)
+                        : null;
+            case MAP:
                 return checkMapValues((Map<?, ?>) value, expectedType);
-            } else if (expectedType instanceof Class<?>
-                    && !clazz.getName().startsWith("java.")) {
-                return checkBeanFields(value, expectedType);
-            } else {
+            case BEAN:
+                return expectedType instanceof Class<?>
+                        ? checkBeanFields(value, expectedType)
+                        : null;
+            default:
                 return null;
             }
         }
 
+        return checkNullValue(expectedType, clazz);
+    }
+
+    /**
+     * Validates a null value for the given expected method parameter, return
+     * value or property type.
+     *
+     * @param expectedType
+     *            the declared type expected for the value
+     * @return error message when the expected type does not explicitly allow
+     *         null, or null meaning the value is OK.
+     */
+    static String checkNullValue(Type expectedType) {
+        if (expectedType instanceof TypeVariable) {
+            return null;
+        }
+        return checkNullValue(expectedType,
+                GenericTypeReflector.erase(expectedType));
+    }
+
+    private static String checkNullValue(Type expectedType, Class<?> clazz) {
         if (expectedType.equals(Void.TYPE)) {
             // Corner case: void methods return null value by design
             return null;
@@ -198,62 +254,132 @@ class ExplicitNullableTypeCheckerHelper {
         }
         markAsVisited(value, expectedType);
         Class<?> clazz = (Class<?>) expectedType;
-        try {
-            for (PropertyDescriptor propertyDescriptor : Introspector
-                    .getBeanInfo(clazz).getPropertyDescriptors()) {
-                if (!isPropertySubjectForChecking(propertyDescriptor)) {
-                    continue;
-                }
+        BeanCheckPlan plan = (requiredByContext ? REQUIRED_BEAN_PLANS
+                : BEAN_PLANS).get(clazz);
+        if (plan.error() != null) {
+            return plan.error();
+        }
 
-                Method readMethod = propertyDescriptor.getReadMethod();
-                Type propertyType = readMethod.getGenericReturnType();
-                Object propertyValue = readMethod.invoke(value);
-
-                String error = checkValueForType(propertyValue, propertyType);
-                if (error != null) {
-                    return String.format(
-                            "Unexpected null value in Java "
-                                    + "Bean type '%s' property '%s'. %s",
-                            expectedType.getTypeName(),
-                            propertyDescriptor.getName(), error);
-                }
+        for (BeanProperty property : plan.properties()) {
+            Object propertyValue;
+            try {
+                propertyValue = property.getter().invokeExact(value);
+            } catch (Throwable e) {
+                InvocationTargetException exception = new InvocationTargetException(
+                        e);
+                getLogger().error(
+                        "Cannot check for null property values in Java Bean",
+                        exception);
+                return exception.toString();
+            }
+
+            String error = checkValueForType(propertyValue, property.type());
+            if (error != null) {
+                return String.format(
+                        "Unexpected null value in Java "
+                                + "Bean type '%s' property '%s'. %s",
+                        expectedType.getTypeName(), property.name(), error);
             }
-        } catch (IntrospectionException | InvocationTargetException
-                | IllegalAccessException e) {
-            getLogger().error(
-                    "Cannot check for null property values in Java Bean", e);
-            return e.toString();
         }
 
         return null;
     }
 
-    private boolean isPropertySubjectForChecking(
-            PropertyDescriptor propertyDescriptor) {
+    private static boolean isPropertySubjectForChecking(
+            PropertyDescriptor propertyDescriptor, boolean requiredByContext) {
+        String name = propertyDescriptor.getName();
+        Method readMethod = propertyDescriptor.getReadMethod();
+        if (readMethod == null) {
+            return false;
+        }
+
+        Field field;
         try {
-            String name = propertyDescriptor.getName();
-            Method readMethod = propertyDescriptor.getReadMethod();
-            if (readMethod == null) {
-                return false;
-            }
+            field = readMethod.getDeclaringClass().getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            // Not a property backed by a field
+            return false;
+        }
+        return (!Modifier.isStatic(field.getModifiers())
+                && !Modifier.isTransient(field.getModifiers())
+                && isRequired(field, requiredByContext)
+                && !field.isAnnotationPresent(JsonIgnore.class));
+    }
+
+    /**
+     * Gets the kind of check done for the values of the given expected type.
+     *
+     * @param expectedType
+     *            the declared type expected for the values
+     * @return the kind of check, or {@code null} if the values are not checked
+     */
+    static TypeKind getTypeKind(Type expectedType) {
+        if (expectedType instanceof Class<?> clazz) {
+            return TYPE_KINDS.get(clazz);
+        } else if (expectedType instanceof ParameterizedType parameterizedType) {
+            return TYPE_KINDS.get((Class<?>) parameterizedType.getRawType());
+        }
+        return null;
+    }
+
+    /**
+     * The kind of check to do for the values of a type.
+     */
+    enum TypeKind {
+        ITERABLE, ARRAY, MAP, BEAN, OTHER;
 
-            Class<?> declaringClass = readMethod.getDeclaringClass();
-            final Set<String> declaredFieldNames = Arrays
-                    .stream(declaringClass.getDeclaredFields())
-                    .map(Field::getName).collect(Collectors.toSet());
-            if (!declaredFieldNames.contains(name)) {
-                return false;
+        static TypeKind of(Class<?> clazz) {
+            if (Iterable.class.isAssignableFrom(clazz)) {
+                return ITERABLE;
+            } else if (clazz.isArray()) {
+                return ARRAY;
+            } else if (Map.class.isAssignableFrom(clazz)) {
+                return MAP;
+            } else if (!clazz.getName().startsWith("java.")) {
+                return BEAN;
+            } else {
+                return OTHER;
             }
+        }
+    }
 
-            Field field = readMethod.getDeclaringClass().getDeclaredField(name);
-            return (!Modifier.isStatic(field.getModifiers())
-                    && !Modifier.isTransient(field.getModifiers())
-                    && isRequired(field, requiredByContext)
-                    && !field.isAnnotationPresent(JsonIgnore.class));
-        } catch (NoSuchFieldException e) {
-            getLogger().error("Unexpected missing declared field in Java Bean",
-                    e);
-            return false;
+    /**
+     * A bean property to check for null values.
+     */
+    private record BeanProperty(String name, MethodHandle getter, Type type) {
+    }
+
+    /**
+     * The properties of a bean class to check for null values, resolved once
+     * per class from the bean info and the declared fields.
+     */
+    private record BeanCheckPlan(List<BeanProperty> properties, String error) {
+
+        static BeanCheckPlan of(Class<?> clazz, boolean requiredByContext) {
+            try {
+                List<BeanProperty> properties = new ArrayList<>();
+                for (PropertyDescriptor propertyDescriptor : Introspector
+                        .getBeanInfo(clazz).getPropertyDescriptors()) {
+                    if (!isPropertySubjectForChecking(propertyDescriptor,
+                            requiredByContext)) {
+                        continue;
+                    }
+
+                    Method readMethod = propertyDescriptor.getReadMethod();
+                    readMethod.trySetAccessible();
+                    MethodHandle getter = MethodHandles.lookup()
+                            .unreflect(readMethod).asType(GETTER_TYPE);
+                    properties.add(new BeanProperty(
+                            propertyDescriptor.getName(), getter,
+                            readMethod.getGenericReturnType()));
+                }
+                return new BeanCheckPlan(List.copyOf(properties), null);
+            } catch (IntrospectionException | IllegalAccessException e) {
+                getLogger().error(
+                        "Cannot check for null property values in Java Bean",
+                        e);
+                return new BeanCheckPlan(List.of(), e.toString());
+            }
         }
     }
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2000-2024 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.hilla;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.context.ApplicationContext;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records the metrics of endpoint calls in a Micrometer {@link MeterRegistry}.
+ * <p>
+ * The following meters are tagged with the {@code endpoint} and {@code method}
+ * names:
+ * <ul>
+ * <li>{@value #CALLS}: a timer of the whole calls, also tagged with the
+ * {@code outcome} of the call, whose count gives the number of calls per
+ * outcome</li>
+ * <li>{@value #STAGES}: a timer of each stage of the calls, also tagged with
+ * the {@code stage}</li>
+ * <li>{@value #REQUEST_SIZE} and {@value #RESPONSE_SIZE}: distribution
+ * summaries of the body sizes in bytes</li>
+ * </ul>
+ * <p>
+ * For internal use only. May be renamed or removed in a future release.
+ */
+final class MicrometerEndpointMetrics extends EndpointMetrics {
+    static final String CALLS = "hilla.endpoint.calls";
+    static final String STAGES = "hilla.endpoint.call.stages";
+    static final String REQUEST_SIZE = "hilla.endpoint.request.size";
+    static final String RESPONSE_SIZE = "hilla.endpoint.response.size";
+
+    private final MeterRegistry registry;
+
+    MicrometerEndpointMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    static EndpointMetrics create(ApplicationContext applicationContext) {
+        MeterRegistry registry = applicationContext
+                .getBeanProvider(MeterRegistry.class).getIfUnique();
+        return registry == null ? DISABLED
+                : new MicrometerEndpointMetrics(registry);
+    }
+
+    @Override
+    MethodMetrics forMethod(String endpointName, String methodName) {
+        return new Meters(
+                Tags.of("endpoint", endpointName, "method", methodName));
+    }
+
+    private final class Meters implements MethodMetrics {
+        private final Tags tags;
+        private final Timer[] stageTimers;
+        // Registered on first use, as most calls have the same outcome
+        private final Timer[] callTimers = new Timer[Outcome.values().length];
+        private final DistributionSummary requestSize;
+        private final DistributionSummary responseSize;
+
+        private Meters(Tags tags) {
+            this.tags = tags;
+            Stage[] stages = Stage.values();
+            stageTimers = new Timer[stages.length];
+            for (Stage stage : stages) {
+                stageTimers[stage.ordinal()] = Timer.builder(STAGES)
+                        .description("Time spent in each stage of the calls")
+                        .tags(tags).tag("stage", stage.getTag())
+                        .register(registry);
+            }
+            requestSize = DistributionSummary.builder(REQUEST_SIZE)
+                    .description("Size of the request bodies").baseUnit("bytes")
+                    .tags(tags).register(registry);
+            responseSize = DistributionSummary.builder(RESPONSE_SIZE)
+                    .description("Size of the response bodies")
+                    .baseUnit("bytes").tags(tags).register(registry);
+        }
+
+        @Override
+        public long start() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public long recordStage(Stage stage, long startTime) {
+            long now = System.nanoTime();
+            stageTimers[stage.ordinal()].record(now - startTime,
+                    TimeUnit.NANOSECONDS);
+            return now;
+        }
+
+        @Override
+        public void recordCall(Outcome outcome, long startTime) {
+            Timer timer = callTimers[outcome.ordinal()];
+            if (timer == null) {
+                // Registering again in a race returns the same timer
+                timer = Timer.builder(CALLS)
+                        .description("Time spent serving the calls").tags(tags)
+                        .tag("outcome", outcome.getTag()).register(registry);
+                callTimers[outcome.ordinal()] = timer;
+            }
+            timer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void recordRequestSize(long bytes) {
+            requestSize.record(bytes);
+        }
+
+        @Override
+        public void recordResponseSize(long bytes) {
+            responseSize.record(bytes);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+    }
+}
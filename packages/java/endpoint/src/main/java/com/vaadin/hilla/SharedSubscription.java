@@ -0,0 +1,40 @@
+/*
+ * Copyright 2000-2022 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.hilla;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an endpoint method returning a {@code Flux} as shared by the push
+ * subscriptions of the same user that call it with the same parameters.
+ * <p>
+ * The access is checked and the parameters are validated for every
+ * subscription, but the method is invoked only once for all the identical
+ * subscriptions, and each item is serialized only once. Later subscriptions
+ * only receive the items emitted after they subscribed. The subscriptions are
+ * identical only if their principals have the same class and name, or if they
+ * are all anonymous, so that the items computed for one user are never sent to
+ * another one.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD })
+public @interface SharedSubscription {
+}
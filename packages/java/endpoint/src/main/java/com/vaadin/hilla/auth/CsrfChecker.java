@@ -15,17 +15,13 @@
  */
 package com.vaadin.hilla.auth;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.util.Arrays;
-import java.util.Optional;
-import java.util.stream.Stream;
-
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletRequest;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.util.Enumeration;
+
 import com.vaadin.flow.internal.springcsrf.SpringCsrfTokenUtil;
 import com.vaadin.flow.server.VaadinServletContext;
 import com.vaadin.flow.server.startup.ApplicationConfiguration;
@@ -33,17 +29,27 @@ import com.vaadin.flow.server.startup.ApplicationConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
 /**
  * Handles checking of a CSRF token in endpoint requests.
+ * <p>
+ * The token cookie is found by scanning the {@code Cookie} header instead of
+ * creating the cookie objects of the request, and the tokens are compared in
+ * place. Whether Spring Security CSRF protection can be used is decided once,
+ * so that applications without it do not probe each request for a Spring token.
  */
 @Component
 public class CsrfChecker {
 
     private static final String VAADIN_CSRF_TOKEN_HEADER_NAME = "X-CSRF-Token";
     private static final String VAADIN_CSRF_COOKIE_NAME = "csrfToken";
+    private static final String COOKIE_HEADER_NAME = "Cookie";
+    private static final String SPRING_CSRF_TOKEN_CLASS_NAME = "org.springframework.security.web.csrf.CsrfToken";
 
     private boolean csrfProtectionEnabled = true;
+    private final boolean springCsrfAvailable = ClassUtils.isPresent(
+            SPRING_CSRF_TOKEN_CLASS_NAME, CsrfChecker.class.getClassLoader());
 
     /**
      * Creates a new csrf checker for the given context.
@@ -102,7 +108,7 @@ public class CsrfChecker {
         }
 
         String csrfTokenInRequest = getCsrfTokenInRequest(request);
-        if (compareCsrfTokens(csrfTokenInCookie, csrfTokenInRequest)) {
+        if (!isEqualToken(csrfTokenInCookie, csrfTokenInRequest)) {
             if (getLogger().isInfoEnabled()) {
                 getLogger().info("Invalid CSRF token in endpoint request");
             }
@@ -113,11 +119,20 @@ public class CsrfChecker {
         return true;
     }
 
-    private boolean compareCsrfTokens(String csrfTokenInCookie,
+    // Compares all the characters regardless of where the tokens differ, so
+    // that the time taken does not reveal the expected token
+    private static boolean isEqualToken(String csrfTokenInCookie,
             String csrfTokenInRequest) {
-        return csrfTokenInRequest == null || !MessageDigest.isEqual(
-                csrfTokenInCookie.getBytes(StandardCharsets.UTF_8),
-                csrfTokenInRequest.getBytes(StandardCharsets.UTF_8));
+        if (csrfTokenInRequest == null
+                || csrfTokenInRequest.length() != csrfTokenInCookie.length()) {
+            return false;
+        }
+        int difference = 0;
+        for (int i = 0; i < csrfTokenInCookie.length(); i++) {
+            difference |= csrfTokenInCookie.charAt(i)
+                    ^ csrfTokenInRequest.charAt(i);
+        }
+        return difference == 0;
     }
 
     String getCsrfTokenInRequest(HttpServletRequest request) {
@@ -125,11 +140,84 @@ public class CsrfChecker {
     }
 
     String getCsrfTokenInCookie(HttpServletRequest request) {
-        return Optional.ofNullable(request.getCookies()).map(Arrays::stream)
-                .orElse(Stream.empty())
-                .filter(cookie -> cookie.getName()
-                        .equals(VAADIN_CSRF_COOKIE_NAME))
-                .findFirst().map(Cookie::getValue).orElse(null);
+        // Clients may send the cookies in several headers
+        Enumeration<String> cookieHeaders = request
+                .getHeaders(COOKIE_HEADER_NAME);
+        while (cookieHeaders != null && cookieHeaders.hasMoreElements()) {
+            String value = findCookieValue(cookieHeaders.nextElement(),
+                    VAADIN_CSRF_COOKIE_NAME);
+            if (value != null) {
+                return value;
+            }
+        }
+        // The headers might not be available, e.g. if the request is wrapped
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (VAADIN_CSRF_COOKIE_NAME.equals(cookie.getName())) {
+                    return unquote(cookie.getValue());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the value of the first cookie with the given name in a
+     * {@code Cookie} header, e.g. {@code "name1=value1; name2=value2"}. The
+     * double quotes around the value, if any, are removed.
+     *
+     * @param cookieHeader
+     *            the value of the header
+     * @param name
+     *            the name of the cookie
+     * @return the value of the cookie, or {@code null} if there is no cookie
+     *         with the name
+     */
+    static String findCookieValue(String cookieHeader, String name) {
+        int length = cookieHeader.length();
+        int start = 0;
+        while (start < length) {
+            int end = cookieHeader.indexOf(';', start);
+            if (end < 0) {
+                end = length;
+            }
+            int nameStart = skipWhitespace(cookieHeader, start, end);
+            int nameEnd = nameStart + name.length();
+            if (nameEnd <= end && cookieHeader.startsWith(name, nameStart)) {
+                int separator = skipWhitespace(cookieHeader, nameEnd, end);
+                if (separator < end && cookieHeader.charAt(separator) == '=') {
+                    int valueStart = skipWhitespace(cookieHeader, separator + 1,
+                            end);
+                    int valueEnd = end;
+                    while (valueEnd > valueStart && Character
+                            .isWhitespace(cookieHeader.charAt(valueEnd - 1))) {
+                        valueEnd--;
+                    }
+                    return unquote(
+                            cookieHeader.substring(valueStart, valueEnd));
+                }
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    // Cookie values may be enclosed in double quotes, which are not a part of
+    // the value
+    private static String unquote(String value) {
+        if (value != null && value.length() >= 2 && value.charAt(0) == '"'
+                && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static int skipWhitespace(String value, int start, int end) {
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        return start;
     }
 
     /**
@@ -152,7 +240,11 @@ public class CsrfChecker {
     }
 
     boolean isSpringCsrfTokenPresent(ServletRequest request) {
-        return SpringCsrfTokenUtil.getSpringCsrfToken(request).isPresent();
+        // Spring Security stores the token as a request attribute named after
+        // the token class, which is only there when Spring CSRF is active
+        return springCsrfAvailable
+                && request.getAttribute(SPRING_CSRF_TOKEN_CLASS_NAME) != null
+                && SpringCsrfTokenUtil.getSpringCsrfToken(request).isPresent();
     }
 
     private static Logger getLogger() {
@@ -18,6 +18,8 @@ package com.vaadin.hilla.auth;
 
 import java.lang.reflect.Method;
 import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import jakarta.annotation.security.DenyAll;
@@ -41,6 +43,11 @@ import com.vaadin.flow.server.auth.AnonymousAllowed;
  * <p>
  * Method-level annotation override Class-level ones.
  * <p>
+ * The access rule of each method and class is read from the annotations once,
+ * and reused for the subsequent checks, unless a subclass of
+ * {@link AccessAnnotationChecker} is used, in which case every check is
+ * delegated to it.
+ * <p>
  * In the next example, since the class is denied to all, method1 is not
  * accessible to anyone, method2 can be executed by any authorized used, method3
  * is only allowed to the accounts having the ROLE_USER authority and method4 is
@@ -78,6 +85,23 @@ public class EndpointAccessChecker {
             + "to enable endpoint access use one of the following annotations: @AnonymousAllowed, @PermitAll, @RolesAllowed";
 
     private final AccessAnnotationChecker accessAnnotationChecker;
+    private final boolean compiledRules;
+    // The rules of the methods are kept by declaring class, not to hold on to
+    // the classes, e.g. when reloaded
+    private final ClassValue<Map<Method, EndpointAccessRule>> methodRules = new ClassValue<>() {
+        @Override
+        protected Map<Method, EndpointAccessRule> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private final ClassValue<EndpointAccessRule> classRules = new ClassValue<>() {
+        @Override
+        protected EndpointAccessRule computeValue(Class<?> type) {
+            return EndpointAccessRule
+                    .of(accessAnnotationChecker.getSecurityTarget(type));
+        }
+    };
+    private volatile Boolean devMode;
 
     /**
      * Creates a new instance.
@@ -88,6 +112,8 @@ public class EndpointAccessChecker {
     public EndpointAccessChecker(
             AccessAnnotationChecker accessAnnotationChecker) {
         this.accessAnnotationChecker = accessAnnotationChecker;
+        this.compiledRules = accessAnnotationChecker
+                .getClass() == AccessAnnotationChecker.class;
     }
 
     /**
@@ -132,8 +158,7 @@ public class EndpointAccessChecker {
      */
     public String check(Method method, Principal principal,
             Function<String, Boolean> rolesChecker) {
-        if (accessAnnotationChecker.hasAccess(method, principal,
-                rolesChecker)) {
+        if (hasAccess(method, principal, rolesChecker)) {
             return null;
         }
 
@@ -159,7 +184,7 @@ public class EndpointAccessChecker {
      */
     public String check(Class<?> clazz, Principal principal,
             Function<String, Boolean> rolesChecker) {
-        if (accessAnnotationChecker.hasAccess(clazz, principal, rolesChecker)) {
+        if (hasAccess(clazz, principal, rolesChecker)) {
             return null;
         }
 
@@ -171,10 +196,42 @@ public class EndpointAccessChecker {
         }
     }
 
+    private boolean hasAccess(Method method, Principal principal,
+            Function<String, Boolean> rolesChecker) {
+        if (!compiledRules) {
+            return accessAnnotationChecker.hasAccess(method, principal,
+                    rolesChecker);
+        }
+        return methodRules.get(method.getDeclaringClass())
+                .computeIfAbsent(method,
+                        m -> EndpointAccessRule.of(
+                                accessAnnotationChecker.getSecurityTarget(m)))
+                .allows(principal, rolesChecker);
+    }
+
+    private boolean hasAccess(Class<?> clazz, Principal principal,
+            Function<String, Boolean> rolesChecker) {
+        if (!compiledRules) {
+            return accessAnnotationChecker.hasAccess(clazz, principal,
+                    rolesChecker);
+        }
+        return classRules.get(clazz).allows(principal, rolesChecker);
+    }
+
     private boolean isDevMode() {
-        VaadinService vaadinService = VaadinService.getCurrent();
-        return (vaadinService != null && !vaadinService
-                .getDeploymentConfiguration().isProductionMode());
+        // The service is not available yet when this checker is created, so
+        // the mode is resolved on the first use instead
+        Boolean resolvedDevMode = devMode;
+        if (resolvedDevMode == null) {
+            VaadinService vaadinService = VaadinService.getCurrent();
+            if (vaadinService == null) {
+                return false;
+            }
+            resolvedDevMode = !vaadinService.getDeploymentConfiguration()
+                    .isProductionMode();
+            devMode = resolvedDevMode;
+        }
+        return resolvedDevMode;
     }
 
     /**
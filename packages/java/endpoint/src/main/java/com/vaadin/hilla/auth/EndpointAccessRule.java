@@ -0,0 +1,110 @@
+/*
+ * Copyright 2000-2024 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.vaadin.hilla.auth;
+
+import java.lang.reflect.AnnotatedElement;
+import java.security.Principal;
+import java.util.function.Function;
+
+import jakarta.annotation.security.DenyAll;
+import jakarta.annotation.security.PermitAll;
+import jakarta.annotation.security.RolesAllowed;
+
+import com.vaadin.flow.server.auth.AccessAnnotationChecker;
+import com.vaadin.flow.server.auth.AnonymousAllowed;
+
+/**
+ * The access rule of an endpoint method or class, compiled from the access
+ * annotations of its security target, so that checking the access of a user
+ * does not need to read the annotations again.
+ * <p>
+ * The rule follows the same precedence as {@link AccessAnnotationChecker}:
+ * {@link DenyAll} denies everyone, {@link AnonymousAllowed} allows everyone,
+ * and otherwise an authenticated user is allowed by {@link RolesAllowed} if
+ * they have one of the roles, or by {@link PermitAll} when there are no roles.
+ */
+final class EndpointAccessRule {
+    private static final EndpointAccessRule DENY_ALL = new EndpointAccessRule(
+            false, false, null);
+    private static final EndpointAccessRule ANONYMOUS_ALLOWED = new EndpointAccessRule(
+            true, true, null);
+    private static final EndpointAccessRule PERMIT_ALL = new EndpointAccessRule(
+            true, false, null);
+
+    private final boolean authenticatedAllowed;
+    private final boolean anonymousAllowed;
+    private final String[] roles;
+
+    private EndpointAccessRule(boolean authenticatedAllowed,
+            boolean anonymousAllowed, String[] roles) {
+        this.authenticatedAllowed = authenticatedAllowed;
+        this.anonymousAllowed = anonymousAllowed;
+        this.roles = roles;
+    }
+
+    /**
+     * Compiles the rule from the access annotations of the given security
+     * target.
+     *
+     * @param securityTarget
+     *            the method or class that holds the access annotations
+     * @return the access rule
+     */
+    static EndpointAccessRule of(AnnotatedElement securityTarget) {
+        if (securityTarget.isAnnotationPresent(DenyAll.class)) {
+            return DENY_ALL;
+        }
+        if (securityTarget.isAnnotationPresent(AnonymousAllowed.class)) {
+            return ANONYMOUS_ALLOWED;
+        }
+        RolesAllowed rolesAllowed = securityTarget
+                .getAnnotation(RolesAllowed.class);
+        if (rolesAllowed != null) {
+            return new EndpointAccessRule(false, false,
+                    rolesAllowed.value().clone());
+        }
+        return securityTarget.isAnnotationPresent(PermitAll.class) ? PERMIT_ALL
+                : DENY_ALL;
+    }
+
+    /**
+     * Checks if the rule allows access for the given user.
+     *
+     * @param principal
+     *            the user principal object, {@code null} for anonymous users
+     * @param rolesChecker
+     *            a function for checking if a user is in a given role
+     * @return {@code true} if access is allowed, {@code false} otherwise
+     */
+    boolean allows(Principal principal,
+            Function<String, Boolean> rolesChecker) {
+        if (anonymousAllowed) {
+            return true;
+        }
+        if (principal == null) {
+            return false;
+        }
+        if (roles == null) {
+            return authenticatedAllowed;
+        }
+        for (String role : roles) {
+            if (rolesChecker.apply(role)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,190 @@
+package com.vaadin.hilla.push;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.context.ApplicationContext;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Records the metrics of the push channel in a Micrometer
+ * {@link MeterRegistry}.
+ * <p>
+ * The following meters are registered:
+ * <ul>
+ * <li>{@value #CONNECTIONS}: a gauge of the open push connections</li>
+ * <li>{@value #SUBSCRIPTIONS}: a gauge of the active subscriptions, tagged with
+ * the {@code endpoint} and {@code method} names</li>
+ * <li>{@value #SUBSCRIPTION_EVENTS}: a counter of the subscribe, unsubscribe,
+ * complete and error events, tagged with the {@code endpoint} and
+ * {@code method} names and the {@code event}. A subscription failing before it
+ * starts counts as a subscribe and an error event, tagged with
+ * {@value PushMetrics#UNKNOWN_NAME} names if the method does not exist.</li>
+ * <li>{@value #SUBSCRIBE}: a timer from receiving the subscribe message to the
+ * return of the endpoint method, including any wait for a thread to invoke it,
+ * tagged with the {@code endpoint} and {@code method} names</li>
+ * <li>{@value #FIRST_ITEM}: a timer from the subscription to the first item of
+ * the flux, tagged with the {@code endpoint} and {@code method} names</li>
+ * <li>{@value #MESSAGE_SEND}: a timer of serializing and writing each message
+ * to the client</li>
+ * <li>{@value #MESSAGE_SIZE}: a distribution summary of the message sizes in
+ * bytes, the JSON messages being counted as encoded in UTF-8</li>
+ * <li>{@value #CONNECTIONS_REAPED}: a counter of the connections closed for
+ * being idle</li>
+ * </ul>
+ * <p>
+ * For internal use only. May be renamed or removed in a future release.
+ */
+final class MicrometerPushMetrics extends PushMetrics {
+    static final String CONNECTIONS = "hilla.push.connections";
+    static final String SUBSCRIPTIONS = "hilla.push.subscriptions";
+    static final String SUBSCRIPTION_EVENTS = "hilla.push.subscription.events";
+    static final String SUBSCRIBE = "hilla.push.subscribe";
+    static final String FIRST_ITEM = "hilla.push.subscription.first.item";
+    static final String MESSAGE_SEND = "hilla.push.message.send";
+    static final String MESSAGE_SIZE = "hilla.push.message.size";
+    static final String CONNECTIONS_REAPED = "hilla.push.connections.reaped";
+
+    private final MeterRegistry registry;
+    private final Timer messageSend;
+    private final DistributionSummary messageSize;
+    private final Counter connectionsReaped;
+    // Keyed by the registered endpoint and method names
+    private final ConcurrentHashMap<String, Meters> methodMeters = new ConcurrentHashMap<>();
+
+    MicrometerPushMetrics(MeterRegistry registry,
+            PushMessageHandler pushMessageHandler) {
+        this.registry = registry;
+        Gauge.builder(CONNECTIONS, pushMessageHandler,
+                PushMessageHandler::getConnectionCount)
+                .description("Open push connections").register(registry);
+        messageSend = Timer.builder(MESSAGE_SEND)
+                .description("Time spent sending the push messages")
+                .register(registry);
+        messageSize = DistributionSummary.builder(MESSAGE_SIZE)
+                .description("Size of the push messages").baseUnit("bytes")
+                .register(registry);
+        connectionsReaped = Counter.builder(CONNECTIONS_REAPED)
+                .description("Push connections closed for being idle")
+                .register(registry);
+    }
+
+    static PushMetrics create(ApplicationContext applicationContext,
+            PushMessageHandler pushMessageHandler) {
+        MeterRegistry registry = applicationContext
+                .getBeanProvider(MeterRegistry.class).getIfUnique();
+        return registry == null ? DISABLED
+                : new MicrometerPushMetrics(registry, pushMessageHandler);
+    }
+
+    @Override
+    long startSubscribe() {
+        return System.nanoTime();
+    }
+
+    @Override
+    SubscriptionMetrics subscribe(String endpointName, String methodName,
+            long startTime) {
+        Meters meters = getMeters(endpointName, methodName);
+        meters.active.incrementAndGet();
+        meters.events[Event.SUBSCRIBE.ordinal()].increment();
+        long now = System.nanoTime();
+        meters.subscribe.record(now - startTime, TimeUnit.NANOSECONDS);
+        return new Subscription(meters, now);
+    }
+
+    @Override
+    void recordFailedSubscribe(String endpointName, String methodName) {
+        Meters meters = getMeters(endpointName, methodName);
+        meters.events[Event.SUBSCRIBE.ordinal()].increment();
+        meters.events[Event.ERROR.ordinal()].increment();
+    }
+
+    private Meters getMeters(String endpointName, String methodName) {
+        String key = endpointName + '.' + methodName;
+        return methodMeters.computeIfAbsent(key, k -> new Meters(
+                Tags.of("endpoint", endpointName, "method", methodName)));
+    }
+
+    @Override
+    long startSend() {
+        return System.nanoTime();
+    }
+
+    @Override
+    void recordSend(long startTime, int size) {
+        messageSend.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        messageSize.record(size);
+    }
+
+    @Override
+    void recordReaped(int count) {
+        connectionsReaped.increment(count);
+    }
+
+    private final class Meters {
+        // Strongly referenced here, as gauges only keep weak references
+        private final AtomicInteger active = new AtomicInteger();
+        private final Counter[] events;
+        private final Timer subscribe;
+        private final Timer firstItem;
+
+        private Meters(Tags tags) {
+            Gauge.builder(SUBSCRIPTIONS, active, AtomicInteger::get)
+                    .description("Active push subscriptions").tags(tags)
+                    .register(registry);
+            Event[] values = Event.values();
+            events = new Counter[values.length];
+            for (Event event : values) {
+                events[event.ordinal()] = Counter.builder(SUBSCRIPTION_EVENTS)
+                        .description("Events of the push subscriptions")
+                        .tags(tags).tag("event", event.getTag())
+                        .register(registry);
+            }
+            subscribe = Timer.builder(SUBSCRIBE).description(
+                    "Time from the subscribe message to the return of the endpoint method")
+                    .tags(tags).register(registry);
+            firstItem = Timer.builder(FIRST_ITEM).description(
+                    "Time from subscribing to the first item of the flux")
+                    .tags(tags).register(registry);
+        }
+    }
+
+    private static final class Subscription implements SubscriptionMetrics {
+        private final Meters meters;
+        private final long startTime;
+        private final AtomicBoolean ended = new AtomicBoolean();
+        // The items of a flux are emitted serially
+        private boolean itemReceived;
+
+        private Subscription(Meters meters, long startTime) {
+            this.meters = meters;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void recordItem() {
+            if (!itemReceived) {
+                itemReceived = true;
+                meters.firstItem.record(System.nanoTime() - startTime,
+                        TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void recordEnd(Event event) {
+            if (ended.compareAndSet(false, true)) {
+                meters.active.decrementAndGet();
+                meters.events[event.ordinal()].increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.vaadin.hilla.push;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Combines the messages sent to a push connection within a time window into a
+ * single write.
+ * <p>
+ * A batch is written when it has the maximum number of messages, or when the
+ * window has passed since its first message. A batch of several messages is
+ * written as a JSON array of the messages, a single message is written as is.
+ * The messages are written in the order they were added.
+ */
+final class PushBatcher {
+    private final int maxSize;
+    private final long windowMillis;
+    private final Scheduler scheduler;
+    private final Consumer<String> writer;
+
+    private final StringBuilder batch = new StringBuilder();
+    private int size;
+    private Disposable scheduledFlush;
+    private boolean closed;
+
+    /**
+     * Creates a batcher.
+     *
+     * @param maxSize
+     *            the maximum number of messages in a batch
+     * @param windowMillis
+     *            the maximum time in milliseconds a message waits to be written
+     * @param scheduler
+     *            the scheduler running the delayed writes
+     * @param writer
+     *            writes a batch to the connection
+     */
+    PushBatcher(int maxSize, long windowMillis, Scheduler scheduler,
+            Consumer<String> writer) {
+        this.maxSize = maxSize;
+        this.windowMillis = windowMillis;
+        this.scheduler = scheduler;
+        this.writer = writer;
+    }
+
+    /**
+     * Adds a message to the current batch.
+     *
+     * @param message
+     *            the serialized message
+     */
+    synchronized void add(String message) {
+        if (closed) {
+            return;
+        }
+        batch.append(size == 0 ? "" : ",").append(message);
+        size++;
+        if (size >= maxSize) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = scheduler.schedule(this::flush, windowMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the current batch, if any.
+     */
+    synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+        if (size == 0 || closed) {
+            return;
+        }
+        String messages = size == 1 ? batch.toString()
+                : "[" + batch.append(']');
+        batch.setLength(0);
+        size = 0;
+        // Written while holding the lock, so that the batches are written in
+        // order
+        writer.accept(messages);
+    }
+
+    /**
+     * Drops the current batch and ignores the messages added later.
+     */
+    synchronized void close() {
+        closed = true;
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+        batch.setLength(0);
+        size = 0;
+    }
+}
@@ -0,0 +1,115 @@
+package com.vaadin.hilla.push;
+
+import java.io.IOException;
+
+import org.atmosphere.cpr.AtmosphereRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import com.vaadin.hilla.push.messages.toclient.AbstractClientMessage;
+import com.vaadin.hilla.push.messages.toclient.ClientMessageUpdate;
+
+/**
+ * Encodes the messages sent to the client in CBOR instead of JSON, for the
+ * clients that ask for it.
+ * <p>
+ * The encoding is only available if {@code jackson-dataformat-cbor} is on the
+ * classpath, see {@link #create(ObjectMapper)}. The messages from the client
+ * are still read as JSON, as they are few and small.
+ */
+final class PushBinaryEncoding {
+    /**
+     * The header, or query parameter for websockets, with which the client asks
+     * for the binary encoding.
+     */
+    static final String HEADER = "X-Hilla-Push-Encoding";
+
+    private static final String CBOR = "cbor";
+    private static final String CBOR_FACTORY_CLASS_NAME = "com.fasterxml.jackson.dataformat.cbor.CBORFactory";
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper binaryMapper;
+
+    /**
+     * Creates an encoding.
+     *
+     * @param objectMapper
+     *            the object mapper reading the already serialized JSON items
+     * @param binaryMapper
+     *            the object mapper writing the binary messages
+     */
+    PushBinaryEncoding(ObjectMapper objectMapper, ObjectMapper binaryMapper) {
+        this.objectMapper = objectMapper;
+        this.binaryMapper = binaryMapper;
+    }
+
+    /**
+     * Creates the CBOR encoding, using the configuration of the given object
+     * mapper.
+     *
+     * @param objectMapper
+     *            the object mapper of the JSON messages
+     * @return the encoding, or {@code null} if CBOR is not available
+     */
+    static PushBinaryEncoding create(ObjectMapper objectMapper) {
+        if (!ClassUtils.isPresent(CBOR_FACTORY_CLASS_NAME,
+                PushBinaryEncoding.class.getClassLoader())) {
+            getLogger().warn(
+                    "Binary push messages are enabled, but {} is not available. Add com.fasterxml.jackson.dataformat:jackson-dataformat-cbor to use them.",
+                    CBOR_FACTORY_CLASS_NAME);
+            return null;
+        }
+        // Loaded by name, as the dependency is optional
+        JsonFactory cborFactory = (JsonFactory) BeanUtils.instantiateClass(
+                ClassUtils.resolveClassName(CBOR_FACTORY_CLASS_NAME,
+                        PushBinaryEncoding.class.getClassLoader()));
+        return new PushBinaryEncoding(objectMapper,
+                objectMapper.copyWith(cborFactory));
+    }
+
+    /**
+     * Checks if the client asks for the binary encoding.
+     *
+     * @param request
+     *            the request opening the push connection
+     * @return {@code true} if the binary encoding is asked for
+     */
+    static boolean isRequested(AtmosphereRequest request) {
+        String encoding = request.getHeader(HEADER);
+        if (encoding == null) {
+            // Websocket clients cannot set headers
+            encoding = request.getParameter(HEADER);
+        }
+        return CBOR.equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * Encodes the given message.
+     *
+     * @param message
+     *            the message
+     * @return the encoded message
+     * @throws IOException
+     *             if encoding the message fails
+     */
+    byte[] write(AbstractClientMessage message) throws IOException {
+        if (message instanceof ClientMessageUpdate update
+                && update.getItem() instanceof RawValue rawValue
+                && rawValue.rawValue() instanceof String json) {
+            // Raw JSON cannot be embedded in CBOR, so it is read back
+            message = new ClientMessageUpdate(update.getId(),
+                    objectMapper.readTree(json));
+        }
+        return binaryMapper.writeValueAsBytes(message);
+    }
+
+    private static Logger getLogger() {
+        return LoggerFactory.getLogger(PushBinaryEncoding.class);
+    }
+}
@@ -0,0 +1,175 @@
+package com.vaadin.hilla.push;
+
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import jakarta.servlet.http.HttpSession;
+
+import org.atmosphere.cpr.AtmosphereResource;
+
+import reactor.core.Disposable;
+
+/**
+ * The channel of a push connection that can be resumed after the underlying
+ * Atmosphere connection drops.
+ * <p>
+ * While attached, the messages are written to the current resource. While
+ * detached, they are kept in a bounded replay buffer, and written in order when
+ * the client reconnects with the same tracking id. If the buffer overflows, the
+ * missed messages cannot be replayed anymore, so the channel cannot be resumed.
+ * <p>
+ * As the tracking id is chosen by the client, it does not prove that the
+ * reconnecting client is the same. A channel is only resumed by a connection
+ * made within the same HTTP session and by the same user, so a channel created
+ * without a session cannot be resumed at all.
+ */
+final class PushChannel {
+    private final int replayBufferSize;
+    private final Consumer<PushChannel> onOverflow;
+    private final String principalName;
+    private final String sessionId;
+
+    private AtmosphereResource resource;
+    // Holds both text and binary messages
+    private final ArrayDeque<Object> replayBuffer = new ArrayDeque<>();
+    private boolean resumable = true;
+    private Disposable expiry;
+
+    /**
+     * Creates an attached channel.
+     *
+     * @param resource
+     *            the resource of the connection
+     * @param replayBufferSize
+     *            the maximum number of messages kept while detached
+     * @param onOverflow
+     *            called with the channel once its replay buffer overflows
+     */
+    PushChannel(AtmosphereResource resource, int replayBufferSize,
+            Consumer<PushChannel> onOverflow) {
+        this.resource = resource;
+        this.replayBufferSize = replayBufferSize;
+        this.onOverflow = onOverflow;
+        this.principalName = getPrincipalName(resource);
+        this.sessionId = getSessionId(resource);
+    }
+
+    /**
+     * Writes a message to the client, or keeps it for a later replay if the
+     * channel is detached.
+     *
+     * @param message
+     *            the serialized message
+     */
+    void write(String message) {
+        keepOrWrite(message);
+    }
+
+    /**
+     * Writes a binary message to the client, or keeps it for a later replay if
+     * the channel is detached.
+     *
+     * @param message
+     *            the encoded message
+     */
+    void write(byte[] message) {
+        keepOrWrite(message);
+    }
+
+    private void keepOrWrite(Object message) {
+        synchronized (this) {
+            if (resource != null) {
+                write(resource, message);
+                return;
+            }
+            if (!resumable) {
+                return;
+            }
+            if (replayBuffer.size() < replayBufferSize) {
+                replayBuffer.add(message);
+                return;
+            }
+            resumable = false;
+            replayBuffer.clear();
+        }
+        // Outside the lock, as it disposes the subscriptions of the channel
+        onOverflow.accept(this);
+    }
+
+    /**
+     * Checks if the given resource is the one the channel writes to.
+     *
+     * @param resource
+     *            the resource
+     * @return {@code true} if the channel is attached to the resource
+     */
+    synchronized boolean isAttachedTo(AtmosphereResource resource) {
+        return this.resource == resource;
+    }
+
+    /**
+     * Detaches the channel from its resource, keeping the messages written from
+     * now on until it is resumed or expires.
+     *
+     * @param expiry
+     *            the scheduled expiry of the channel, disposed if it is resumed
+     */
+    synchronized void detach(Disposable expiry) {
+        resource = null;
+        this.expiry = expiry;
+    }
+
+    /**
+     * Attaches the channel to the resource of a new connection from the same
+     * client, and writes the messages missed in between.
+     *
+     * @param resource
+     *            the resource of the new connection
+     * @return {@code true} if the channel was resumed, {@code false} if it
+     *         cannot be resumed, as it is still attached, it missed too many
+     *         messages, or the session or the user has changed
+     */
+    synchronized boolean resume(AtmosphereResource resource) {
+        if (this.resource != null || !resumable || sessionId == null
+                || !sessionId.equals(getSessionId(resource))
+                || !Objects.equals(principalName, getPrincipalName(resource))) {
+            return false;
+        }
+        if (expiry != null) {
+            expiry.dispose();
+            expiry = null;
+        }
+        this.resource = resource;
+        while (!replayBuffer.isEmpty()) {
+            write(resource, replayBuffer.poll());
+        }
+        return true;
+    }
+
+    private static void write(AtmosphereResource resource, Object message) {
+        if (message instanceof byte[] bytes) {
+            resource.write(bytes);
+        } else {
+            resource.write((String) message);
+        }
+    }
+
+    /**
+     * Gets the id of the HTTP session of the given resource.
+     *
+     * @param resource
+     *            the resource
+     * @return the session id, or {@code null} if there is no session
+     */
+    static String getSessionId(AtmosphereResource resource) {
+        HttpSession session = resource.getRequest().getSession(false);
+        return session == null ? null : session.getId();
+    }
+
+    private static String getPrincipalName(AtmosphereResource resource) {
+        Principal principal = resource.getRequest().getUserPrincipal();
+        return principal == null ? null : principal.getName();
+    }
+}
@@ -16,6 +16,7 @@ import org.atmosphere.interceptor.SuspendTrackerInterceptor;
 import org.atmosphere.util.SimpleBroadcaster;
 import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
@@ -47,12 +48,30 @@ public class PushConfigurer {
 
     @Bean
     PushEndpoint pushEndpoint() {
-        return new PushEndpoint();
+        var pushEndpoint = new PushEndpoint();
+        pushEndpoint.setBatch(endpointProperties.getPushBatchSize(),
+                endpointProperties.getPushBatchWindow());
+        pushEndpoint.setResume(endpointProperties.getPushResumeGracePeriod(),
+                endpointProperties.getPushReplayBufferSize());
+        pushEndpoint
+                .setBinaryEncoding(endpointProperties.isPushBinaryEncoding());
+        pushEndpoint.setHeartbeat(endpointProperties.getPushHeartbeatInterval(),
+                endpointProperties.getPushIdleTimeout());
+        return pushEndpoint;
     }
 
     @Bean
-    PushMessageHandler pushMessageHandler(EndpointInvoker endpointInvoker) {
-        return new PushMessageHandler(endpointInvoker);
+    PushMessageHandler pushMessageHandler(EndpointInvoker endpointInvoker,
+            ApplicationContext applicationContext) {
+        var pushMessageHandler = new PushMessageHandler(endpointInvoker);
+        pushMessageHandler.setBuffer(endpointProperties.getPushBufferSize(),
+                endpointProperties.getPushOverflowStrategy());
+        pushMessageHandler.setSubscribeExecution(
+                endpointProperties.getPushSubscribeThreads(),
+                endpointProperties.getPushSubscribeTimeout());
+        pushMessageHandler.setMetrics(
+                PushMetrics.create(applicationContext, pushMessageHandler));
+        return pushMessageHandler;
     }
 
     @Bean
@@ -0,0 +1,234 @@
+package com.vaadin.hilla.push;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import reactor.core.scheduler.Scheduler;
+
+import com.vaadin.hilla.push.PushMessageHandler.SubscriptionInfo;
+
+/**
+ * The state of a push connection: its subscriptions by flux id, the scheduler
+ * sending its buffered items, and when the client was last heard from.
+ * <p>
+ * A connection usually has only a few subscriptions, so they are kept in a
+ * small open addressing table rather than a concurrent map. All the changes go
+ * through a single lock, which also orders them with closing the connection:
+ * once closed, no subscription can be added anymore.
+ */
+final class PushConnection {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private String[] fluxIds = new String[INITIAL_CAPACITY];
+    private SubscriptionInfo[] subscriptions = new SubscriptionInfo[INITIAL_CAPACITY];
+    private int size;
+    private boolean closed;
+    private Scheduler scheduler;
+    // Read without the lock by the heartbeat
+    private volatile long lastActivity = System.nanoTime();
+
+    /**
+     * Checks if a subscription with the given flux id exists.
+     *
+     * @param fluxId
+     *            the flux id
+     * @return {@code true} if the subscription exists
+     */
+    synchronized boolean contains(String fluxId) {
+        return indexOf(fluxId) >= 0;
+    }
+
+    /**
+     * Adds a subscription, unless the connection is closed or already has a
+     * subscription with the same flux id.
+     *
+     * @param fluxId
+     *            the flux id
+     * @param subscription
+     *            the subscription
+     * @return {@code true} if the subscription was added
+     */
+    synchronized boolean add(String fluxId, SubscriptionInfo subscription) {
+        if (closed || indexOf(fluxId) >= 0) {
+            return false;
+        }
+        // Kept at most half full, so that the probe sequences stay short
+        if ((size + 1) * 2 > fluxIds.length) {
+            resize(fluxIds.length * 2);
+        }
+        int mask = fluxIds.length - 1;
+        int i = hash(fluxId) & mask;
+        while (fluxIds[i] != null) {
+            i = (i + 1) & mask;
+        }
+        fluxIds[i] = fluxId;
+        subscriptions[i] = subscription;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the subscription with the given flux id.
+     *
+     * @param fluxId
+     *            the flux id
+     * @return the removed subscription, or {@code null} if there was none
+     */
+    synchronized SubscriptionInfo remove(String fluxId) {
+        int i = indexOf(fluxId);
+        if (i < 0) {
+            return null;
+        }
+        SubscriptionInfo subscription = subscriptions[i];
+        removeAt(i);
+        return subscription;
+    }
+
+    /**
+     * Removes the given subscription, unless the flux id has been reused for
+     * another subscription.
+     *
+     * @param fluxId
+     *            the flux id
+     * @param subscription
+     *            the subscription
+     * @return {@code true} if the subscription was removed
+     */
+    synchronized boolean remove(String fluxId, SubscriptionInfo subscription) {
+        int i = indexOf(fluxId);
+        if (i < 0 || subscriptions[i] != subscription) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * Gets the number of subscriptions.
+     *
+     * @return the number of subscriptions
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the connection has no subscriptions.
+     *
+     * @return {@code true} if there are no subscriptions
+     */
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Records that a message was received from the client.
+     */
+    void touch() {
+        lastActivity = System.nanoTime();
+    }
+
+    /**
+     * Gets the time when a message was last received from the client, or when
+     * the connection was opened if none has been received yet.
+     *
+     * @return the time of the last activity, as from {@link System#nanoTime()}
+     */
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Gets the scheduler sending the buffered items of this connection,
+     * creating it on first use.
+     *
+     * @param factory
+     *            creates the scheduler
+     * @return the scheduler
+     */
+    synchronized Scheduler getScheduler(Supplier<Scheduler> factory) {
+        if (scheduler == null) {
+            scheduler = factory.get();
+            if (closed) {
+                scheduler.dispose();
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Closes the connection, removing all its subscriptions and disposing its
+     * scheduler.
+     *
+     * @return the removed subscriptions, to be disposed by the caller
+     */
+    synchronized List<SubscriptionInfo> close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+        List<SubscriptionInfo> removed = new ArrayList<>(size);
+        for (SubscriptionInfo subscription : subscriptions) {
+            if (subscription != null) {
+                removed.add(subscription);
+            }
+        }
+        fluxIds = new String[INITIAL_CAPACITY];
+        subscriptions = new SubscriptionInfo[INITIAL_CAPACITY];
+        size = 0;
+        return removed;
+    }
+
+    private int indexOf(String fluxId) {
+        int mask = fluxIds.length - 1;
+        for (int i = hash(fluxId) & mask; fluxIds[i] != null; i = (i + 1)
+                & mask) {
+            if (fluxIds[i].equals(fluxId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void removeAt(int i) {
+        int mask = fluxIds.length - 1;
+        int hole = i;
+        // Moves back the following entries of the probe sequence that would
+        // not be found anymore across the hole
+        for (int j = (i + 1) & mask; fluxIds[j] != null; j = (j + 1) & mask) {
+            int home = hash(fluxIds[j]) & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                fluxIds[hole] = fluxIds[j];
+                subscriptions[hole] = subscriptions[j];
+                hole = j;
+            }
+        }
+        fluxIds[hole] = null;
+        subscriptions[hole] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        String[] oldFluxIds = fluxIds;
+        SubscriptionInfo[] oldSubscriptions = subscriptions;
+        fluxIds = new String[capacity];
+        subscriptions = new SubscriptionInfo[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldFluxIds.length; j++) {
+            if (oldFluxIds[j] != null) {
+                int i = hash(oldFluxIds[j]) & mask;
+                while (fluxIds[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                fluxIds[i] = oldFluxIds[j];
+                subscriptions[i] = oldSubscriptions[j];
+            }
+        }
+    }
+
+    private static int hash(String fluxId) {
+        int h = fluxId.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
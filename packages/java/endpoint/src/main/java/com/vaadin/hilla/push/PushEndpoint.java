@@ -2,8 +2,14 @@ package com.vaadin.hilla.push;
 
 import java.io.IOException;
 import java.security.Principal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import jakarta.annotation.PreDestroy;
+
 import org.atmosphere.cpr.AtmosphereRequest;
 import org.atmosphere.cpr.AtmosphereResource;
 import org.atmosphere.cpr.AtmosphereResourceEvent;
@@ -22,6 +28,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import com.vaadin.hilla.push.messages.fromclient.AbstractServerMessage;
 import com.vaadin.hilla.push.messages.toclient.AbstractClientMessage;
+import com.vaadin.hilla.push.messages.toclient.ClientMessageHeartbeat;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Sets up and configures the push channel.
@@ -33,6 +44,176 @@ public class PushEndpoint extends AtmosphereHandlerAdapter {
     @Autowired
     private PushMessageHandler pushMessageHandler;
 
+    private int batchSize = 1;
+    private long batchWindowMillis;
+    private final Scheduler scheduler = Schedulers.boundedElastic();
+    private final ConcurrentHashMap<String, PushBatcher> batchers = new ConcurrentHashMap<>();
+
+    private long resumeGracePeriodMillis;
+    private int replayBufferSize;
+    private final ConcurrentHashMap<String, PushChannel> channels = new ConcurrentHashMap<>();
+
+    private boolean binaryEncodingEnabled;
+    // Created on first use, as the object mapper is injected later
+    private volatile PushBinaryEncoding binaryEncoding;
+    private final Set<String> binaryConnections = ConcurrentHashMap.newKeySet();
+
+    private long heartbeatIntervalMillis;
+    private long idleTimeoutMillis;
+    private Disposable heartbeat = Disposables.disposed();
+    // The current resource of each connection, to send the heartbeats to
+    private final ConcurrentHashMap<String, AtmosphereResource> resources = new ConcurrentHashMap<>();
+
+    /**
+     * Sets how the messages sent to each connection are combined into batches.
+     * Messages are written one at a time if the batch size is {@code 1} or the
+     * window is {@code 0}.
+     *
+     * @param batchSize
+     *            the maximum number of messages written at once
+     * @param batchWindowMillis
+     *            the maximum time in milliseconds a message waits for other
+     *            messages to be written with
+     * @throws IllegalArgumentException
+     *             if the batch size is less than {@code 1}, or the window is
+     *             negative
+     */
+    void setBatch(int batchSize, long batchWindowMillis) {
+        if (batchSize < 1 || batchWindowMillis < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid push batch size %d or window %d ms",
+                            batchSize, batchWindowMillis));
+        }
+        this.batchSize = batchSize;
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    /**
+     * Sets how long the subscriptions of a dropped connection are kept for the
+     * client to reconnect and resume them. The messages sent in the meantime
+     * are kept in a replay buffer and written when the client reconnects with
+     * the same Atmosphere tracking id, in the same HTTP session and as the same
+     * user. Connections without a session, and all connections if the grace
+     * period is {@code 0}, are not resumed.
+     *
+     * @param resumeGracePeriodMillis
+     *            the time in milliseconds a dropped connection can be resumed
+     * @param replayBufferSize
+     *            the maximum number of messages kept for a dropped connection,
+     *            after which it cannot be resumed anymore
+     * @throws IllegalArgumentException
+     *             if the grace period or the replay buffer size is negative
+     */
+    void setResume(long resumeGracePeriodMillis, int replayBufferSize) {
+        if (resumeGracePeriodMillis < 0 || replayBufferSize < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid push resume grace period %d ms or replay buffer size %d",
+                    resumeGracePeriodMillis, replayBufferSize));
+        }
+        this.resumeGracePeriodMillis = resumeGracePeriodMillis;
+        this.replayBufferSize = replayBufferSize;
+    }
+
+    /**
+     * Sets whether the messages are encoded in CBOR for the clients that ask
+     * for it.
+     *
+     * @param binaryEncodingEnabled
+     *            {@code true} to allow binary messages
+     */
+    void setBinaryEncoding(boolean binaryEncodingEnabled) {
+        this.binaryEncodingEnabled = binaryEncodingEnabled;
+    }
+
+    /**
+     * Sets how connections whose client is gone without closing them, as with a
+     * half-open TCP connection, are detected and closed. A heartbeat is sent to
+     * the connections from which no message has been received for the heartbeat
+     * interval, to which a live client replies. The connections still silent
+     * after the idle timeout are closed, disposing their subscriptions. No
+     * heartbeats are sent if the interval is {@code 0}.
+     *
+     * @param heartbeatIntervalMillis
+     *            the time in milliseconds a connection can be silent before a
+     *            heartbeat is sent, and between the checks
+     * @param idleTimeoutMillis
+     *            the time in milliseconds a connection can be silent before it
+     *            is closed
+     * @throws IllegalArgumentException
+     *             if the interval is negative, or the idle timeout is not
+     *             longer than the interval
+     */
+    void setHeartbeat(long heartbeatIntervalMillis, long idleTimeoutMillis) {
+        if (heartbeatIntervalMillis < 0 || (heartbeatIntervalMillis > 0
+                && idleTimeoutMillis <= heartbeatIntervalMillis)) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid push heartbeat interval %d ms or idle timeout %d ms",
+                    heartbeatIntervalMillis, idleTimeoutMillis));
+        }
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        heartbeat.dispose();
+        heartbeat = heartbeatIntervalMillis == 0 ? Disposables.disposed()
+                : scheduler.schedulePeriodically(this::heartbeat,
+                        heartbeatIntervalMillis, heartbeatIntervalMillis,
+                        TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes the idle connections, and sends a heartbeat to the ones that have
+     * been silent for the heartbeat interval.
+     */
+    private void heartbeat() {
+        try {
+            List<String> reaped = pushMessageHandler
+                    .reapIdleConnections(idleTimeoutMillis);
+            for (String uuid : reaped) {
+                AtmosphereResource resource = resources.get(uuid);
+                // The expiry of a detached channel finds it already removed
+                channels.remove(uuid);
+                close(uuid);
+                if (resource != null) {
+                    try {
+                        resource.close();
+                    } catch (IOException e) {
+                        getLogger().debug(
+                                "Unable to close idle push connection {}", uuid,
+                                e);
+                    }
+                }
+            }
+            if (!reaped.isEmpty()) {
+                getLogger().info("Closed {} idle push connections",
+                        reaped.size());
+            }
+            for (String uuid : pushMessageHandler
+                    .getIdleConnections(heartbeatIntervalMillis)) {
+                AtmosphereResource resource = resources.get(uuid);
+                PushChannel channel = channels.get(uuid);
+                // A detached channel would only keep the heartbeat in its
+                // replay buffer, filling it up
+                if (resource != null && (channel == null
+                        || channel.isAttachedTo(resource))) {
+                    createSender(resource, pushMessageHandler.getMetrics())
+                            .accept(new ClientMessageHeartbeat());
+                }
+            }
+        } catch (RuntimeException e) {
+            // Would cancel the periodic task otherwise
+            getLogger().error("Unexpected problem with the push heartbeat", e);
+        }
+    }
+
+    /**
+     * Stops sending the heartbeats, when the application shuts down or the
+     * Atmosphere framework is destroyed.
+     */
+    @PreDestroy
+    @Override
+    public void destroy() {
+        heartbeat.dispose();
+    }
+
     @Override
     public void onRequest(AtmosphereResource resource) throws IOException {
         String method = resource.getRequest().getMethod();
@@ -102,19 +283,8 @@ public class PushEndpoint extends AtmosphereHandlerAdapter {
                 getLogger().debug(
                         "Received push message from the client: " + message);
             }
-            Consumer<AbstractClientMessage> sender = msg -> {
-                try {
-                    if (getLogger().isDebugEnabled()) {
-                        getLogger().debug(
-                                "Sending push message to the client: " + msg);
-                    }
-                    resource.write(objectMapper.writeValueAsString(msg));
-                } catch (JsonProcessingException
-                        | IllegalArgumentException e1) {
-                    getLogger().warn(
-                            "Unexpected problem when sending push message", e1);
-                }
-            };
+            Consumer<AbstractClientMessage> sender = createSender(resource,
+                    pushMessageHandler.getMetrics());
 
             pushMessageHandler.handleMessage(resource.uuid(), message, sender);
         } catch (JsonProcessingException e) {
@@ -124,6 +294,67 @@ public class PushEndpoint extends AtmosphereHandlerAdapter {
 
     }
 
+    private Consumer<AbstractClientMessage> createSender(
+            AtmosphereResource resource, PushMetrics metrics) {
+        PushBinaryEncoding binary = binaryConnections.contains(resource.uuid())
+                ? binaryEncoding
+                : null;
+        Consumer<String> writer = binary == null ? getWriter(resource) : null;
+        Consumer<byte[]> binaryWriter = binary == null ? null
+                : getBinaryWriter(resource);
+        PushMessageWriter messageWriter = new PushMessageWriter(objectMapper);
+        return msg -> {
+            try {
+                if (getLogger().isDebugEnabled()) {
+                    getLogger().debug(
+                            "Sending push message to the client: " + msg);
+                }
+                long startTime = metrics.startSend();
+                if (binary != null) {
+                    byte[] bytes = binary.write(msg);
+                    binaryWriter.accept(bytes);
+                    metrics.recordSend(startTime, bytes.length);
+                } else {
+                    String json = messageWriter.write(msg);
+                    writer.accept(json);
+                    metrics.recordSend(startTime, json);
+                }
+            } catch (IOException | IllegalArgumentException e1) {
+                getLogger().warn("Unexpected problem when sending push message",
+                        e1);
+            }
+        };
+    }
+
+    private Consumer<byte[]> getBinaryWriter(AtmosphereResource resource) {
+        // Binary messages are not batched, each one is written in its own
+        // frame
+        PushChannel channel = channels.get(resource.uuid());
+        return channel == null ? resource::write : channel::write;
+    }
+
+    private Consumer<String> getWriter(AtmosphereResource resource) {
+        PushChannel channel = channels.get(resource.uuid());
+        // Writes to the current resource of a resumable connection, as the
+        // subscription may outlive the one it was made with
+        Consumer<String> write = channel == null ? resource::write
+                : channel::write;
+        if (batchSize == 1 || batchWindowMillis == 0) {
+            return write;
+        }
+        return batchers.computeIfAbsent(resource.uuid(),
+                uuid -> new PushBatcher(batchSize, batchWindowMillis, scheduler,
+                        batch -> {
+                            try {
+                                write.accept(batch);
+                            } catch (IllegalArgumentException e) {
+                                getLogger().warn(
+                                        "Unexpected problem when sending push messages",
+                                        e);
+                            }
+                        }))::add;
+    }
+
     /**
      * Called when the client sends the first request (to establish a push
      * connection).
@@ -132,10 +363,45 @@ public class PushEndpoint extends AtmosphereHandlerAdapter {
      *            the resource which was connected
      */
     private void onConnect(AtmosphereResource resource) {
-        pushMessageHandler.handleBrowserConnect(resource.uuid());
+        String uuid = resource.uuid();
+        // Binary messages can only be written in websocket frames, the other
+        // transports get JSON even if the client asks for binary
+        if (binaryEncodingEnabled
+                && resource
+                        .transport() == AtmosphereResource.TRANSPORT.WEBSOCKET
+                && PushBinaryEncoding.isRequested(resource.getRequest())
+                && getBinaryEncoding() != null) {
+            resource.forceBinaryWrite(true);
+            binaryConnections.add(uuid);
+        }
+        if (resumeGracePeriodMillis > 0) {
+            PushChannel channel = channels.get(uuid);
+            if (channel != null && channel.resume(resource)) {
+                getLogger().debug("Resumed push connection {}", uuid);
+                trackResource(resource);
+                resource.addEventListener(new DisconnectListener(this));
+                return;
+            }
+            if (channel != null) {
+                close(uuid, channel);
+            }
+            // Only a client in the same HTTP session can resume the channel
+            if (PushChannel.getSessionId(resource) != null) {
+                channels.put(uuid, new PushChannel(resource, replayBufferSize,
+                        overflowed -> close(uuid, overflowed)));
+            }
+        }
+        pushMessageHandler.handleBrowserConnect(uuid);
+        trackResource(resource);
         resource.addEventListener(new DisconnectListener(this));
     }
 
+    private void trackResource(AtmosphereResource resource) {
+        if (heartbeatIntervalMillis > 0) {
+            resources.put(resource.uuid(), resource);
+        }
+    }
+
     private static class DisconnectListener
             extends AtmosphereResourceEventListenerAdapter {
 
@@ -165,7 +431,47 @@ public class PushEndpoint extends AtmosphereHandlerAdapter {
      *            the Atmosphere event
      */
     private void onDisconnect(AtmosphereResourceEvent event) {
-        pushMessageHandler.handleBrowserDisconnect(event.getResource().uuid());
+        AtmosphereResource resource = event.getResource();
+        String uuid = resource.uuid();
+        PushChannel channel = channels.get(uuid);
+        if (channel != null) {
+            // Ignores the repeated events and the ones of replaced resources
+            if (channel.isAttachedTo(resource)) {
+                channel.detach(scheduler.schedule(() -> close(uuid, channel),
+                        resumeGracePeriodMillis, TimeUnit.MILLISECONDS));
+            }
+            return;
+        }
+        close(uuid);
+    }
+
+    private void close(String uuid, PushChannel channel) {
+        if (channels.remove(uuid, channel)) {
+            close(uuid);
+        }
+    }
+
+    private PushBinaryEncoding getBinaryEncoding() {
+        if (binaryEncoding == null) {
+            synchronized (this) {
+                if (binaryEncoding == null && binaryEncodingEnabled) {
+                    binaryEncoding = PushBinaryEncoding.create(objectMapper);
+                    // Only warns once if CBOR is not available
+                    binaryEncodingEnabled = binaryEncoding != null;
+                }
+            }
+        }
+        return binaryEncoding;
+    }
+
+    private void close(String uuid) {
+        pushMessageHandler.handleBrowserDisconnect(uuid);
+        resources.remove(uuid);
+        binaryConnections.remove(uuid);
+        PushBatcher batcher = batchers.remove(uuid);
+        if (batcher != null) {
+            batcher.close();
+        }
     }
 
     private void onThrowable(AtmosphereResourceEvent event) {
@@ -1,25 +1,44 @@
 package com.vaadin.hilla.push;
 
 import java.security.Principal;
-import java.util.concurrent.CompletableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.ServletContext;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.vaadin.experimental.FeatureFlags;
 import com.vaadin.flow.server.VaadinServletContext;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import com.vaadin.hilla.AuthenticationUtil;
 import com.vaadin.hilla.ConditionalOnFeatureFlag;
+import com.vaadin.hilla.EndpointInvocationException;
 import com.vaadin.hilla.EndpointInvocationException.EndpointAccessDeniedException;
 import com.vaadin.hilla.EndpointInvocationException.EndpointBadRequestException;
 import com.vaadin.hilla.EndpointInvocationException.EndpointInternalException;
@@ -27,6 +46,7 @@ import com.vaadin.hilla.EndpointInvocationException.EndpointNotFoundException;
 import com.vaadin.hilla.EndpointInvoker;
 import com.vaadin.hilla.EndpointSubscription;
 import com.vaadin.hilla.push.messages.fromclient.AbstractServerMessage;
+import com.vaadin.hilla.push.messages.fromclient.HeartbeatMessage;
 import com.vaadin.hilla.push.messages.fromclient.SubscribeMessage;
 import com.vaadin.hilla.push.messages.fromclient.UnsubscribeMessage;
 import com.vaadin.hilla.push.messages.toclient.AbstractClientMessage;
@@ -34,7 +54,12 @@ import com.vaadin.hilla.push.messages.toclient.ClientMessageComplete;
 import com.vaadin.hilla.push.messages.toclient.ClientMessageError;
 import com.vaadin.hilla.push.messages.toclient.ClientMessageUpdate;
 import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Handles incoming requests from the client and connects them to fluxes
@@ -43,38 +68,120 @@ import reactor.core.publisher.Flux;
 @Service
 public class PushMessageHandler {
 
-    static class SubscriptionInfo {
-        private final Disposable fluxSubscriptionDisposable;
+    private static final String SUBSCRIBE_THREAD_NAME = "hilla-push-subscribe";
+
+    private static final String SEND_THREAD_NAME = "hilla-push-send";
+
+    private static final int IDLE_THREAD_TTL_SECONDS = 60;
 
-        private SubscriptionInfo(Disposable fluxSubscriptionDisposable,
-                Runnable unsubscribeHandler) {
-            this.fluxSubscriptionDisposable = fluxSubscriptionDisposable;
+    static class SubscriptionInfo {
+        private final Disposable.Swap fluxSubscriptionDisposable = Disposables
+                .swap();
+
+        private Runnable unsubscribeHandler;
+
+        private PushMetrics.SubscriptionMetrics subscriptionMetrics = PushMetrics.SubscriptionMetrics.DISABLED;
+
+        private boolean started;
+
+        private boolean ended;
+
+        /**
+         * Starts the subscription once the endpoint method has returned, unless
+         * it has already ended meanwhile.
+         *
+         * @param unsubscribeHandler
+         *            the unsubscribe handler of the endpoint, or {@code null}
+         * @param subscriptionMetrics
+         *            creates the metrics of the subscription
+         * @return {@code true} if the subscription was started
+         */
+        synchronized boolean start(Runnable unsubscribeHandler,
+                Supplier<PushMetrics.SubscriptionMetrics> subscriptionMetrics) {
+            if (ended) {
+                return false;
+            }
+            started = true;
             this.unsubscribeHandler = unsubscribeHandler;
+            this.subscriptionMetrics = subscriptionMetrics.get();
+            return true;
         }
 
-        private final Runnable unsubscribeHandler;
+        /**
+         * Ends the subscription if the endpoint method has not returned yet.
+         *
+         * @return {@code true} if the subscription was ended
+         */
+        synchronized boolean cancelPending() {
+            if (started || ended) {
+                return false;
+            }
+            ended = true;
+            return true;
+        }
+
+        /**
+         * Ends the subscription.
+         *
+         * @return {@code true} if the subscription had been started
+         */
+        synchronized boolean end() {
+            ended = true;
+            return started;
+        }
 
-        private Disposable getFluxSubscriptionDisposable() {
+        private Disposable.Swap getFluxSubscriptionDisposable() {
             return fluxSubscriptionDisposable;
         }
 
-        private Runnable getUnsubscribeHandler() {
+        private synchronized Runnable getUnsubscribeHandler() {
             return unsubscribeHandler;
         }
+
+        private synchronized PushMetrics.SubscriptionMetrics getSubscriptionMetrics() {
+            return subscriptionMetrics;
+        }
     }
 
     private final EndpointInvoker endpointInvoker;
 
     /*
-     * Maps from connection id to subscription id inside that connection to the
-     * actual objects so that we can clean up everything related to a connection
+     * Maps from connection id to the state of that connection, holding its
+     * subscriptions so that we can clean up everything related to a connection
      * id on disconnect
      */
-    ConcurrentHashMap<String, ConcurrentHashMap<String, SubscriptionInfo>> fluxSubscriptionInfos = new ConcurrentHashMap<>();
+    ConcurrentHashMap<String, PushConnection> connections = new ConcurrentHashMap<>();
 
     @Autowired
     private ServletContext servletContext;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private PushMetrics metrics = PushMetrics.DISABLED;
+
+    private int bufferSize;
+
+    private PushOverflowStrategy overflowStrategy = PushOverflowStrategy.ERROR;
+
+    private final ThreadFactory sendThreadFactory = createSendThreadFactory();
+
+    private Scheduler subscribeScheduler;
+
+    private long subscribeTimeout;
+
+    /*
+     * Maps from the identity of a subscription to the flux shared by all the
+     * identical subscriptions, emitting the serialized items. The identity
+     * includes the user, as the endpoint method is invoked with the principal
+     * of the first subscriber.
+     */
+    private final ConcurrentHashMap<SharedFluxKey, Flux<RawValue>> sharedFluxes = new ConcurrentHashMap<>();
+
+    private record SharedFluxKey(String endpointName, String methodName,
+            String params, Class<?> principalClass, String principalName) {
+    }
+
     /**
      * Creates the instance.
      *
@@ -85,6 +192,136 @@ public class PushMessageHandler {
         this.endpointInvoker = endpointInvoker;
     }
 
+    /**
+     * Sets the metrics recorded for the push channel.
+     *
+     * @param metrics
+     *            the metrics
+     */
+    void setMetrics(PushMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the metrics recorded for the push channel.
+     *
+     * @return the metrics
+     */
+    PushMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets how many items of each subscription can wait to be sent, and what to
+     * do when there are more. With a buffer, only as many items as fit in it
+     * are requested from the endpoint flux, and the items are sent to each
+     * connection in order on a thread of that connection, a virtual thread when
+     * running on Java 21 or later. Without a buffer, the items are sent
+     * directly from the thread emitting them.
+     * <p>
+     * The buffer size applies to each subscription separately, so a connection
+     * can have as many items waiting as the buffer size times the number of its
+     * subscriptions.
+     *
+     * @param bufferSize
+     *            the number of items of each subscription that can wait to be
+     *            sent, or {@code 0} for no buffer
+     * @param overflowStrategy
+     *            what to do when the buffer is full
+     * @throws IllegalArgumentException
+     *             if the buffer size is negative
+     */
+    void setBuffer(int bufferSize, PushOverflowStrategy overflowStrategy) {
+        if (bufferSize < 0) {
+            throw new IllegalArgumentException(
+                    "The push buffer size must not be negative, got "
+                            + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.overflowStrategy = overflowStrategy;
+    }
+
+    /**
+     * Sets where the endpoint methods of new subscriptions are invoked, and
+     * their fluxes subscribed. By default, this happens on the thread handling
+     * the subscribe message, so that a slow endpoint method holds up the other
+     * messages of the connection.
+     * <p>
+     * A negative number of threads uses a virtual thread for each subscription
+     * when running on Java 21 or later, and otherwise falls back to a bounded
+     * elastic scheduler.
+     *
+     * @param threads
+     *            {@code 0} to invoke the endpoint methods on the thread
+     *            handling the message, a positive number for a dedicated
+     *            scheduler with at most that many threads, or a negative number
+     *            for virtual threads
+     * @param timeoutMillis
+     *            the time in milliseconds after which a subscription whose
+     *            endpoint method has not returned fails, or {@code 0} for no
+     *            timeout. Only used with a separate scheduler.
+     * @throws IllegalArgumentException
+     *             if the timeout is negative
+     */
+    void setSubscribeExecution(int threads, long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException(
+                    "The push subscribe timeout must not be negative, got "
+                            + timeoutMillis);
+        }
+        if (subscribeScheduler != null) {
+            subscribeScheduler.dispose();
+        }
+        if (threads == 0) {
+            subscribeScheduler = null;
+        } else if (threads > 0) {
+            subscribeScheduler = Schedulers.newBoundedElastic(threads,
+                    Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                    SUBSCRIBE_THREAD_NAME, IDLE_THREAD_TTL_SECONDS, true);
+        } else {
+            subscribeScheduler = createVirtualThreadScheduler();
+        }
+        this.subscribeTimeout = timeoutMillis;
+    }
+
+    private Scheduler createVirtualThreadScheduler() {
+        try {
+            // Looked up by name, as the baseline is Java 17
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return Schedulers.fromExecutorService(executor,
+                    SUBSCRIBE_THREAD_NAME);
+        } catch (ReflectiveOperationException e) {
+            getLogger().warn(
+                    "Virtual threads require Java 21 or later, push subscriptions are invoked on a bounded elastic scheduler instead");
+            return Schedulers.newBoundedElastic(
+                    Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                    Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                    SUBSCRIBE_THREAD_NAME, IDLE_THREAD_TTL_SECONDS, true);
+        }
+    }
+
+    /**
+     * Stops the scheduler on which the endpoint methods of new subscriptions
+     * are invoked, when the application shuts down.
+     */
+    @PreDestroy
+    void destroy() {
+        if (subscribeScheduler != null) {
+            subscribeScheduler.dispose();
+            subscribeScheduler = null;
+        }
+    }
+
+    /**
+     * Gets the number of open connections.
+     *
+     * @return the number of connections
+     */
+    int getConnectionCount() {
+        return connections.size();
+    }
+
     /**
      * Handles the message.
      *
@@ -98,6 +335,14 @@ public class PushMessageHandler {
     public void handleMessage(String connectionId,
             AbstractServerMessage message,
             Consumer<AbstractClientMessage> sender) {
+        PushConnection connection = connections.get(connectionId);
+        if (connection != null) {
+            connection.touch();
+        }
+        if (message instanceof HeartbeatMessage) {
+            // Only shows that the connection is alive
+            return;
+        }
         if (message instanceof SubscribeMessage) {
             handleBrowserSubscribe(connectionId, (SubscribeMessage) message,
                     sender);
@@ -112,9 +357,17 @@ public class PushMessageHandler {
 
     private void handleBrowserSubscribe(String connectionId,
             SubscribeMessage message, Consumer<AbstractClientMessage> sender) {
+        long startTime = metrics.startSubscribe();
         String fluxId = message.getId();
 
-        if (fluxSubscriptionInfos.get(connectionId).containsKey(fluxId)) {
+        PushConnection connection = connections.get(connectionId);
+        if (connection == null) {
+            getLogger().debug(
+                    "Ignoring a subscription for flux id {} as the connection is closed",
+                    fluxId);
+            return;
+        }
+        if (connection.contains(fluxId)) {
             String msg = "A subscription for flux id " + fluxId
                     + " already exists";
             getLogger().error(msg);
@@ -127,6 +380,7 @@ public class PushMessageHandler {
                 message.getEndpointName(), message.getMethodName());
         if (returnType != Flux.class
                 && returnType != EndpointSubscription.class) {
+            recordFailedSubscribe(message);
             sender.accept(new ClientMessageError(fluxId, "Method "
                     + message.getEndpointName() + "/" + message.getMethodName()
                     + " is not a Flux nor EndpointSubscription method"));
@@ -144,61 +398,286 @@ public class PushMessageHandler {
         Function<String, Boolean> isInRole = AuthenticationUtil
                 .getSecurityHolderRoleChecker();
 
-        try {
-            Object returnValue = endpointInvoker.invoke(
-                    message.getEndpointName(), message.getMethodName(),
-                    paramsObject, principal, isInRole);
-
-            Flux<?> flux;
-            Runnable unsubscribeHandler = null;
-            if (returnValue instanceof EndpointSubscription) {
-                EndpointSubscription<?> endpointSubscription = (EndpointSubscription<?>) returnValue;
-                flux = endpointSubscription.getFlux();
-                unsubscribeHandler = endpointSubscription.getOnUnsubscribe();
-            } else {
-                flux = (Flux<?>) returnValue;
+        // Stored before invoking the endpoint method, so that it can be
+        // unsubscribed or removed meanwhile
+        SubscriptionInfo subscriptionInfo = new SubscriptionInfo();
+        if (!connection.add(fluxId, subscriptionInfo)) {
+            // Closed or subscribed concurrently since the check above
+            return;
+        }
+        if (subscribeScheduler == null) {
+            try {
+                invokeAndSubscribe(connection, message, paramsObject, principal,
+                        isInRole, subscriptionInfo, sender, startTime);
+            } catch (RuntimeException e) {
+                if (subscriptionInfo.end()) {
+                    subscriptionInfo.getSubscriptionMetrics()
+                            .recordEnd(PushMetrics.Event.ERROR);
+                } else {
+                    recordFailedSubscribe(message);
+                }
+                connection.remove(fluxId, subscriptionInfo);
+                throw e;
             }
+            return;
+        }
 
-            CompletableFuture<Void> waitForSubscriptionData = new CompletableFuture<>();
-            Disposable endpointFluxSubscriber = flux.subscribe(item -> {
-                send(sender, new ClientMessageUpdate(fluxId, item));
-            }, error -> {
-                // An exception was thrown from the Flux
-
-                // Ensure that the subscription data has been stored before it
-                // is used
-                waitForSubscriptionData.whenComplete((a, b) -> {
-                    disposeSubscriptionInfo(connectionId, fluxId, false);
-                    send(sender, new ClientMessageError(fluxId,
-                            "Exception in Flux"));
-                    getLogger().error("Exception in Flux", error);
-                });
-            }, () -> {
-                // Flux completed
-
-                // Ensure that the subscription data has been stored before it
-                // is used
-                waitForSubscriptionData.whenComplete((a, b) -> {
-                    disposeSubscriptionInfo(connectionId, fluxId, false);
-                    send(sender, new ClientMessageComplete(fluxId));
-                });
+        Disposable timeout = subscribeTimeout == 0 ? Disposables.disposed()
+                : Schedulers.parallel().schedule(() -> {
+                    if (subscriptionInfo.cancelPending()
+                            && connection.remove(fluxId, subscriptionInfo)) {
+                        getLogger().warn(
+                                "Push subscription to {}/{} timed out after {} ms",
+                                message.getEndpointName(),
+                                message.getMethodName(), subscribeTimeout);
+                        recordFailedSubscribe(message);
+                        send(sender, new ClientMessageError(fluxId,
+                                "Subscription timed out"));
+                    }
+                }, subscribeTimeout, TimeUnit.MILLISECONDS);
+        // The endpoint method may use the security context itself
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        try {
+            subscribeScheduler.schedule(() -> {
+                SecurityContextHolder.setContext(securityContext);
+                try {
+                    invokeAndSubscribe(connection, message, paramsObject,
+                            principal, isInRole, subscriptionInfo, sender,
+                            startTime);
+                } catch (RuntimeException e) {
+                    getLogger().error("Subscribing to {}/{} failed",
+                            message.getEndpointName(), message.getMethodName(),
+                            e);
+                    fail(connection, message, subscriptionInfo, sender,
+                            "Exception in subscription");
+                } finally {
+                    SecurityContextHolder.clearContext();
+                    timeout.dispose();
+                }
             });
+        } catch (RejectedExecutionException e) {
+            timeout.dispose();
+            getLogger().warn(
+                    "Push subscription to {}/{} rejected, as too many subscriptions are pending",
+                    message.getEndpointName(), message.getMethodName());
+            fail(connection, message, subscriptionInfo, sender,
+                    "Too many subscriptions");
+        }
+    }
 
-            fluxSubscriptionInfos.get(connectionId).put(fluxId,
-                    new SubscriptionInfo(endpointFluxSubscriber,
-                            unsubscribeHandler));
-            waitForSubscriptionData.complete(null);
-
-            waitForSubscriptionData.complete(null);
+    private void invokeAndSubscribe(PushConnection connection,
+            SubscribeMessage message, ObjectNode paramsObject,
+            Principal principal, Function<String, Boolean> isInRole,
+            SubscriptionInfo subscriptionInfo,
+            Consumer<AbstractClientMessage> sender, long startTime) {
+        String fluxId = message.getId();
+        Object returnValue;
+        try {
+            if (endpointInvoker.isSharedSubscription(message.getEndpointName(),
+                    message.getMethodName())) {
+                // Checked for each subscription, while the method is invoked
+                // once for all the identical subscriptions
+                endpointInvoker.checkInvocation(message.getEndpointName(),
+                        message.getMethodName(), paramsObject, principal,
+                        isInRole);
+                returnValue = share(message, paramsObject, principal, isInRole);
+            } else {
+                returnValue = endpointInvoker.invoke(message.getEndpointName(),
+                        message.getMethodName(), paramsObject, principal,
+                        isInRole);
+            }
         } catch (EndpointNotFoundException e) {
-            sender.accept(new ClientMessageError(fluxId, "No such endpoint"));
+            fail(connection, message, subscriptionInfo, sender,
+                    "No such endpoint");
             return;
         } catch (EndpointAccessDeniedException | EndpointBadRequestException
                 | EndpointInternalException e) {
-            sender.accept(new ClientMessageError(fluxId, e.getMessage()));
+            fail(connection, message, subscriptionInfo, sender, e.getMessage());
+            return;
+        }
+
+        Flux<?> flux;
+        Runnable unsubscribeHandler = null;
+        if (returnValue instanceof EndpointSubscription) {
+            EndpointSubscription<?> endpointSubscription = (EndpointSubscription<?>) returnValue;
+            flux = endpointSubscription.getFlux();
+            unsubscribeHandler = endpointSubscription.getOnUnsubscribe();
+        } else {
+            flux = (Flux<?>) returnValue;
+        }
+
+        if (!subscriptionInfo.start(unsubscribeHandler,
+                () -> subscribeMetrics(message, startTime))) {
+            // Unsubscribed, disconnected or timed out while invoking the
+            // endpoint method
+            if (unsubscribeHandler != null) {
+                unsubscribeHandler.run();
+            }
             return;
         }
+        PushMetrics.SubscriptionMetrics subscriptionMetrics = subscriptionInfo
+                .getSubscriptionMetrics();
+        flux = buffer(connection, flux);
+        Disposable endpointFluxSubscriber = flux.subscribe(item -> {
+            subscriptionMetrics.recordItem();
+            send(sender, new ClientMessageUpdate(fluxId, item));
+        }, error -> {
+            // An exception was thrown from the Flux
+            subscriptionMetrics.recordEnd(PushMetrics.Event.ERROR);
+            connection.remove(fluxId, subscriptionInfo);
+            send(sender, new ClientMessageError(fluxId, "Exception in Flux"));
+            if (Exceptions.isOverflow(error)) {
+                getLogger().warn(
+                        "Push subscription to {}/{} received more than {} items not yet sent to the client",
+                        message.getEndpointName(), message.getMethodName(),
+                        bufferSize);
+            } else {
+                getLogger().error("Exception in Flux", error);
+            }
+        }, () -> {
+            // Flux completed
+            subscriptionMetrics.recordEnd(PushMetrics.Event.COMPLETE);
+            connection.remove(fluxId, subscriptionInfo);
+            send(sender, new ClientMessageComplete(fluxId));
+        });
+        // Disposes the subscription right away if it has already been
+        // unsubscribed
+        subscriptionInfo.getFluxSubscriptionDisposable()
+                .update(endpointFluxSubscriber);
+    }
+
+    private PushMetrics.SubscriptionMetrics subscribeMetrics(
+            SubscribeMessage message, long startTime) {
+        // Tagged with the registered names rather than the spelling of the
+        // client, as the names are not case sensitive
+        String endpointName = endpointInvoker.getRegisteredEndpointName(
+                message.getEndpointName(), message.getMethodName());
+        String methodName = endpointInvoker.getRegisteredMethodName(
+                message.getEndpointName(), message.getMethodName());
+        return metrics.subscribe(
+                endpointName == null ? message.getEndpointName() : endpointName,
+                methodName == null ? message.getMethodName() : methodName,
+                startTime);
+    }
 
+    private void recordFailedSubscribe(SubscribeMessage message) {
+        String endpointName = endpointInvoker.getRegisteredEndpointName(
+                message.getEndpointName(), message.getMethodName());
+        String methodName = endpointInvoker.getRegisteredMethodName(
+                message.getEndpointName(), message.getMethodName());
+        if (endpointName == null || methodName == null) {
+            metrics.recordFailedSubscribe(PushMetrics.UNKNOWN_NAME,
+                    PushMetrics.UNKNOWN_NAME);
+        } else {
+            metrics.recordFailedSubscribe(endpointName, methodName);
+        }
+    }
+
+    private void fail(PushConnection connection, SubscribeMessage message,
+            SubscriptionInfo subscriptionInfo,
+            Consumer<AbstractClientMessage> sender, String errorMessage) {
+        boolean started = subscriptionInfo.end();
+        // Neither recorded nor sent if the subscription has already been
+        // removed, as by a timeout
+        if (connection.remove(message.getId(), subscriptionInfo)) {
+            if (started) {
+                subscriptionInfo.getSubscriptionMetrics()
+                        .recordEnd(PushMetrics.Event.ERROR);
+            } else {
+                recordFailedSubscribe(message);
+            }
+            send(sender, new ClientMessageError(message.getId(), errorMessage));
+        }
+    }
+
+    private Flux<RawValue> share(SubscribeMessage message,
+            ObjectNode paramsObject, Principal principal,
+            Function<String, Boolean> isInRole) {
+        SharedFluxKey key = new SharedFluxKey(
+                message.getEndpointName().toLowerCase(Locale.ENGLISH),
+                message.getMethodName().toLowerCase(Locale.ENGLISH),
+                message.getParams().toString(),
+                principal == null ? null : principal.getClass(),
+                principal == null ? null : principal.getName());
+        return sharedFluxes.computeIfAbsent(key, k -> {
+            AtomicReference<Flux<RawValue>> shared = new AtomicReference<>();
+            // The endpoint method is invoked when the first subscriber
+            // subscribes. The flux is forgotten when it ends or the last
+            // subscriber leaves, so that the next subscription invokes the
+            // method again.
+            shared.set(Flux.defer(() -> {
+                try {
+                    return (Flux<?>) endpointInvoker.invoke(
+                            message.getEndpointName(), message.getMethodName(),
+                            paramsObject, principal, isInRole);
+                } catch (EndpointInvocationException e) {
+                    return Flux.error(e);
+                }
+            }).map(this::serialize)
+                    .doFinally(signal -> sharedFluxes.remove(k, shared.get()))
+                    .share());
+            return shared.get();
+        });
+    }
+
+    private RawValue serialize(Object item) {
+        try {
+            return new RawValue(objectMapper.writeValueAsString(item));
+        } catch (JsonProcessingException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private <T> Flux<T> buffer(PushConnection connection, Flux<T> flux) {
+        if (bufferSize == 0) {
+            return flux;
+        }
+        // publishOn requests up to the buffer size and fails with an overflow
+        // error if it gets more, while the other strategies request all the
+        // items and keep only some of them
+        Flux<T> bounded = switch (overflowStrategy) {
+        case ERROR -> flux;
+        case DROP_OLDEST -> flux.onBackpressureBuffer(bufferSize,
+                dropped -> getLogger()
+                        .debug("Dropped the oldest buffered push item"),
+                BufferOverflowStrategy.DROP_OLDEST);
+        case LATEST -> flux.onBackpressureLatest();
+        };
+        // Runs the tasks of the connection one at a time, so that the
+        // buffered items are sent in order
+        Scheduler connectionScheduler = connection
+                .getScheduler(this::createConnectionScheduler);
+        return bounded.publishOn(connectionScheduler, bufferSize);
+    }
+
+    private Scheduler createConnectionScheduler() {
+        // Each connection has a thread of its own, so that a client that is
+        // slow to receive does not hold up the others. The thread ends when
+        // there is nothing to send for a while.
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, 1, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                sendThreadFactory);
+        return Schedulers.fromExecutorService(executor, SEND_THREAD_NAME);
+    }
+
+    private static ThreadFactory createSendThreadFactory() {
+        try {
+            // Looked up by name, as the baseline is Java 17
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class)
+                    .invoke(builder, SEND_THREAD_NAME + "-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory")
+                    .invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            AtomicLong count = new AtomicLong();
+            return runnable -> {
+                Thread thread = new Thread(runnable,
+                        SEND_THREAD_NAME + "-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
     }
 
     private void send(Consumer<AbstractClientMessage> sender,
@@ -216,7 +695,55 @@ public class PushMessageHandler {
      *            the id of the connection
      */
     public void handleBrowserConnect(String connectionId) {
-        fluxSubscriptionInfos.put(connectionId, new ConcurrentHashMap<>());
+        connections.put(connectionId, new PushConnection());
+    }
+
+    /**
+     * Gets the connections from which no message has been received for at least
+     * the given time.
+     *
+     * @param idleMillis
+     *            the idle time in milliseconds
+     * @return the ids of the idle connections
+     */
+    List<String> getIdleConnections(long idleMillis) {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        List<String> idle = new ArrayList<>();
+        connections.forEach((connectionId, connection) -> {
+            if (now - connection.getLastActivity() >= idleNanos) {
+                idle.add(connectionId);
+            }
+        });
+        return idle;
+    }
+
+    /**
+     * Closes the connections from which no message has been received for at
+     * least the given time, as their client is presumably gone without the
+     * connection being closed. Disposes their subscriptions, invoking the
+     * unsubscribe listeners, so that the endpoints release their resources.
+     *
+     * @param idleTimeoutMillis
+     *            the idle time in milliseconds after which a connection is
+     *            closed
+     * @return the ids of the closed connections
+     */
+    List<String> reapIdleConnections(long idleTimeoutMillis) {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        List<String> reaped = new ArrayList<>();
+        connections.forEach((connectionId, connection) -> {
+            if (now - connection.getLastActivity() >= idleNanos
+                    && connections.remove(connectionId, connection)) {
+                dispose(connection, true);
+                reaped.add(connectionId);
+            }
+        });
+        if (!reaped.isEmpty()) {
+            metrics.recordReaped(reaped.size());
+        }
+        return reaped;
     }
 
     /**
@@ -249,15 +776,19 @@ public class PushMessageHandler {
      */
     private void disposeConnectionInfo(String connectionId,
             boolean invokeUnsubscribeListener) {
-        ConcurrentHashMap<String, SubscriptionInfo> fluxMap = fluxSubscriptionInfos
-                .remove(connectionId);
-        if (fluxMap != null) {
-            fluxMap.forEach((cid, subscriptionInfo) -> {
-                dispose(subscriptionInfo, invokeUnsubscribeListener);
-            });
+        PushConnection connection = connections.remove(connectionId);
+        if (connection != null) {
+            dispose(connection, invokeUnsubscribeListener);
         }
     }
 
+    private void dispose(PushConnection connection,
+            boolean invokeUnsubscribeListener) {
+        connection.close().forEach(subscriptionInfo -> {
+            dispose(subscriptionInfo, invokeUnsubscribeListener);
+        });
+    }
+
     /**
      * Removes all stored data related to the given subscription in the given
      * connection.
@@ -271,10 +802,10 @@ public class PushMessageHandler {
      */
     private void disposeSubscriptionInfo(String connectionId,
             String subscriptionId, boolean invokeUnsubscribeListener) {
-        ConcurrentHashMap<String, SubscriptionInfo> fluxMap = fluxSubscriptionInfos
-                .get(connectionId);
-        if (fluxMap != null) {
-            SubscriptionInfo subscriptionInfo = fluxMap.remove(subscriptionId);
+        PushConnection connection = connections.get(connectionId);
+        if (connection != null) {
+            SubscriptionInfo subscriptionInfo = connection
+                    .remove(subscriptionId);
             if (subscriptionInfo != null) {
                 dispose(subscriptionInfo, invokeUnsubscribeListener);
             }
@@ -284,7 +815,11 @@ public class PushMessageHandler {
     private void dispose(SubscriptionInfo subscriptionInfo,
             boolean invokeUnsubscribeListener) {
         subscriptionInfo.getFluxSubscriptionDisposable().dispose();
-        if (invokeUnsubscribeListener) {
+        // A subscription whose endpoint method has not returned yet is
+        // unsubscribed once it returns
+        if (subscriptionInfo.end() && invokeUnsubscribeListener) {
+            subscriptionInfo.getSubscriptionMetrics()
+                    .recordEnd(PushMetrics.Event.UNSUBSCRIBE);
             Runnable unsubscribeHandler = subscriptionInfo
                     .getUnsubscribeHandler();
             if (unsubscribeHandler != null) {
@@ -0,0 +1,59 @@
+package com.vaadin.hilla.push;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import com.vaadin.hilla.push.messages.toclient.AbstractClientMessage;
+import com.vaadin.hilla.push.messages.toclient.ClientMessageUpdate;
+
+/**
+ * Serializes the messages sent to the client through the push channel.
+ * <p>
+ * Update messages are by far the most frequent ones, so they are written into a
+ * fixed envelope, with only the item serialized by Jackson. An item that is
+ * already serialized, as with shared subscriptions, is spliced in as is. The
+ * other messages are serialized by Jackson.
+ */
+final class PushMessageWriter {
+    private static final String UPDATE_PREFIX = "{\"@type\":\"update\",\"id\":\"";
+    private static final String ITEM_PREFIX = "\",\"item\":";
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Creates a writer.
+     *
+     * @param objectMapper
+     *            the object mapper serializing the messages and the items
+     */
+    PushMessageWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Serializes the given message to JSON.
+     *
+     * @param message
+     *            the message
+     * @return the JSON of the message
+     * @throws JsonProcessingException
+     *             if serializing the message fails
+     */
+    String write(AbstractClientMessage message) throws JsonProcessingException {
+        if (!(message instanceof ClientMessageUpdate update)
+                || update.getId() == null) {
+            return objectMapper.writeValueAsString(message);
+        }
+        String item = update.getItem() instanceof RawValue rawValue
+                && rawValue.rawValue() instanceof String json ? json
+                        : objectMapper.writeValueAsString(update.getItem());
+        char[] id = JsonStringEncoder.getInstance()
+                .quoteAsString(update.getId());
+        return new StringBuilder(UPDATE_PREFIX.length() + id.length
+                + ITEM_PREFIX.length() + item.length() + 1)
+                .append(UPDATE_PREFIX).append(id).append(ITEM_PREFIX)
+                .append(item).append('}').toString();
+    }
+}
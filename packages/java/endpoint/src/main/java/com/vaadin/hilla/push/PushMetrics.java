@@ -0,0 +1,229 @@
+package com.vaadin.hilla.push;
+
+import java.util.Locale;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Records the metrics of the push channel: the connections, the subscriptions
+ * per endpoint method, the messages sent to the clients and the idle
+ * connections closed.
+ * <p>
+ * Metrics are only recorded when Micrometer is available and the application
+ * context has a {@code MeterRegistry} bean, see
+ * {@link #create(ApplicationContext, PushMessageHandler)}. Otherwise,
+ * {@link #DISABLED} is used, which does not even read the clock.
+ * <p>
+ * For internal use only. May be renamed or removed in a future release.
+ */
+abstract class PushMetrics {
+    private static final String METER_REGISTRY_CLASS_NAME = "io.micrometer.core.instrument.MeterRegistry";
+
+    /**
+     * The name recorded for the endpoints and methods that do not exist, so
+     * that the names sent by the clients do not create any meters.
+     */
+    static final String UNKNOWN_NAME = "unknown";
+
+    /**
+     * Metrics that record nothing.
+     */
+    static final PushMetrics DISABLED = new PushMetrics() {
+        @Override
+        long startSubscribe() {
+            return 0;
+        }
+
+        @Override
+        SubscriptionMetrics subscribe(String endpointName, String methodName,
+                long startTime) {
+            return SubscriptionMetrics.DISABLED;
+        }
+
+        @Override
+        void recordFailedSubscribe(String endpointName, String methodName) {
+        }
+
+        @Override
+        long startSend() {
+            return 0;
+        }
+
+        @Override
+        void recordSend(long startTime, int size) {
+        }
+
+        @Override
+        void recordSend(long startTime, String json) {
+        }
+
+        @Override
+        void recordReaped(int count) {
+        }
+    };
+
+    /**
+     * The events in the life of a subscription that are counted.
+     */
+    enum Event {
+        SUBSCRIBE, UNSUBSCRIBE, COMPLETE, ERROR;
+
+        private final String tag = name().toLowerCase(Locale.ENGLISH);
+
+        String getTag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Records the metrics of a single subscription.
+     * <p>
+     * The subscription is counted as active from its creation until the first
+     * recorded end, later ends are ignored.
+     */
+    interface SubscriptionMetrics {
+        /**
+         * Metrics that record nothing.
+         */
+        SubscriptionMetrics DISABLED = new SubscriptionMetrics() {
+            @Override
+            public void recordItem() {
+            }
+
+            @Override
+            public void recordEnd(Event event) {
+            }
+        };
+
+        /**
+         * Records an item emitted from the flux of the subscription.
+         */
+        void recordItem();
+
+        /**
+         * Records the end of the subscription.
+         *
+         * @param event
+         *            the event that ended the subscription, one of
+         *            {@link Event#UNSUBSCRIBE}, {@link Event#COMPLETE} or
+         *            {@link Event#ERROR}
+         */
+        void recordEnd(Event event);
+    }
+
+    /**
+     * Creates the metrics for the given application context.
+     *
+     * @param applicationContext
+     *            the Spring application context
+     * @param pushMessageHandler
+     *            the handler whose connections are measured
+     * @return the Micrometer metrics, if a meter registry is available, or
+     *         {@link #DISABLED} otherwise
+     */
+    static PushMetrics create(ApplicationContext applicationContext,
+            PushMessageHandler pushMessageHandler) {
+        if (!ClassUtils.isPresent(METER_REGISTRY_CLASS_NAME,
+                PushMetrics.class.getClassLoader())) {
+            return DISABLED;
+        }
+        // Only loaded when Micrometer is available
+        return MicrometerPushMetrics.create(applicationContext,
+                pushMessageHandler);
+    }
+
+    /**
+     * Gets the start time of handling a subscribe message.
+     *
+     * @return the current time, or {@code 0} if disabled
+     */
+    abstract long startSubscribe();
+
+    /**
+     * Records a new subscription to the given endpoint method. The method is
+     * expected to exist, so that meters are only created for the methods of the
+     * registered endpoints.
+     *
+     * @param endpointName
+     *            the registered name of the endpoint
+     * @param methodName
+     *            the declared name of the method
+     * @param startTime
+     *            the time when the subscribe message was received, so that the
+     *            time until the endpoint method returned is recorded
+     * @return the metrics of the subscription
+     */
+    abstract SubscriptionMetrics subscribe(String endpointName,
+            String methodName, long startTime);
+
+    /**
+     * Records a subscription to the given endpoint method that failed before it
+     * started, as when the method does not exist, the access is denied, the
+     * parameters are invalid or the subscription times out. It is counted as a
+     * subscribe event immediately followed by an error event.
+     *
+     * @param endpointName
+     *            the registered name of the endpoint, or {@link #UNKNOWN_NAME}
+     *            if the method does not exist
+     * @param methodName
+     *            the declared name of the method, or {@link #UNKNOWN_NAME} if
+     *            the method does not exist
+     */
+    abstract void recordFailedSubscribe(String endpointName, String methodName);
+
+    /**
+     * Gets the start time of sending a message.
+     *
+     * @return the current time, or {@code 0} if disabled
+     */
+    abstract long startSend();
+
+    /**
+     * Records a message sent to a client.
+     *
+     * @param startTime
+     *            the time when the sending started, including the serialization
+     *            of the message
+     * @param size
+     *            the size of the serialized message in bytes
+     */
+    abstract void recordSend(long startTime, int size);
+
+    /**
+     * Records a JSON message sent to a client, with its size in bytes once
+     * encoded in UTF-8, so that it compares with the size of the binary
+     * messages.
+     *
+     * @param startTime
+     *            the time when the sending started, including the serialization
+     *            of the message
+     * @param json
+     *            the serialized message
+     */
+    void recordSend(long startTime, String json) {
+        recordSend(startTime, getUtf8Length(json));
+    }
+
+    private static int getUtf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                // Surrogate pairs take 4 bytes for 2 chars
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Records connections closed for being idle.
+     *
+     * @param count
+     *            the number of closed connections
+     */
+    abstract void recordReaped(int count);
+}
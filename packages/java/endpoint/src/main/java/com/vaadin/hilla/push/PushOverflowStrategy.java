@@ -0,0 +1,25 @@
+package com.vaadin.hilla.push;
+
+/**
+ * What to do with the items of a push subscription when the client receives
+ * them slower than the endpoint flux emits them, and the buffer of the
+ * subscription is full.
+ */
+public enum PushOverflowStrategy {
+    /**
+     * Requests only as many items from the flux as fit in the buffer, and ends
+     * the subscription with an error if the flux emits more than requested.
+     */
+    ERROR,
+    /**
+     * Requests all the items from the flux, and drops the oldest ones that do
+     * not fit in the buffer.
+     */
+    DROP_OLDEST,
+    /**
+     * Requests all the items from the flux, and keeps only the latest one that
+     * does not fit in the buffer, for fluxes of states where only the most
+     * recent one matters.
+     */
+    LATEST
+}
@@ -0,0 +1,9 @@
+package com.vaadin.hilla.push.messages.fromclient;
+
+/**
+ * Sent by the client in reply to a heartbeat of the server, to show that the
+ * connection is still alive.
+ */
+public class HeartbeatMessage extends AbstractServerMessage {
+
+}
@@ -7,7 +7,8 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 @JsonSubTypes({
         @JsonSubTypes.Type(value = ClientMessageComplete.class, name = "complete"),
         @JsonSubTypes.Type(value = ClientMessageError.class, name = "error"),
-        @JsonSubTypes.Type(value = ClientMessageUpdate.class, name = "update") })
+        @JsonSubTypes.Type(value = ClientMessageUpdate.class, name = "update"),
+        @JsonSubTypes.Type(value = ClientMessageHeartbeat.class, name = "heartbeat") })
 public abstract class AbstractClientMessage {
 
     private String id;
@@ -0,0 +1,16 @@
+package com.vaadin.hilla.push.messages.toclient;
+
+/**
+ * Sent to a client that has been silent for a while, which replies with a
+ * heartbeat of its own if the connection is still alive.
+ */
+public class ClientMessageHeartbeat extends AbstractClientMessage {
+    public ClientMessageHeartbeat() {
+    }
+
+    @Override
+    public String toString() {
+        return "ClientMessageHeartbeat";
+    }
+
+}
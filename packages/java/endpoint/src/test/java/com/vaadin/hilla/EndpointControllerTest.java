@@ -15,16 +15,21 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import com.vaadin.hilla.engine.EngineConfiguration;
@@ -44,16 +49,23 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import com.vaadin.flow.di.Lookup;
 import com.vaadin.flow.internal.CurrentInstance;
 import com.vaadin.flow.server.VaadinRequest;
 import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinServletService;
 import com.vaadin.flow.server.auth.AccessAnnotationChecker;
 import com.vaadin.flow.server.auth.AnonymousAllowed;
 import com.vaadin.flow.server.startup.ApplicationConfiguration;
@@ -70,6 +82,8 @@ import com.vaadin.hilla.packages.application.ApplicationEndpoint;
 import com.vaadin.hilla.parser.jackson.JacksonObjectMapperFactory;
 import com.vaadin.hilla.testendpoint.BridgeMethodTestEndpoint;
 
+import javax.annotation.Nonnull;
+
 import jakarta.annotation.security.DenyAll;
 import jakarta.annotation.security.PermitAll;
 import jakarta.annotation.security.RolesAllowed;
@@ -184,6 +198,80 @@ public class EndpointControllerTest {
         public String testNullMethod() {
             return null;
         }
+
+        @Nonnull
+        public NullPropertyBean testNullPropertyMethod() {
+            return new NullPropertyBean();
+        }
+    }
+
+    public static class NullPropertyBean {
+        @Nonnull
+        private String title;
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    @Endpoint
+    public static class FailingGetterTestClass {
+        public FailingGetterBean failingGetter(int prefixLength) {
+            return new FailingGetterBean("x".repeat(prefixLength));
+        }
+    }
+
+    @JsonPropertyOrder({ "prefix", "failing" })
+    public static class FailingGetterBean {
+        private final String prefix;
+
+        public FailingGetterBean(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public String getFailing() {
+            throw new IllegalStateException("getter failure");
+        }
+    }
+
+    @Endpoint
+    public static class AsyncTestClass {
+        private final CompletableFuture<RequestInfo> result = new CompletableFuture<>();
+
+        public CompletableFuture<RequestInfo> requestInfo() {
+            return result;
+        }
+    }
+
+    public static class RequestInfo {
+        public boolean isServiceAvailable() {
+            return VaadinService.getCurrent() != null;
+        }
+
+        public String getUserName() {
+            return VaadinService.getCurrentRequest().getUserPrincipal()
+                    .getName();
+        }
+    }
+
+    @Endpoint
+    public static class PendingTestClass {
+        private final List<CompletableFuture<String>> pending = new CopyOnWriteArrayList<>();
+
+        public CompletableFuture<String> pending() {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            pending.add(result);
+            return result;
+        }
+
+        public String userName() {
+            return SecurityContextHolder.getContext().getAuthentication()
+                    .getName();
+        }
     }
 
     @Rule
@@ -655,6 +743,294 @@ public class EndpointControllerTest {
                 response.getBody());
     }
 
+    @Test
+    public void should_WriteResponse_When_RequestAndResponseAreStreamed()
+            throws IOException {
+        int inputValue = 222;
+        String expectedOutput = TEST_ENDPOINT.testMethod(inputValue);
+        when(requestMock.getInputStream()).thenReturn(
+                new DelegatingServletInputStream(new ByteArrayInputStream(
+                        String.format("{\"value\": %s}", inputValue)
+                                .getBytes(StandardCharsets.UTF_8))));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<String> responseEntity = createVaadinController(
+                TEST_ENDPOINT).serveEndpointStreaming(TEST_ENDPOINT_NAME,
+                        TEST_METHOD.getName(), requestMock, response);
+
+        assertNull(responseEntity);
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals("application/json",
+                response.getContentType().replace(";charset=UTF-8", ""));
+        assertEquals(String.format("\"%s\"", expectedOutput),
+                response.getContentAsString());
+    }
+
+    @Test
+    public void should_ReturnErrorResponse_When_StreamedCallFails()
+            throws IOException {
+        when(requestMock.getInputStream()).thenReturn(
+                new DelegatingServletInputStream(new ByteArrayInputStream(
+                        "{\"value\": \"abc\"}"
+                                .getBytes(StandardCharsets.UTF_8))));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<String> responseEntity = createVaadinController(
+                TEST_ENDPOINT).serveEndpointStreaming(TEST_ENDPOINT_NAME,
+                        TEST_METHOD.getName(), requestMock, response);
+
+        assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        assertEquals(0, response.getContentLength());
+    }
+
+    @Test
+    public void should_ReturnErrorResponse_When_StreamedValueFailsToSerialize()
+            throws IOException {
+        when(requestMock.getInputStream()).thenReturn(
+                new DelegatingServletInputStream(new ByteArrayInputStream(
+                        "{\"prefixLength\": 10}"
+                                .getBytes(StandardCharsets.UTF_8))));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<String> responseEntity = createVaadinController(
+                new FailingGetterTestClass()).serveEndpointStreaming(
+                        FailingGetterTestClass.class.getSimpleName(),
+                        "failingGetter", requestMock, response);
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR,
+                responseEntity.getStatusCode());
+        ObjectNode jsonNodes = new ObjectMapper()
+                .readValue(responseEntity.getBody(), ObjectNode.class);
+        String message = jsonNodes.get("message").asText();
+        assertTrue(message.contains("failingGetter"));
+        assertEquals("", response.getContentAsString());
+    }
+
+    @Test
+    public void should_ReturnErrorResponse_When_StreamedValueHasNullabilityViolation()
+            throws IOException {
+        when(requestMock.getInputStream()).thenReturn(
+                new DelegatingServletInputStream(new ByteArrayInputStream(
+                        new byte[0])));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        NullCheckerTestClass endpoint = new NullCheckerTestClass();
+        ApplicationContext applicationContext = mockApplicationContext(
+                endpoint);
+        EndpointRegistry registry = new EndpointRegistry(
+                new EndpointNameChecker());
+        EndpointInvoker invoker = new EndpointInvoker(applicationContext,
+                new JacksonObjectMapperFactory.Json(),
+                new ExplicitNullableTypeChecker(), mock(ServletContext.class),
+                registry, null, true) {
+            @Override
+            protected EndpointAccessChecker getAccessChecker() {
+                return mock(EndpointAccessChecker.class);
+            }
+        };
+        EndpointController controller = new EndpointController(
+                applicationContext, registry, invoker,
+                new CsrfChecker(mock(ServletContext.class)));
+        registry.registerEndpoint(endpoint);
+
+        ResponseEntity<String> responseEntity = controller
+                .serveEndpointStreaming(
+                        NullCheckerTestClass.class.getSimpleName(),
+                        "testNullPropertyMethod", requestMock, response);
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR,
+                responseEntity.getStatusCode());
+        ObjectNode jsonNodes = new ObjectMapper()
+                .readValue(responseEntity.getBody(), ObjectNode.class);
+        assertTrue(jsonNodes.get("message").asText()
+                .contains("Unexpected return value"));
+        assertEquals("", response.getContentAsString());
+    }
+
+    @Test
+    public void should_FailRequest_When_StreamedValueFailsAfterCommit()
+            throws IOException {
+        when(requestMock.getInputStream()).thenReturn(
+                new DelegatingServletInputStream(new ByteArrayInputStream(
+                        "{\"prefixLength\": 10000}"
+                                .getBytes(StandardCharsets.UTF_8))));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setBufferSize(1024);
+
+        exception.expect(IllegalStateException.class);
+        createVaadinController(new FailingGetterTestClass())
+                .serveEndpointStreaming(
+                        FailingGetterTestClass.class.getSimpleName(),
+                        "failingGetter", requestMock, response);
+    }
+
+    @Test
+    public void should_ReturnCorrectResponse_When_CalledAsync()
+            throws Exception {
+        int inputValue = 222;
+        String expectedOutput = TEST_ENDPOINT.testMethod(inputValue);
+
+        ResponseEntity<String> response = createVaadinController(TEST_ENDPOINT)
+                .serveEndpointAsync(TEST_ENDPOINT_NAME, TEST_METHOD.getName(),
+                        createRequestParameters(
+                                String.format("{\"value\": %s}", inputValue)),
+                        requestMock)
+                .get();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(String.format("\"%s\"", expectedOutput),
+                response.getBody());
+    }
+
+    @Test
+    public void should_ProvideServiceAndRequest_When_AsyncResultCompletesOnAnotherThread()
+            throws Exception {
+        when(principal.getName()).thenReturn("foo");
+        AsyncTestClass endpoint = new AsyncTestClass();
+        VaadinService service = mock(VaadinServletService.class);
+        CompletableFuture<ResponseEntity<String>> responseFuture;
+        CurrentInstance.set(VaadinService.class, service);
+        try {
+            responseFuture = createVaadinController(endpoint)
+                    .serveEndpointAsync(AsyncTestClass.class.getSimpleName(),
+                            "requestInfo", createRequestParameters("{}"),
+                            requestMock);
+        } finally {
+            CurrentInstance.clearAll();
+        }
+
+        Thread completingThread = new Thread(
+                () -> endpoint.result.complete(new RequestInfo()));
+        completingThread.start();
+        completingThread.join();
+
+        ResponseEntity<String> response = responseFuture.get(5,
+                TimeUnit.SECONDS);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        ObjectNode jsonNodes = new ObjectMapper().readValue(response.getBody(),
+                ObjectNode.class);
+        assertTrue(jsonNodes.get("serviceAvailable").asBoolean());
+        assertEquals("foo", jsonNodes.get("userName").asText());
+    }
+
+    @Test
+    public void should_ReturnNotFound_When_CalledAsyncWithMissingEndpoint()
+            throws Exception {
+        ResponseEntity<String> response = createVaadinController(TEST_ENDPOINT)
+                .serveEndpointAsync("whatever", null, null, requestMock).get();
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    public void should_ReturnResultsInOrder_When_CallsAreBatched()
+            throws Exception {
+        ArrayNode calls = new ObjectMapper().readValue(String.format(
+                "[{\"endpoint\": \"%1$s\", \"method\": \"%2$s\", \"params\": {\"value\": 1}},"
+                        + "{\"endpoint\": \"%1$s\", \"method\": \"missing\"},"
+                        + "{\"endpoint\": \"%1$s\", \"method\": \"%2$s\", \"params\": {\"value\": \"abc\"}},"
+                        + "{\"endpoint\": \"%1$s\"},"
+                        + "{\"endpoint\": \"%1$s\", \"method\": \"%2$s\", \"params\": {\"value\": 2}}]",
+                TEST_ENDPOINT_NAME, TEST_METHOD.getName()), ArrayNode.class);
+
+        ResponseEntity<String> response = createVaadinController(TEST_ENDPOINT)
+                .serveEndpointBatch(calls, requestMock).get();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JsonNode results = new ObjectMapper().readTree(response.getBody());
+        assertEquals(5, results.size());
+        assertEquals(200, results.get(0).get("status").asInt());
+        assertEquals(TEST_ENDPOINT.testMethod(1),
+                results.get(0).get("result").asText());
+        assertEquals(404, results.get(1).get("status").asInt());
+        assertNull(results.get(1).get("error"));
+        assertEquals(400, results.get(2).get("status").asInt());
+        assertTrue(results.get(2).get("error").has("message"));
+        assertEquals(400, results.get(3).get("status").asInt());
+        assertEquals(200, results.get(4).get("status").asInt());
+        assertEquals(TEST_ENDPOINT.testMethod(2),
+                results.get(4).get("result").asText());
+    }
+
+    @Test
+    public void should_ReturnBadRequest_When_BatchHasTooManyCalls()
+            throws Exception {
+        ArrayNode calls = new ObjectMapper().readValue(String.format(
+                "[{\"endpoint\": \"%1$s\", \"method\": \"%2$s\", \"params\": {\"value\": 1}},"
+                        + "{\"endpoint\": \"%1$s\", \"method\": \"%2$s\", \"params\": {\"value\": 2}}]",
+                TEST_ENDPOINT_NAME, TEST_METHOD.getName()), ArrayNode.class);
+        EndpointController controller = createVaadinController(TEST_ENDPOINT);
+        controller.setBatchLimits(1, 1);
+
+        ResponseEntity<String> response = controller
+                .serveEndpointBatch(calls, requestMock).get();
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertTrue(response.getBody().contains("at most 1 calls"));
+    }
+
+    @Test
+    public void should_LimitConcurrentCalls_When_CallsAreBatched()
+            throws Exception {
+        PendingTestClass endpoint = new PendingTestClass();
+        ArrayNode calls = new ObjectMapper().readValue(
+                "[{\"endpoint\": \"PendingTestClass\", \"method\": \"pending\"},"
+                        + "{\"endpoint\": \"PendingTestClass\", \"method\": \"pending\"},"
+                        + "{\"endpoint\": \"PendingTestClass\", \"method\": \"pending\"}]",
+                ArrayNode.class);
+        EndpointController controller = createVaadinController(endpoint);
+        controller.setBatchLimits(10, 2);
+
+        CompletableFuture<ResponseEntity<String>> response = controller
+                .serveEndpointBatch(calls, requestMock);
+
+        assertEquals(2, endpoint.pending.size());
+        endpoint.pending.get(0).complete("first");
+        assertEquals(3, endpoint.pending.size());
+        endpoint.pending.get(2).complete("third");
+        endpoint.pending.get(1).complete("second");
+
+        JsonNode results = new ObjectMapper()
+                .readTree(response.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(3, results.size());
+        assertEquals("first", results.get(0).get("result").asText());
+        assertEquals("second", results.get(1).get("result").asText());
+        assertEquals("third", results.get(2).get("result").asText());
+    }
+
+    @Test
+    public void should_KeepSecurityContext_When_BatchedCallsStartOnOtherThreads()
+            throws Exception {
+        PendingTestClass endpoint = new PendingTestClass();
+        ArrayNode calls = new ObjectMapper().readValue(
+                "[{\"endpoint\": \"PendingTestClass\", \"method\": \"pending\"},"
+                        + "{\"endpoint\": \"PendingTestClass\", \"method\": \"userName\"},"
+                        + "{\"endpoint\": \"PendingTestClass\", \"method\": \"userName\"}]",
+                ArrayNode.class);
+        EndpointController controller = createVaadinController(endpoint);
+        controller.setBatchLimits(10, 1);
+
+        CompletableFuture<ResponseEntity<String>> response;
+        SecurityContextHolder.getContext()
+                .setAuthentication(new TestingAuthenticationToken("foo", null));
+        try {
+            response = controller.serveEndpointBatch(calls, requestMock);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        // The next calls are started on the thread completing the first one,
+        // which has no security context
+        Thread completingThread = new Thread(
+                () -> endpoint.pending.get(0).complete("first"));
+        completingThread.start();
+        completingThread.join();
+
+        JsonNode results = new ObjectMapper()
+                .readTree(response.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals(3, results.size());
+        assertEquals("foo", results.get(1).get("result").asText());
+        assertEquals("foo", results.get(2).get("result").asText());
+    }
+
     @Test
     public void should_ReturnCorrectResponse_When_EndpointClassIsProxied() {
 
@@ -0,0 +1,80 @@
+package com.vaadin.hilla;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the per-call overhead of dispatching an endpoint method through the
+ * {@link EndpointInvocationPlan} method handle with reflective
+ * {@link Method#invoke(Object, Object...)} and a direct call.
+ * <p>
+ * Not run as part of the test suite. Run the {@link #main(String[])} method
+ * from the IDE, or with the test classpath, to get the results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndpointDispatchBenchmark {
+
+    @Endpoint
+    public static class BenchmarkEndpoint {
+        // Trivial, so that the dispatch overhead is not hidden by the body
+        public String greet(String name, int count) {
+            return name;
+        }
+    }
+
+    private BenchmarkEndpoint endpoint;
+    private Method method;
+    private EndpointInvocationPlan plan;
+    private Object[] arguments;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        endpoint = new BenchmarkEndpoint();
+        method = BenchmarkEndpoint.class.getMethod("greet", String.class,
+                int.class);
+        method.setAccessible(true);
+        plan = new EndpointInvocationPlan(endpoint, BenchmarkEndpoint.class,
+                method);
+        arguments = new Object[] { "Hilla", 42 };
+    }
+
+    @Benchmark
+    public Object direct() {
+        return endpoint.greet((String) arguments[0], (Integer) arguments[1]);
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        return method.invoke(endpoint, arguments);
+    }
+
+    @Benchmark
+    public Object methodHandle() throws Throwable {
+        return plan.invoke(arguments);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EndpointDispatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.vaadin.hilla;
+
+import java.lang.reflect.Method;
+
+import jakarta.validation.Valid;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EndpointInvocationPlanTest {
+    private final Validator validator = Validation
+            .buildDefaultValidatorFactory().getValidator();
+
+    public static class Bean {
+        @Min(10)
+        public int count;
+    }
+
+    public static class TestEndpoint {
+        public String plain(String text, Bean bean) {
+            return text;
+        }
+
+        public String constrainedParameter(@NotNull String text) {
+            return text;
+        }
+
+        public void cascadedParameter(@Valid Bean bean) {
+        }
+
+        @NotNull
+        public String constrainedReturnValue() {
+            return "";
+        }
+
+        @Valid
+        public Bean cascadedReturnValue() {
+            return new Bean();
+        }
+    }
+
+    @Test
+    public void should_NotRequireValidation_When_MethodHasNoConstraints()
+            throws NoSuchMethodException {
+        var plan = createPlan("plain", String.class, Bean.class);
+
+        assertFalse(plan.hasParameterConstraints(validator));
+        assertFalse(plan.hasReturnValueConstraints(validator));
+    }
+
+    @Test
+    public void should_RequireParameterValidation_When_ParameterIsConstrained()
+            throws NoSuchMethodException {
+        var constrained = createPlan("constrainedParameter", String.class);
+        var cascaded = createPlan("cascadedParameter", Bean.class);
+
+        assertTrue(constrained.hasParameterConstraints(validator));
+        assertFalse(constrained.hasReturnValueConstraints(validator));
+        assertTrue(cascaded.hasParameterConstraints(validator));
+        assertFalse(cascaded.hasReturnValueConstraints(validator));
+    }
+
+    @Test
+    public void should_RequireReturnValueValidation_When_ReturnValueIsConstrained()
+            throws NoSuchMethodException {
+        var constrained = createPlan("constrainedReturnValue");
+        var cascaded = createPlan("cascadedReturnValue");
+
+        assertFalse(constrained.hasParameterConstraints(validator));
+        assertTrue(constrained.hasReturnValueConstraints(validator));
+        assertFalse(cascaded.hasParameterConstraints(validator));
+        assertTrue(cascaded.hasReturnValueConstraints(validator));
+    }
+
+    private EndpointInvocationPlan createPlan(String methodName,
+            Class<?>... parameterTypes) throws NoSuchMethodException {
+        Method method = TestEndpoint.class.getMethod(methodName,
+                parameterTypes);
+        return new EndpointInvocationPlan(new TestEndpoint(),
+                TestEndpoint.class, method);
+    }
+}
@@ -3,11 +3,42 @@ package com.vaadin.hilla;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
-
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.Payload;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vaadin.hilla.EndpointInvocationException.EndpointAccessDeniedException;
 import com.vaadin.hilla.auth.EndpointAccessChecker;
+import com.vaadin.hilla.exception.EndpointValidationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -20,6 +51,8 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -104,6 +137,72 @@ public class EndpointInvokerTest {
                 .check(any(Class.class), any(), any());
     }
 
+    @Test
+    public void registeredNames_areResolvedRegardlessOfCase() {
+        @EndpointExposed
+        class ParentEndpoint {
+            public String sayHello() {
+                return "Hello from ParentEndpoint";
+            }
+        }
+
+        @Endpoint("CustomName")
+        class TestEndpoint extends ParentEndpoint {
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        Assert.assertEquals("CustomName", endpointInvoker
+                .getRegisteredEndpointName("customname", "SAYHELLO"));
+        Assert.assertEquals("sayHello", endpointInvoker
+                .getRegisteredMethodName("customname", "SAYHELLO"));
+        Assert.assertNull(endpointInvoker
+                .getRegisteredEndpointName("customname", "missing"));
+        Assert.assertNull(
+                endpointInvoker.getRegisteredMethodName("missing", "sayHello"));
+    }
+
+    @Test
+    public void sharedSubscription_isCheckedWithoutInvokingTheMethod()
+            throws Exception {
+        AtomicInteger invocations = new AtomicInteger();
+
+        @Endpoint
+        class TestEndpoint {
+            @SharedSubscription
+            public Flux<String> shared(String value) {
+                invocations.incrementAndGet();
+                return Flux.just(value);
+            }
+
+            public Flux<String> notShared() {
+                return Flux.empty();
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+        ObjectNode params = new ObjectMapper().createObjectNode().put("value",
+                "foo");
+
+        Assert.assertTrue(
+                endpointInvoker.isSharedSubscription("TestEndpoint", "shared"));
+        Assert.assertFalse(endpointInvoker.isSharedSubscription("TestEndpoint",
+                "notShared"));
+        Assert.assertFalse(endpointInvoker.isSharedSubscription("TestEndpoint",
+                "missing"));
+
+        endpointInvoker.checkInvocation("TestEndpoint", "shared", params,
+                principal, requestMock::isUserInRole);
+        Assert.assertEquals(0, invocations.get());
+
+        when(endpointAccessChecker.check(any(Method.class), any(), any()))
+                .thenReturn("denied");
+        Assert.assertThrows(EndpointAccessDeniedException.class,
+                () -> endpointInvoker.checkInvocation("TestEndpoint", "shared",
+                        params, principal, requestMock::isUserInRole));
+        Assert.assertEquals(0, invocations.get());
+    }
+
     @Test
     public void when_invokedMethod_isDeclaredIn_EndpointExposed_accessCheckingIsDoneBasedOn_EndpointClass()
             throws Exception {
@@ -173,4 +272,672 @@ public class EndpointInvokerTest {
                 .check(any(Class.class), any(), any());
     }
 
+    @Test
+    public void when_returnTypeIsNotFinal_subclassPropertiesAreSerialized()
+            throws Exception {
+
+        class Parent {
+            public String getParent() {
+                return "parent";
+            }
+        }
+
+        class Child extends Parent {
+            public String getChild() {
+                return "child";
+            }
+        }
+
+        @Endpoint
+        class TestEndpoint {
+            public Parent get() {
+                return new Child();
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        Object returnValue = endpointInvoker.invoke("TestEndpoint", "get", body,
+                principal, requestMock::isUserInRole);
+        String json = endpointInvoker.writeValueAsString("TestEndpoint", "get",
+                returnValue);
+
+        Assert.assertTrue(json, json.contains("\"child\":\"child\""));
+        Assert.assertTrue(json, json.contains("\"parent\":\"parent\""));
+    }
+
+    @Test
+    public void when_parameterTypeIsGeneric_itIsResolvedFromEndpointClass()
+            throws Exception {
+
+        @EndpointExposed
+        class ParentEndpoint<T> {
+            public String echo(T value) {
+                return value.getClass().getSimpleName() + ":" + value;
+            }
+        }
+
+        @Endpoint
+        class TestEndpoint extends ParentEndpoint<Integer> {
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        ObjectNode params = new ObjectMapper().createObjectNode().put("value",
+                42);
+        Assert.assertEquals("Integer:42", endpointInvoker.invoke("TestEndpoint",
+                "echo", params, principal, requestMock::isUserInRole));
+    }
+
+    @Test(expected = EndpointInvocationException.EndpointInternalException.class)
+    public void when_endpointMethodThrowsIllegalArgumentException_internalErrorIsReported()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public void fail() {
+                throw new IllegalArgumentException("OOPS");
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        endpointInvoker.invoke("TestEndpoint", "fail", body, principal,
+                requestMock::isUserInRole);
+    }
+
+    @Test
+    public void when_endpointMethodHasVarargs_arrayIsPassedAsIs()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public int count(String... values) {
+                return values.length;
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        ObjectNode params = new ObjectMapper().createObjectNode();
+        params.putArray("values").add("a").add("b").add("c");
+        Assert.assertEquals(3, endpointInvoker.invoke("TestEndpoint", "count",
+                params, principal, requestMock::isUserInRole));
+    }
+
+    @Test
+    public void when_invokedStreaming_parametersAreReadFromStream()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public String join(String text, List<Integer> numbers) {
+                return text + numbers;
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        Assert.assertEquals("a[1, 2]",
+                endpointInvoker.invokeStreaming("TestEndpoint", "join",
+                        toStream("{\"text\":\"a\",\"numbers\":[1,2]}"),
+                        principal, requestMock::isUserInRole));
+    }
+
+    @Test
+    public void when_invokedStreaming_withEmptyBody_methodWithoutParametersIsCalled()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public String hello() {
+                return "Hello";
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        Assert.assertEquals("Hello",
+                endpointInvoker.invokeStreaming("TestEndpoint", "hello",
+                        toStream(""), principal, requestMock::isUserInRole));
+    }
+
+    @Test
+    public void when_invokedStreaming_withTooManyParameters_badRequestIsReported()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public String echo(String text) {
+                return text;
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        EndpointInvocationException.EndpointBadRequestException exception = Assert
+                .assertThrows(
+                        EndpointInvocationException.EndpointBadRequestException.class,
+                        () -> endpointInvoker.invokeStreaming("TestEndpoint",
+                                "echo",
+                                toStream(
+                                        "{\"text\":\"a\",\"other\":{\"x\":[1]}}"),
+                                principal, requestMock::isUserInRole));
+        Assert.assertTrue(exception.getMessage(),
+                exception.getMessage().contains("expected: 1, got: 2"));
+    }
+
+    @Test
+    public void when_invokedStreaming_withInvalidParameter_validationErrorIsReported()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public int twice(int value) {
+                return value * 2;
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        EndpointValidationException exception = Assert.assertThrows(
+                EndpointValidationException.class,
+                () -> endpointInvoker.invokeStreaming("TestEndpoint", "twice",
+                        toStream("{\"value\":\"abc\"}"), principal,
+                        requestMock::isUserInRole));
+        Assert.assertEquals("value",
+                exception.getValidationErrorData().get(0).getParameterName());
+    }
+
+    @Test
+    public void when_invokedStreaming_accessIsDenied_streamIsNotRead()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public String echo(String text) {
+                return text;
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+        when(endpointAccessChecker.check(any(Method.class), any(), any()))
+                .thenReturn("denied");
+        InputStream stream = Mockito.mock(InputStream.class);
+
+        Assert.assertThrows(
+                EndpointInvocationException.EndpointAccessDeniedException.class,
+                () -> endpointInvoker.invokeStreaming("TestEndpoint", "echo",
+                        stream, principal, requestMock::isUserInRole));
+        Mockito.verifyNoInteractions(stream);
+    }
+
+    @Test
+    public void when_endpointMethodReturnsCompletableFuture_resultIsReturned()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public CompletableFuture<String> greet(String name) {
+                return CompletableFuture.supplyAsync(() -> "Hello " + name);
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        ObjectNode params = new ObjectMapper().createObjectNode().put("name",
+                "Hilla");
+        Object returnValue = endpointInvoker.invoke("TestEndpoint", "greet",
+                params, principal, requestMock::isUserInRole);
+
+        Assert.assertEquals("Hello Hilla", returnValue);
+        Assert.assertEquals("\"Hello Hilla\"", endpointInvoker
+                .writeValueAsString("TestEndpoint", "greet", returnValue));
+    }
+
+    @Test
+    public void when_invokedAsync_methodIsExecutedOnExecutor()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public String threadName() {
+                return Thread.currentThread().getName();
+            }
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "endpoint-executor"));
+        try {
+            EndpointInvoker asyncInvoker = createInvoker(executor);
+            endpointRegistry.registerEndpoint(new TestEndpoint());
+
+            Assert.assertEquals("endpoint-executor",
+                    asyncInvoker
+                            .invokeAsync("TestEndpoint", "threadName", body,
+                                    principal, requestMock::isUserInRole)
+                            .get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void when_invokedAsync_monoResultIsReturned() throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public Mono<Integer> count() {
+                return Mono.just(42);
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        Assert.assertEquals(42,
+                endpointInvoker
+                        .invokeAsync("TestEndpoint", "count", body, principal,
+                                requestMock::isUserInRole)
+                        .get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void when_asyncResultFails_internalErrorIsReported() {
+
+        @Endpoint
+        class TestEndpoint {
+            public CompletableFuture<String> fail() {
+                return CompletableFuture
+                        .failedFuture(new IllegalStateException("OOPS"));
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        ExecutionException exception = Assert.assertThrows(
+                ExecutionException.class,
+                () -> endpointInvoker
+                        .invokeAsync("TestEndpoint", "fail", body, principal,
+                                requestMock::isUserInRole)
+                        .get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(exception
+                .getCause() instanceof EndpointInvocationException.EndpointInternalException);
+    }
+
+    @Test
+    public void when_invokedAsync_accessIsDenied_futureFails() {
+
+        @Endpoint
+        class TestEndpoint {
+            public String hello() {
+                return "Hello";
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+        when(endpointAccessChecker.check(any(Method.class), any(), any()))
+                .thenReturn("denied");
+
+        ExecutionException exception = Assert.assertThrows(
+                ExecutionException.class,
+                () -> endpointInvoker
+                        .invokeAsync("TestEndpoint", "hello", body, principal,
+                                requestMock::isUserInRole)
+                        .get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(exception
+                .getCause() instanceof EndpointInvocationException.EndpointAccessDeniedException);
+    }
+
+    @Test
+    public void when_serializationNullCheckIsEnabled_returnValueIsCheckedWhileSerialized()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            @Nonnull
+            public Titled titled(String title) {
+                return new Titled(title);
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+        EndpointInvoker invoker = new EndpointInvoker(applicationContext, null,
+                explicitNullableTypeChecker, servletContext, endpointRegistry,
+                null, true) {
+            protected EndpointAccessChecker getAccessChecker() {
+                return endpointAccessChecker;
+            }
+        };
+
+        Object valid = invoker.invoke("TestEndpoint", "titled",
+                new ObjectMapper().createObjectNode().put("title", "Hello"),
+                principal, requestMock::isUserInRole);
+        Assert.assertEquals("{\"title\":\"Hello\"}",
+                invoker.writeValueAsString("TestEndpoint", "titled", valid));
+
+        Object invalid = invoker.invoke("TestEndpoint", "titled",
+                new ObjectMapper().createObjectNode().putNull("title"),
+                principal, requestMock::isUserInRole);
+        EndpointInvocationException.EndpointInternalException exception = Assert
+                .assertThrows(
+                        EndpointInvocationException.EndpointInternalException.class,
+                        () -> invoker.writeValueAsString("TestEndpoint",
+                                "titled", invalid));
+        Assert.assertTrue(exception.getMessage().startsWith(
+                "Unexpected return value in endpoint 'TestEndpoint' method 'titled'. "
+                        + "Unexpected null value in Java Bean type"));
+        Mockito.verify(explicitNullableTypeChecker, Mockito.never())
+                .checkValueForAnnotatedElement(any(), any(Method.class),
+                        Mockito.anyBoolean());
+    }
+
+    @Test
+    public void when_returnValueValidationIsNotSampled_invalidValueIsReturned()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            @Min(10)
+            public int count() {
+                return 1;
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        Assert.assertThrows(
+                EndpointInvocationException.EndpointInternalException.class,
+                () -> endpointInvoker.invoke("TestEndpoint", "count", body,
+                        principal, requestMock::isUserInRole));
+
+        endpointInvoker.setReturnValueValidationSampleRate(0);
+        Assert.assertEquals(1, endpointInvoker.invoke("TestEndpoint", "count",
+                body, principal, requestMock::isUserInRole));
+    }
+
+    @Test
+    public void when_asyncResultIsInvalid_internalErrorIsReported()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            @Valid
+            public CompletableFuture<CountingBean> load(int count) {
+                return CompletableFuture.supplyAsync(() -> {
+                    CountingBean bean = new CountingBean();
+                    bean.count = count;
+                    return bean;
+                });
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        Assert.assertEquals(10,
+                ((CountingBean) endpointInvoker
+                        .invokeAsync("TestEndpoint", "load",
+                                new ObjectMapper().createObjectNode()
+                                        .put("count", 10),
+                                principal, requestMock::isUserInRole)
+                        .get(5, TimeUnit.SECONDS)).count);
+        ExecutionException exception = Assert.assertThrows(
+                ExecutionException.class,
+                () -> endpointInvoker
+                        .invokeAsync("TestEndpoint", "load",
+                                new ObjectMapper().createObjectNode()
+                                        .put("count", 1),
+                                principal, requestMock::isUserInRole)
+                        .get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(exception
+                .getCause() instanceof EndpointInvocationException.EndpointInternalException);
+        Assert.assertTrue(exception.getCause().getMessage()
+                .contains("returned a value that has validation errors"));
+    }
+
+    @Test
+    public void when_returnValueValidationSampleRateIsOutOfRange_exceptionIsThrown() {
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> endpointInvoker.setReturnValueValidationSampleRate(1.5));
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> endpointInvoker.setReturnValueValidationSampleRate(-1));
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> endpointInvoker
+                        .setReturnValueValidationSampleRate(Double.NaN));
+    }
+
+    @Test
+    public void when_cascadedParameterIsValid_beanIsValidatedOnce()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public int save(@Valid CountingBean bean) {
+                return bean.count;
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+        CountingBean.validations.set(0);
+
+        Assert.assertEquals(10,
+                endpointInvoker.invoke("TestEndpoint", "save",
+                        new ObjectMapper().readValue(
+                                "{\"bean\":{\"count\":10}}", ObjectNode.class),
+                        principal, requestMock::isUserInRole));
+        Assert.assertEquals(1, CountingBean.validations.get());
+    }
+
+    @Test
+    public void when_cascadedParameterIsInvalid_beanErrorIsReported()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public int save(@Valid CountingBean bean) {
+                return bean.count;
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        EndpointValidationException exception = Assert.assertThrows(
+                EndpointValidationException.class,
+                () -> endpointInvoker.invoke("TestEndpoint", "save",
+                        new ObjectMapper().readValue("{\"bean\":{\"count\":5}}",
+                                ObjectNode.class),
+                        principal, requestMock::isUserInRole));
+        Assert.assertEquals(
+                "Validation error in endpoint 'TestEndpoint' method 'save'",
+                exception.getMessage());
+        List<EndpointValidationException.ValidationErrorData> errors = exception
+                .getValidationErrorData();
+        Assert.assertEquals(2, errors.size());
+        Assert.assertTrue(errors.stream().anyMatch(error -> error.getMessage()
+                .equals("Object of type '" + CountingBean.class
+                        + "' has invalid property 'count' with value '5', "
+                        + "validation error: 'must be greater than or equal to 10'")
+                && error.getParameterName().equals("count")));
+        Assert.assertTrue(errors.stream()
+                .anyMatch(error -> error.getParameterName().isEmpty()
+                        && error.getMessage()
+                                .startsWith("Object of type '"
+                                        + CountingBean.class + "' with value")
+                        && error.getMessage().endsWith(
+                                "validation error: 'five is not allowed'")));
+    }
+
+    @Test
+    public void when_cascadedParameterHasInvalidListItem_itemPathIsReported()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public int save(@Valid Basket basket) {
+                return basket.items.size();
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+
+        EndpointValidationException exception = Assert.assertThrows(
+                EndpointValidationException.class,
+                () -> endpointInvoker.invoke("TestEndpoint", "save",
+                        new ObjectMapper().readValue(
+                                "{\"basket\":{\"items\":[{\"name\":\"a\"},{}]}}",
+                                ObjectNode.class),
+                        principal, requestMock::isUserInRole));
+        List<EndpointValidationException.ValidationErrorData> errors = exception
+                .getValidationErrorData();
+        Assert.assertEquals(1, errors.size());
+        Assert.assertEquals("items[1].name", errors.get(0).getParameterName());
+        Assert.assertTrue(errors.get(0).getMessage()
+                .startsWith("Object of type '" + Basket.class
+                        + "' has invalid property 'items[1].name'"));
+    }
+
+    @Test
+    public void when_cascadedAndOtherBeansAreInvalid_allBeanErrorsAreReportedOnce()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public int save(CountingBean bean, @Valid Basket basket) {
+                return bean.count;
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+        CountingBean.validations.set(0);
+
+        EndpointValidationException exception = Assert.assertThrows(
+                EndpointValidationException.class,
+                () -> endpointInvoker.invoke("TestEndpoint", "save",
+                        new ObjectMapper().readValue(
+                                "{\"bean\":{\"count\":5},\"basket\":{\"items\":[{}]}}",
+                                ObjectNode.class),
+                        principal, requestMock::isUserInRole));
+        List<EndpointValidationException.ValidationErrorData> errors = exception
+                .getValidationErrorData();
+        Assert.assertEquals(3, errors.size());
+        Assert.assertEquals(1, CountingBean.validations.get());
+        Assert.assertTrue(errors.stream().anyMatch(
+                error -> error.getParameterName().equals("items[0].name")));
+    }
+
+    @Test
+    public void when_metricsAreEnabled_stagesAndResponseSizeAreRecorded()
+            throws Exception {
+
+        @Endpoint
+        class TestEndpoint {
+            public String greet(@Min(1) int times) {
+                return "h\u00e9".repeat(times);
+            }
+        }
+
+        endpointRegistry.registerEndpoint(new TestEndpoint());
+        MeterRegistry registry = new SimpleMeterRegistry();
+        endpointInvoker.setMetrics(new MicrometerEndpointMetrics(registry));
+
+        Object returnValue = endpointInvoker.invoke("testendpoint", "GREET",
+                new ObjectMapper().createObjectNode().put("times", 2),
+                principal, requestMock::isUserInRole);
+        endpointInvoker.writeValueAsString("TestEndpoint", "greet",
+                returnValue);
+
+        for (EndpointMetrics.Stage stage : List.of(
+                EndpointMetrics.Stage.ACCESS_CHECK,
+                EndpointMetrics.Stage.DESERIALIZATION,
+                EndpointMetrics.Stage.VALIDATION,
+                EndpointMetrics.Stage.INVOCATION,
+                EndpointMetrics.Stage.NULLABILITY_CHECK,
+                EndpointMetrics.Stage.SERIALIZATION)) {
+            Assert.assertEquals(stage.getTag(), 1,
+                    registry.get(MicrometerEndpointMetrics.STAGES)
+                            .tags("endpoint", "TestEndpoint", "method", "greet",
+                                    "stage", stage.getTag())
+                            .timer().count());
+        }
+        // "héhé" in quotes
+        Assert.assertEquals(8.0,
+                registry.get(MicrometerEndpointMetrics.RESPONSE_SIZE)
+                        .tags("endpoint", "TestEndpoint", "method", "greet")
+                        .summary().totalAmount(),
+                0);
+    }
+
+    @Test
+    public void when_methodIsNotFound_metricsAreNotRecorded() {
+        endpointInvoker.setMetrics(
+                new MicrometerEndpointMetrics(new SimpleMeterRegistry()));
+
+        Assert.assertSame(EndpointMetrics.MethodMetrics.DISABLED,
+                endpointInvoker.getMethodMetrics("Unknown", "method"));
+    }
+
+    public static class Basket {
+        public List<@Valid Item> items;
+    }
+
+    public static class Item {
+        @NotNull
+        public String name;
+    }
+
+    @CountedValidation
+    public static class CountingBean {
+        static final AtomicInteger validations = new AtomicInteger();
+
+        @Min(10)
+        public int count;
+    }
+
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Constraint(validatedBy = CountingValidator.class)
+    public @interface CountedValidation {
+        String message() default "five is not allowed";
+
+        Class<?>[] groups() default {};
+
+        Class<? extends Payload>[] payload() default {};
+    }
+
+    public static class CountingValidator
+            implements ConstraintValidator<CountedValidation, CountingBean> {
+        @Override
+        public boolean isValid(CountingBean value,
+                ConstraintValidatorContext context) {
+            CountingBean.validations.incrementAndGet();
+            return value.count != 5;
+        }
+    }
+
+    public static class Titled {
+        @Nonnull
+        private final String title;
+
+        public Titled(String title) {
+            this.title = title;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    private EndpointInvoker createInvoker(Executor executor) {
+        return new EndpointInvoker(applicationContext, null,
+                explicitNullableTypeChecker, servletContext, endpointRegistry,
+                executor) {
+            protected EndpointAccessChecker getAccessChecker() {
+                return endpointAccessChecker;
+            }
+        };
+    }
+
+    private static InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
 }
@@ -0,0 +1,92 @@
+package com.vaadin.hilla;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.vaadin.hilla.EndpointMetrics.MethodMetrics;
+import com.vaadin.hilla.EndpointMetrics.Outcome;
+import com.vaadin.hilla.EndpointMetrics.Stage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EndpointMetricsTest {
+    private MeterRegistry registry;
+    private MethodMetrics methodMetrics;
+
+    @Before
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        methodMetrics = new MicrometerEndpointMetrics(registry)
+                .forMethod("TestEndpoint", "test");
+    }
+
+    @Test
+    public void should_CountCallsPerOutcome() {
+        long startTime = methodMetrics.start();
+        methodMetrics.recordCall(Outcome.OK, startTime);
+        methodMetrics.recordCall(Outcome.OK, startTime);
+        methodMetrics.recordCall(Outcome.VALIDATION_ERROR, startTime);
+
+        assertEquals(2, getCallCount(Outcome.OK));
+        assertEquals(1, getCallCount(Outcome.VALIDATION_ERROR));
+        assertNull(registry.find(MicrometerEndpointMetrics.CALLS)
+                .tag("outcome", Outcome.INTERNAL_ERROR.getTag()).timer());
+    }
+
+    @Test
+    public void should_StartNextStage_When_StageIsRecorded() {
+        long startTime = methodMetrics.start();
+        long endTime = methodMetrics.recordStage(Stage.INVOCATION, startTime);
+
+        assertTrue(endTime >= startTime);
+        assertEquals(1,
+                registry.get(MicrometerEndpointMetrics.STAGES).tags("endpoint",
+                        "TestEndpoint", "method", "test", "stage", "invocation")
+                        .timer().count());
+    }
+
+    @Test
+    public void should_RecordBodySizes() {
+        methodMetrics.recordRequestSize(10);
+        methodMetrics.recordResponseSize(20);
+        methodMetrics.recordResponseSize(40);
+
+        assertEquals(10, registry.get(MicrometerEndpointMetrics.REQUEST_SIZE)
+                .summary().totalAmount(), 0);
+        assertEquals(30, registry.get(MicrometerEndpointMetrics.RESPONSE_SIZE)
+                .summary().mean(), 0);
+    }
+
+    @Test
+    public void should_NotReadClock_When_Disabled() {
+        MethodMetrics disabled = EndpointMetrics.DISABLED
+                .forMethod("TestEndpoint", "test");
+
+        assertFalse(disabled.isEnabled());
+        assertEquals(0, disabled.start());
+        assertEquals(0, disabled.recordStage(Stage.INVOCATION, 0));
+    }
+
+    @Test
+    public void should_CountUtf8Bytes() {
+        for (String value : new String[] { "", "ascii", "héllo", "€10",
+                "😀 smile" }) {
+            assertEquals(value, value.getBytes(StandardCharsets.UTF_8).length,
+                    EndpointMetrics.utf8Length(value));
+        }
+    }
+
+    private long getCallCount(Outcome outcome) {
+        return registry.get(MicrometerEndpointMetrics.CALLS).tags("endpoint",
+                "TestEndpoint", "method", "test", "outcome", outcome.getTag())
+                .timer().count();
+    }
+}
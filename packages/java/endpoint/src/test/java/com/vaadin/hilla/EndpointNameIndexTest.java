@@ -0,0 +1,68 @@
+package com.vaadin.hilla;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EndpointNameIndexTest {
+
+    @Test
+    public void should_FindValues_IgnoringCase() {
+        Map<String, Integer> entries = new LinkedHashMap<>();
+        entries.put("MyEndpoint", 1);
+        entries.put("otherEndpoint", 2);
+        entries.put("ÄäEndpoint", 3);
+        var index = EndpointNameIndex.of(entries);
+
+        assertEquals(Integer.valueOf(1), index.get("MyEndpoint"));
+        assertEquals(Integer.valueOf(1), index.get("myendpoint"));
+        assertEquals(Integer.valueOf(1), index.get("MYENDPOINT"));
+        assertEquals(Integer.valueOf(2), index.get("OtherEndpoint"));
+        assertEquals(Integer.valueOf(3), index.get("ääendpoint"));
+        assertNull(index.get("MyEndpoints"));
+        assertNull(index.get(""));
+    }
+
+    @Test
+    public void should_KeepLastValue_When_NamesDifferOnlyByCase() {
+        Map<String, Integer> entries = new LinkedHashMap<>();
+        entries.put("method", 1);
+        entries.put("METHOD", 2);
+
+        assertEquals(Integer.valueOf(2),
+                EndpointNameIndex.of(entries).get("Method"));
+    }
+
+    @Test
+    public void should_ReturnNewIndex_When_EntryIsAdded() {
+        EndpointNameIndex<Integer> empty = EndpointNameIndex.empty();
+        var index = empty.with("First", 1).with("second", 2);
+        var replaced = index.with("FIRST", 3);
+
+        assertTrue(empty.isEmpty());
+        assertNull(empty.get("first"));
+        assertEquals(Integer.valueOf(1), index.get("first"));
+        assertEquals(Integer.valueOf(2), index.get("Second"));
+        assertEquals(Integer.valueOf(3), replaced.get("first"));
+        assertEquals(Integer.valueOf(2), replaced.get("second"));
+    }
+
+    @Test
+    public void should_FindAllValues_When_IndexIsLarge() {
+        EndpointNameIndex<Integer> index = EndpointNameIndex.empty();
+        for (int i = 0; i < 1000; i++) {
+            index = index.with("endpoint" + i, i);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertSame(index.get("ENDPOINT" + i), index.get("endpoint" + i));
+            assertEquals(Integer.valueOf(i), index.get("Endpoint" + i));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.vaadin.hilla;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.servlet.http.Cookie;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+
+import com.vaadin.flow.server.auth.AccessAnnotationChecker;
+import com.vaadin.hilla.auth.CsrfChecker;
+import com.vaadin.hilla.auth.EndpointAccessChecker;
+
+/**
+ * Measures the per-call overhead of the checks made before an endpoint method
+ * is invoked in {@link EndpointController#serveEndpoint}: the CSRF token check
+ * and the access check of the endpoint method.
+ * <p>
+ * Not run as part of the test suite. Run the {@link #main(String[])} method
+ * from the IDE, or with the test classpath, to get the results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndpointPreludeBenchmark {
+
+    @Endpoint
+    public static class BenchmarkEndpoint {
+        @RolesAllowed("user")
+        public String greet(String name) {
+            return name;
+        }
+    }
+
+    private CsrfChecker csrfChecker;
+    private EndpointAccessChecker accessChecker;
+    private Method method;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        csrfChecker = new CsrfChecker(new MockServletContext());
+        accessChecker = new EndpointAccessChecker(
+                new AccessAnnotationChecker());
+        method = BenchmarkEndpoint.class.getMethod("greet", String.class);
+
+        String token = "3b5a2c9e-8f1d-4c7b-9a6e-0d2f4e8b1c7a";
+        request = new MockHttpServletRequest("POST",
+                "/connect/BenchmarkEndpoint/greet");
+        request.setCookies(new Cookie("JSESSIONID", "node01abc"),
+                new Cookie("csrfToken", token), new Cookie("theme", "dark"));
+        request.addHeader("X-CSRF-Token", token);
+        request.setUserPrincipal(() -> "user");
+        request.addUserRole("user");
+    }
+
+    @Benchmark
+    public boolean csrf() {
+        return csrfChecker.validateCsrfTokenInRequest(request);
+    }
+
+    @Benchmark
+    public boolean prelude() {
+        return csrfChecker.validateCsrfTokenInRequest(request)
+                && accessChecker.check(method, request.getUserPrincipal(),
+                        request::isUserInRole) == null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EndpointPreludeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
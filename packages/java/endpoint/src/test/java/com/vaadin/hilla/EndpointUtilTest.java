@@ -1,11 +1,16 @@
 package com.vaadin.hilla;
 
+import java.lang.reflect.Method;
+import java.security.Principal;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import com.vaadin.flow.server.auth.AccessAnnotationChecker;
+import com.vaadin.flow.server.auth.AnonymousAllowed;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -15,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.vaadin.hilla.auth.CsrfChecker;
 import com.vaadin.hilla.auth.EndpointAccessChecker;
@@ -30,6 +36,8 @@ public class EndpointUtilTest {
     private EndpointUtil endpointUtil;
     @Autowired
     private EndpointRegistry registry;
+    @Autowired
+    private EndpointProperties endpointProperties;
 
     private static final Class<?>[] endpointClasses = new Class<?>[] {
             AccessControlTestClasses.AnonymousAllowedEndpoint.class,
@@ -76,6 +84,38 @@ public class EndpointUtilTest {
         Assert.assertTrue(endpointUtil.isEndpointRequest(request));
     }
 
+    @Test
+    public void endpointRegisteredAfterClassification() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI("/connect/LateEndpoint/hello");
+        Assert.assertFalse(endpointUtil.isEndpointRequest(request));
+
+        registry.registerEndpoint(new LateEndpoint());
+
+        Assert.assertTrue(endpointUtil.isEndpointRequest(request));
+        Assert.assertTrue(endpointUtil.isAnonymousEndpoint(request));
+    }
+
+    @Test
+    public void samePathWithDifferentContextPath() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI(
+                "/context/connect/AnonymousAllowedEndpoint/noAnnotation");
+        request.setContextPath("/context");
+        Assert.assertTrue(endpointUtil.isEndpointRequest(request));
+
+        request.setContextPath("/context/connect");
+        Assert.assertFalse(endpointUtil.isEndpointRequest(request));
+    }
+
+    @Endpoint
+    @AnonymousAllowed
+    public static class LateEndpoint {
+        public String hello() {
+            return "Hello";
+        }
+    }
+
     @Test
     public void isAnonymousEndpoint() {
         verifyAnonymousAccessAllowed("AnonymousAllowedEndpoint", "noAnnotation",
@@ -112,6 +152,43 @@ public class EndpointUtilTest {
                 expected, endpointUtil.isAnonymousEndpoint(request));
     }
 
+    @Test
+    public void batchRequest() {
+        testPath("/connect/batch", true);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI("/context/connect/batch");
+        request.setContextPath("/context");
+        Assert.assertTrue(endpointUtil.isEndpointRequest(request));
+        Assert.assertTrue(endpointUtil.isAnonymousEndpoint(request));
+    }
+
+    @Test
+    public void customAccessAnnotationChecker_answersAreNotCached() {
+        AtomicBoolean allowed = new AtomicBoolean(true);
+        AccessAnnotationChecker customChecker = new AccessAnnotationChecker() {
+            @Override
+            public boolean hasAccess(Method method, Principal principal,
+                    Function<String, Boolean> roleChecker) {
+                return allowed.get();
+            }
+        };
+        EndpointUtil customUtil = new EndpointUtil();
+        ReflectionTestUtils.setField(customUtil, "endpointProperties",
+                endpointProperties);
+        ReflectionTestUtils.setField(customUtil, "registry", registry);
+        ReflectionTestUtils.setField(customUtil, "accessChecker",
+                new EndpointAccessChecker(customChecker));
+        customUtil.compileEndpointPathPattern();
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI("/connect/AnonymousAllowedEndpoint/permitAll");
+        Assert.assertTrue(customUtil.isAnonymousEndpoint(request));
+
+        allowed.set(false);
+        Assert.assertFalse(customUtil.isAnonymousEndpoint(request));
+    }
+
     @Test
     public void nonEndpointRequest() {
         testPath("/", false);
@@ -0,0 +1,186 @@
+package com.vaadin.hilla;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import com.vaadin.hilla.ExplicitNullableSerializerModifier.NullabilityViolationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ExplicitNullableSerializerModifierTest {
+    private ObjectMapper mapper;
+
+    @Before
+    public void setup() {
+        mapper = new ObjectMapper()
+                .registerModule(new SimpleModule().setSerializerModifier(
+                        new ExplicitNullableSerializerModifier()));
+    }
+
+    @Test
+    public void should_WriteValue_When_ValueMatchesNullability()
+            throws Exception {
+        Bean bean = new Bean("title", null, new Child("name"));
+
+        String json = ExplicitNullableSerializerModifier
+                .withCheck(mapper.writer(), Bean.class, false)
+                .writeValueAsString(bean);
+
+        assertEquals(mapper.writeValueAsString(bean), json);
+    }
+
+    @Test
+    public void should_WriteNullProperties_When_NotChecked() throws Exception {
+        Bean bean = new Bean(null, null, null);
+
+        assertEquals("{\"title\":null,\"description\":null,\"child\":null}",
+                mapper.writeValueAsString(bean));
+    }
+
+    @Test
+    public void should_LeaveOutNullProperties_When_NullsAreNotIncluded()
+            throws Exception {
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        Bean bean = new Bean("title", null, new Child("name"));
+
+        String json = ExplicitNullableSerializerModifier
+                .withCheck(mapper.writer(), Bean.class, false)
+                .writeValueAsString(bean);
+
+        assertEquals("{\"title\":\"title\",\"child\":{\"name\":\"name\"}}",
+                json);
+    }
+
+    @Test
+    public void should_FailWithCheckerError_When_RequiredPropertyIsNull()
+            throws Exception {
+        assertSameError(new Bean(null, null, new Child("name")), Bean.class,
+                false);
+    }
+
+    @Test
+    public void should_FailWithCheckerError_When_NestedPropertyIsNull()
+            throws Exception {
+        assertSameError(new Bean("title", null, new Child(null)), Bean.class,
+                false);
+    }
+
+    @Test
+    public void should_FailWithCheckerError_When_CollectionItemIsNull()
+            throws Exception {
+        Type type = getClass().getMethod("beanList").getGenericReturnType();
+
+        assertSameError(
+                Arrays.asList(new Bean("title", null, new Child("name")), null),
+                type, false);
+        assertSameError(Collections.singletonList(
+                new Bean("title", null, new Child(null))), type, false);
+    }
+
+    @Test
+    public void should_FailWithCheckerError_When_MapValueIsNull()
+            throws Exception {
+        Type type = getClass().getMethod("childMap").getGenericReturnType();
+        Map<String, Child> map = new HashMap<>();
+        map.put("key", null);
+
+        assertSameError(map, type, false);
+    }
+
+    @Test
+    public void should_FailWithCheckerError_When_NullableByContextIsNull()
+            throws Exception {
+        assertSameError(new Bean("title", null, new Child("name")), Bean.class,
+                true);
+    }
+
+    @Test
+    public void should_AllowNullOptional_When_ValueIsEmpty() throws Exception {
+        Bean bean = new Bean("title", Optional.empty(), new Child("name"));
+
+        assertNull(new ExplicitNullableTypeCheckerHelper(false)
+                .checkValueForType(bean, Bean.class));
+        ExplicitNullableSerializerModifier
+                .withCheck(mapper.writer(), Bean.class, false)
+                .writeValueAsString(bean);
+    }
+
+    private void assertSameError(Object value, Type type,
+            boolean requiredByContext) throws Exception {
+        String expected = new ExplicitNullableTypeCheckerHelper(
+                requiredByContext).checkValueForType(value, type);
+        assertNotNull(expected);
+        try {
+            ExplicitNullableSerializerModifier
+                    .withCheck(mapper.writer(), type, requiredByContext)
+                    .writeValueAsString(value);
+            fail("Expected the serialization to fail");
+        } catch (NullabilityViolationException e) {
+            assertEquals(expected, e.getError());
+        }
+    }
+
+    public List<Bean> beanList() {
+        return null;
+    }
+
+    public Map<String, Child> childMap() {
+        return null;
+    }
+
+    public static class Bean {
+        @Nonnull
+        private String title;
+        private Optional<String> description;
+        @Nonnull
+        private Child child;
+
+        public Bean(String title, Optional<String> description, Child child) {
+            this.title = title;
+            this.description = description;
+            this.child = child;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public Optional<String> getDescription() {
+            return description;
+        }
+
+        public Child getChild() {
+            return child;
+        }
+    }
+
+    public static class Child {
+        @Nonnull
+        private String name;
+
+        public Child(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
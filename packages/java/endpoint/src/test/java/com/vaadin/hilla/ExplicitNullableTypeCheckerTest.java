@@ -443,6 +443,19 @@ public class ExplicitNullableTypeCheckerTest {
                 .checkValueForType(employee, Employee.class, true));
     }
 
+    @Test
+    public void should_ReturnError_When_BeanGetterThrows() {
+        String error = explicitNullableTypeChecker.checkValueForType(
+                new ThrowingBean(), ThrowingBean.class, false);
+
+        Assert.assertNotNull(error);
+        Assert.assertTrue(error.contains("InvocationTargetException"));
+        // The same plan is used for the subsequent checks
+        Assert.assertEquals(error,
+                explicitNullableTypeChecker.checkValueForType(
+                        new ThrowingBean(), ThrowingBean.class, false));
+    }
+
     public List<String> parametrizedListMethod(String... args) {
         final List<String> list = new ArrayList<String>();
         for (String arg : args) {
@@ -508,6 +521,15 @@ public class ExplicitNullableTypeCheckerTest {
         }
     }
 
+    static private class ThrowingBean {
+        @Nonnull
+        private String title;
+
+        public String getTitle() {
+            throw new IllegalStateException("Not available");
+        }
+    }
+
     static private abstract class AbstractEntity<ID> {
         private ID id;
 
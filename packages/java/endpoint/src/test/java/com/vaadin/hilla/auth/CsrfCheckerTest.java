@@ -1,8 +1,12 @@
 package com.vaadin.hilla.auth;
 
 import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.util.Collections;
+import java.util.List;
+
 import com.vaadin.flow.server.startup.ApplicationConfiguration;
 
 import org.junit.Assert;
@@ -60,6 +64,89 @@ public class CsrfCheckerTest {
                 .getCsrfTokenInRequest(request);
     }
 
+    @Test
+    public void should_readCsrfTokenFromCookieHeader() {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeaders("Cookie")).thenReturn(
+                Collections.enumeration(List.of("a=1; csrfToken=foo; b=2")));
+        Mockito.when(request.getHeader("X-CSRF-Token")).thenReturn("foo");
+
+        Assert.assertTrue(csrfChecker.validateCsrfTokenInRequest(request));
+        Mockito.verify(request, Mockito.never()).getCookies();
+
+        Mockito.when(request.getHeader("X-CSRF-Token")).thenReturn("fop");
+        Assert.assertFalse(csrfChecker.validateCsrfTokenInRequest(request));
+        Mockito.when(request.getHeader("X-CSRF-Token")).thenReturn("fo");
+        Assert.assertFalse(csrfChecker.validateCsrfTokenInRequest(request));
+        Mockito.when(request.getHeader("X-CSRF-Token")).thenReturn(null);
+        Assert.assertFalse(csrfChecker.validateCsrfTokenInRequest(request));
+    }
+
+    @Test
+    public void should_readCsrfTokenFromCookies_When_CookieHeaderIsMissing() {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getCookies())
+                .thenReturn(new Cookie[] { new Cookie("csrfToken", "foo") });
+        Mockito.when(request.getHeader("X-CSRF-Token")).thenReturn("foo");
+
+        Assert.assertTrue(csrfChecker.validateCsrfTokenInRequest(request));
+    }
+
+    @Test
+    public void should_readCsrfTokenFromAnyCookieHeader_When_ThereAreSeveral() {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeaders("Cookie")).thenReturn(Collections
+                .enumeration(List.of("a=1; b=2", "c=3; csrfToken=foo")));
+        Mockito.when(request.getHeader("X-CSRF-Token")).thenReturn("foo");
+
+        Assert.assertTrue(csrfChecker.validateCsrfTokenInRequest(request));
+    }
+
+    @Test
+    public void should_readCsrfTokenFromCookies_When_CookieHeaderHasNoToken() {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeaders("Cookie"))
+                .thenReturn(Collections.enumeration(List.of("a=1; b=2")));
+        Mockito.when(request.getCookies())
+                .thenReturn(new Cookie[] { new Cookie("csrfToken", "foo") });
+        Mockito.when(request.getHeader("X-CSRF-Token")).thenReturn("foo");
+
+        Assert.assertTrue(csrfChecker.validateCsrfTokenInRequest(request));
+    }
+
+    @Test
+    public void should_readUnquotedCsrfToken_When_CookieValueIsQuoted() {
+        HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+        Mockito.when(request.getHeaders("Cookie")).thenReturn(
+                Collections.enumeration(List.of("csrfToken=\"foo\"")));
+        Mockito.when(request.getHeader("X-CSRF-Token")).thenReturn("foo");
+
+        Assert.assertTrue(csrfChecker.validateCsrfTokenInRequest(request));
+    }
+
+    @Test
+    public void should_findCookieValue_When_ParsingCookieHeader() {
+        Assert.assertEquals("foo",
+                CsrfChecker.findCookieValue("csrfToken=foo", "csrfToken"));
+        Assert.assertEquals("foo", CsrfChecker
+                .findCookieValue(" a=1 ;csrfToken = foo ;b=2", "csrfToken"));
+        Assert.assertEquals("foo", CsrfChecker
+                .findCookieValue("csrfToken=foo; csrfToken=bar", "csrfToken"));
+        Assert.assertEquals("",
+                CsrfChecker.findCookieValue("csrfToken=", "csrfToken"));
+        Assert.assertEquals("foo", CsrfChecker
+                .findCookieValue("csrfToken=\"foo\"; b=2", "csrfToken"));
+        Assert.assertEquals("\"",
+                CsrfChecker.findCookieValue("csrfToken=\"", "csrfToken"));
+        Assert.assertNull(CsrfChecker.findCookieValue(
+                "xcsrfToken=foo; csrfTokens=bar", "csrfToken"));
+        Assert.assertNull(
+                CsrfChecker.findCookieValue("a=csrfToken", "csrfToken"));
+        Assert.assertNull(
+                CsrfChecker.findCookieValue("csrfToken", "csrfToken"));
+        Assert.assertNull(CsrfChecker.findCookieValue("", "csrfToken"));
+    }
+
     @Test
     public void should_enableCsrf_When_CreatingCsrfCheckerAndXsrfProtectionEnabled() {
         Assert.assertTrue(csrfChecker.isCsrfProtectionEnabled());
@@ -7,6 +7,7 @@ import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
 import java.security.Principal;
+import java.util.function.Function;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -476,4 +477,74 @@ public class EndpointAccessCheckerTest {
         assertAccessGranted(Test.class, "test");
     }
 
+    @Test
+    public void should_CheckRolesOnEachCall_When_RuleIsReused()
+            throws Exception {
+        class Test {
+            @RolesAllowed(ROLE_USER)
+            public void test() {
+            }
+        }
+
+        assertAccessGranted(Test.class, "test");
+        when(requestMock.isUserInRole(ROLE_USER)).thenReturn(false);
+        assertAccessDenied(Test.class, "test");
+        createAnonymousContext();
+        assertAccessDenied(Test.class, "test");
+    }
+
+    @Test
+    public void should_DelegateToAccessAnnotationChecker_When_Customized()
+            throws Exception {
+        checker = new EndpointAccessChecker(new AccessAnnotationChecker() {
+            @Override
+            public boolean hasAccess(Method method, Principal principal,
+                    Function<String, Boolean> roleChecker) {
+                return !method.getName().equals("test");
+            }
+        });
+
+        class Test {
+            @PermitAll
+            public void test() {
+            }
+
+            public void other() {
+            }
+        }
+
+        assertAccessDenied(Test.class, "test");
+        assertAccessGranted(Test.class, "other");
+    }
+
+    @Test
+    public void should_KeepShowingHelpfulMessage_When_DevModeWasResolved()
+            throws Exception {
+        VaadinService mockService = Mockito.mock(VaadinService.class);
+        DeploymentConfiguration mockDeploymentConfiguration = Mockito
+                .mock(DeploymentConfiguration.class);
+        Mockito.when(mockService.getDeploymentConfiguration())
+                .thenReturn(mockDeploymentConfiguration);
+        Mockito.when(mockDeploymentConfiguration.isProductionMode())
+                .thenReturn(false);
+        class Test {
+            public void test() {
+            }
+        }
+        Method method = Test.class.getMethod("test");
+
+        CurrentInstance.set(VaadinService.class, mockService);
+        try {
+            assertEquals(EndpointAccessChecker.ACCESS_DENIED_MSG_DEV_MODE,
+                    checker.check(method, requestMock));
+        } finally {
+            CurrentInstance.clearAll();
+        }
+
+        assertEquals(EndpointAccessChecker.ACCESS_DENIED_MSG_DEV_MODE,
+                checker.check(method, requestMock));
+        Mockito.verify(mockDeploymentConfiguration, Mockito.times(1))
+                .isProductionMode();
+    }
+
 }
@@ -0,0 +1,63 @@
+package com.vaadin.hilla.push;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+public class PushBatcherTest {
+    private final Scheduler scheduler = Schedulers.newSingle("push-batcher");
+    private final List<String> written = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Test
+    public void should_WriteArray_When_BatchIsFull() {
+        PushBatcher batcher=new PushBatcher(3,60_000,scheduler,written::add);
+
+        batcher.add("{\"id\":\"1\"}");batcher.add("{\"id\":\"2\"}");Assert.assertEquals(List.of(),written);batcher.add("{\"id\":\"3\"}");batcher.add("{\"id\":\"4\"}");
+
+        Assert.assertEquals(List.of("[{\"id\":\"1\"},{\"id\":\"2\"},{\"id\":\"3\"}]"),written);
+    }
+
+    @Test
+    public void should_WriteBatch_When_WindowHasPassed() throws Exception {
+        CompletableFuture<String> batch = new CompletableFuture<>();
+        PushBatcher batcher = new PushBatcher(10, 20, scheduler,
+                batch::complete);
+
+        batcher.add("{\"id\":\"1\"}");
+        batcher.add("{\"id\":\"2\"}");
+
+        Assert.assertEquals("[{\"id\":\"1\"},{\"id\":\"2\"}]",
+                batch.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void should_WriteMessageAsIs_When_BatchHasOneMessage() {
+        PushBatcher batcher=new PushBatcher(10,60_000,scheduler,written::add);
+
+        batcher.add("{\"id\":\"1\"}");batcher.flush();batcher.flush();
+
+        Assert.assertEquals(List.of("{\"id\":\"1\"}"),written);
+    }
+
+    @Test
+    public void should_DropMessages_When_Closed() {
+        PushBatcher batcher=new PushBatcher(2,60_000,scheduler,written::add);
+
+        batcher.add("{\"id\":\"1\"}");batcher.close();batcher.add("{\"id\":\"2\"}");batcher.add("{\"id\":\"3\"}");batcher.flush();
+
+        Assert.assertEquals(List.of(),written);
+    }
+}
@@ -0,0 +1,45 @@
+package com.vaadin.hilla.push;
+
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.atmosphere.cpr.AtmosphereRequest;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.vaadin.hilla.push.messages.toclient.ClientMessageUpdate;
+
+public class PushBinaryEncodingTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Writes JSON bytes, so that the result can be checked without CBOR
+    private final PushBinaryEncoding encoding = new PushBinaryEncoding(
+            objectMapper, objectMapper);
+
+    @Test
+    public void should_EncodeSerializedItemAsValue() throws Exception {
+        byte[] bytes = encoding.write(
+                new ClientMessageUpdate("1", new RawValue("{\"a\":[1,2]}")));
+
+        Assert.assertEquals(
+                "{\"@type\":\"update\",\"id\":\"1\",\"item\":{\"a\":[1,2]}}",
+                new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void should_DetectRequest_When_HeaderOrParameterIsSet() {
+        AtmosphereRequest header = Mockito.mock(AtmosphereRequest.class);
+        Mockito.when(header.getHeader(PushBinaryEncoding.HEADER))
+                .thenReturn("cbor");
+        AtmosphereRequest parameter = Mockito.mock(AtmosphereRequest.class);
+        Mockito.when(parameter.getParameter(PushBinaryEncoding.HEADER))
+                .thenReturn("CBOR");
+        AtmosphereRequest none = Mockito.mock(AtmosphereRequest.class);
+
+        Assert.assertTrue(PushBinaryEncoding.isRequested(header));
+        Assert.assertTrue(PushBinaryEncoding.isRequested(parameter));
+        Assert.assertFalse(PushBinaryEncoding.isRequested(none));
+    }
+}
@@ -0,0 +1,143 @@
+package com.vaadin.hilla.push;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.servlet.http.HttpSession;
+
+import org.atmosphere.cpr.AtmosphereRequest;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+
+public class PushChannelTest {
+
+    private final List<PushChannel> overflowed = new ArrayList<>();
+
+    @Test
+    public void should_WriteToResource_When_Attached() {
+        AtmosphereResource resource = createResource("user");
+        PushChannel channel = new PushChannel(resource, 2, overflowed::add);
+
+        channel.write("1");
+
+        Mockito.verify(resource).write("1");
+    }
+
+    @Test
+    public void should_ReplayMissedMessages_When_Resumed() {
+        AtmosphereResource resource = createResource("user");
+        PushChannel channel = new PushChannel(resource, 2, overflowed::add);
+        Disposable expiry = Disposables.single();
+
+        channel.detach(expiry);
+        channel.write("1");
+        channel.write("2");
+        AtmosphereResource newResource = createResource("user");
+
+        Assert.assertTrue(channel.resume(newResource));
+        Assert.assertTrue(expiry.isDisposed());
+        Assert.assertTrue(channel.isAttachedTo(newResource));
+        InOrder inOrder = Mockito.inOrder(newResource);
+        inOrder.verify(newResource).write("1");
+        inOrder.verify(newResource).write("2");
+        Mockito.verify(resource, Mockito.never()).write(Mockito.anyString());
+    }
+
+    @Test
+    public void should_ReplayBinaryMessages_When_Resumed() {
+        PushChannel channel = new PushChannel(createResource("user"), 2,
+                overflowed::add);
+        byte[] message = { 1, 2 };
+
+        channel.detach(Disposables.single());
+        channel.write(message);
+        AtmosphereResource newResource = createResource("user");
+
+        Assert.assertTrue(channel.resume(newResource));
+        Mockito.verify(newResource).write(message);
+    }
+
+    @Test
+    public void should_NotResume_When_ReplayBufferOverflows() {
+        PushChannel channel = new PushChannel(createResource("user"), 2,
+                overflowed::add);
+
+        channel.detach(Disposables.single());
+        channel.write("1");
+        channel.write("2");
+        channel.write("3");
+        channel.write("4");
+
+        Assert.assertEquals(List.of(channel), overflowed);
+        Assert.assertFalse(channel.resume(createResource("user")));
+    }
+
+    @Test
+    public void should_NotResume_When_UserHasChanged() {
+        PushChannel channel = new PushChannel(createResource("user"), 2,
+                overflowed::add);
+
+        channel.detach(Disposables.single());
+
+        Assert.assertFalse(channel.resume(createResource("other")));
+        Assert.assertFalse(channel.resume(createResource(null)));
+    }
+
+    @Test
+    public void should_NotResume_When_SessionHasChanged() {
+        PushChannel channel = new PushChannel(createResource(null), 2,
+                overflowed::add);
+
+        channel.detach(Disposables.single());
+
+        Assert.assertFalse(channel.resume(createResource(null, "other")));
+        Assert.assertFalse(channel.resume(createResource(null, null)));
+        Assert.assertTrue(channel.resume(createResource(null)));
+    }
+
+    @Test
+    public void should_NotResume_When_CreatedWithoutSession() {
+        PushChannel channel = new PushChannel(createResource(null, null), 2,
+                overflowed::add);
+
+        channel.detach(Disposables.single());
+
+        Assert.assertFalse(channel.resume(createResource(null, null)));
+    }
+
+    @Test
+    public void should_NotResume_When_Attached() {
+        PushChannel channel = new PushChannel(createResource("user"), 2,
+                overflowed::add);
+
+        Assert.assertFalse(channel.resume(createResource("user")));
+    }
+
+    private static AtmosphereResource createResource(String userName) {
+        return createResource(userName, "session");
+    }
+
+    private static AtmosphereResource createResource(String userName,
+            String sessionId) {
+        AtmosphereRequest request = Mockito.mock(AtmosphereRequest.class);
+        if (userName != null) {
+            Principal principal = () -> userName;
+            Mockito.when(request.getUserPrincipal()).thenReturn(principal);
+        }
+        if (sessionId != null) {
+            HttpSession session = Mockito.mock(HttpSession.class);
+            Mockito.when(session.getId()).thenReturn(sessionId);
+            Mockito.when(request.getSession(false)).thenReturn(session);
+        }
+        AtmosphereResource resource = Mockito.mock(AtmosphereResource.class);
+        Mockito.when(resource.getRequest()).thenReturn(request);
+        return resource;
+    }
+}
@@ -0,0 +1,59 @@
+package com.vaadin.hilla.push;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.hilla.push.PushMessageHandler.SubscriptionInfo;
+
+public class PushConnectionTest {
+
+    private final PushConnection connection = new PushConnection();
+
+    @Test
+    public void should_KeepSubscriptions_When_AddingAndRemovingMany() {
+        List<SubscriptionInfo> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            SubscriptionInfo subscription = createSubscription();
+            subscriptions.add(subscription);
+            Assert.assertTrue(connection.add(String.valueOf(i), subscription));
+        }
+        for (int i = 0; i < 100; i += 2) {
+            Assert.assertSame(subscriptions.get(i),
+                    connection.remove(String.valueOf(i)));
+        }
+
+        Assert.assertEquals(50, connection.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i % 2 == 1,
+                    connection.contains(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void should_NotAdd_When_FluxIdExists() {
+        SubscriptionInfo subscription = createSubscription();
+        Assert.assertTrue(connection.add("1", subscription));
+
+        Assert.assertFalse(connection.add("1", createSubscription()));
+        Assert.assertFalse(connection.remove("1", createSubscription()));
+        Assert.assertTrue(connection.remove("1", subscription));
+        Assert.assertTrue(connection.isEmpty());
+    }
+
+    @Test
+    public void should_ReturnSubscriptionsAndRejectNewOnes_When_Closed() {
+        SubscriptionInfo subscription = createSubscription();
+        connection.add("1", subscription);
+
+        Assert.assertEquals(List.of(subscription), connection.close());
+        Assert.assertTrue(connection.isEmpty());
+        Assert.assertFalse(connection.add("2", createSubscription()));
+    }
+
+    private static SubscriptionInfo createSubscription() {
+        return new SubscriptionInfo();
+    }
+}
@@ -1,16 +1,20 @@
 package com.vaadin.hilla.push;
 
+import java.security.Principal;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.vaadin.hilla.EndpointController;
 import com.vaadin.hilla.EndpointControllerConfiguration;
 import com.vaadin.hilla.EndpointInvocationException.EndpointAccessDeniedException;
@@ -21,13 +25,15 @@ import com.vaadin.hilla.EndpointInvoker;
 import com.vaadin.hilla.EndpointProperties;
 import com.vaadin.hilla.EndpointSubscription;
 import com.vaadin.hilla.ServletContextTestSetup;
-import com.vaadin.hilla.push.PushMessageHandler.SubscriptionInfo;
+import com.vaadin.hilla.push.messages.fromclient.HeartbeatMessage;
 import com.vaadin.hilla.push.messages.fromclient.SubscribeMessage;
 import com.vaadin.hilla.push.messages.fromclient.UnsubscribeMessage;
 import com.vaadin.hilla.push.messages.toclient.AbstractClientMessage;
 import com.vaadin.hilla.push.messages.toclient.ClientMessageComplete;
 import com.vaadin.hilla.push.messages.toclient.ClientMessageError;
 import com.vaadin.hilla.push.messages.toclient.ClientMessageUpdate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.jcip.annotations.NotThreadSafe;
 import org.junit.After;
 import org.junit.Assert;
@@ -40,10 +46,14 @@ import org.springframework.boot.autoconfigure.jackson.JacksonProperties;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Sinks;
 
 @SpringBootTest(classes = { PushMessageHandler.class,
         ServletContextTestSetup.class, EndpointProperties.class,
@@ -63,6 +73,7 @@ public class PushMessageHandlerTest {
     private static final String ENDPOINT_SUBSCRIPTION_METHOD = "testEndpointSubscription";
     private static final String INFINITE_ENDPOINT_SUBSCRIPTION_METHOD = "testInfiniteEndpointSubscription";
     private static final String ENDPOINT_SUBSCRIPTION_WITH_EXCEPTION_METHOD = "testEndpointSubscriptionWithException";
+    private static final String MOCKED_FLUX_METHOD = "testMockedFlux";
 
     @Autowired
     private PushMessageHandler pushMessageHandler;
@@ -136,12 +147,15 @@ public class PushMessageHandlerTest {
                 });
 
         connectionId = UUID.randomUUID().toString();
-        pushMessageHandler.fluxSubscriptionInfos = new ConcurrentHashMap<>();
+        pushMessageHandler.connections = new ConcurrentHashMap<>();
         pushMessageHandler.handleBrowserConnect(connectionId);
     }
 
     @After
     public void after() {
+        pushMessageHandler.setMetrics(PushMetrics.DISABLED);
+        pushMessageHandler.setBuffer(0, PushOverflowStrategy.ERROR);
+        pushMessageHandler.setSubscribeExecution(0, 0);
         Assert.assertEquals(List.of(), unexpectedMessages);
     }
 
@@ -159,14 +173,14 @@ public class PushMessageHandlerTest {
 
     @Test
     public void fluxSubscription_canSubscribe() {
-        Assert.assertEquals(0, pushMessageHandler.fluxSubscriptionInfos
-                .get(connectionId).size());
+        Assert.assertEquals(0,
+                pushMessageHandler.connections.get(connectionId).size());
         SubscribeMessage message = createInfiniteFluxSubscribe();
         pushMessageHandler.handleMessage(connectionId, message,
                 ignoreUpdateMessages());
-        Assert.assertEquals(1, pushMessageHandler.fluxSubscriptionInfos.size());
-        Assert.assertEquals(1, pushMessageHandler.fluxSubscriptionInfos
-                .get(connectionId).size());
+        Assert.assertEquals(1, pushMessageHandler.connections.size());
+        Assert.assertEquals(1,
+                pushMessageHandler.connections.get(connectionId).size());
     }
 
     @Test
@@ -270,8 +284,8 @@ public class PushMessageHandlerTest {
                 });
 
         wait.await(2, TimeUnit.SECONDS);
-        Assert.assertEquals(0, pushMessageHandler.fluxSubscriptionInfos
-                .get(connectionId).size());
+        Assert.assertEquals(0,
+                pushMessageHandler.connections.get(connectionId).size());
     }
 
     @Test
@@ -288,8 +302,8 @@ public class PushMessageHandlerTest {
                 });
 
         wait.await(2, TimeUnit.SECONDS);
-        Assert.assertEquals(0, pushMessageHandler.fluxSubscriptionInfos
-                .get(connectionId).size());
+        Assert.assertEquals(0,
+                pushMessageHandler.connections.get(connectionId).size());
     }
 
     @Test
@@ -299,16 +313,16 @@ public class PushMessageHandlerTest {
         pushMessageHandler.handleMessage(connectionId, subscribeMessage,
                 ignoreUpdateMessages());
 
-        Assert.assertEquals(1, pushMessageHandler.fluxSubscriptionInfos.size());
+        Assert.assertEquals(1, pushMessageHandler.connections.size());
 
         UnsubscribeMessage unsubscribeMessage = new UnsubscribeMessage();
         unsubscribeMessage.setId(subscribeMessage.getId());
         pushMessageHandler.handleMessage(connectionId, unsubscribeMessage,
                 ignoreAll());
         Assert.assertEquals(List.of(), unexpectedMessages);
-        Assert.assertEquals(1, pushMessageHandler.fluxSubscriptionInfos.size());
-        Assert.assertTrue(pushMessageHandler.fluxSubscriptionInfos
-                .get(connectionId).isEmpty());
+        Assert.assertEquals(1, pushMessageHandler.connections.size());
+        Assert.assertTrue(
+                pushMessageHandler.connections.get(connectionId).isEmpty());
     }
 
     @Test
@@ -321,13 +335,13 @@ public class PushMessageHandlerTest {
         pushMessageHandler.handleMessage(connectionId, subscribeMessage2,
                 ignoreUpdateMessages());
 
-        Assert.assertEquals(1, pushMessageHandler.fluxSubscriptionInfos.size());
-        ConcurrentHashMap<String, SubscriptionInfo> subscriptions = pushMessageHandler.fluxSubscriptionInfos
+        Assert.assertEquals(1, pushMessageHandler.connections.size());
+        PushConnection subscriptions = pushMessageHandler.connections
                 .get(connectionId);
         Assert.assertEquals(2, subscriptions.size());
 
         pushMessageHandler.handleBrowserDisconnect(connectionId);
-        Assert.assertEquals(0, pushMessageHandler.fluxSubscriptionInfos.size());
+        Assert.assertEquals(0, pushMessageHandler.connections.size());
     }
 
     @Test
@@ -387,6 +401,719 @@ public class PushMessageHandlerTest {
         Assert.assertEquals(0, unsubscribeCalled);
     }
 
+    @Test
+    public void metrics_activeSubscriptionsAndEventsAreRecorded() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+
+        SubscribeMessage subscribeMessage = createInfiniteFluxSubscribe();
+        pushMessageHandler.handleMessage(connectionId, subscribeMessage,
+                ignoreUpdateMessages());
+        Assert.assertEquals(1,
+                registry.get(MicrometerPushMetrics.CONNECTIONS).gauge().value(),
+                0);
+        Assert.assertEquals(1, getActiveSubscriptions(registry), 0);
+
+        UnsubscribeMessage unsubscribeMessage = new UnsubscribeMessage();
+        unsubscribeMessage.setId(subscribeMessage.getId());
+        pushMessageHandler.handleMessage(connectionId, unsubscribeMessage,
+                ignoreAll());
+        pushMessageHandler.handleBrowserDisconnect(connectionId);
+
+        Assert.assertEquals(0, getActiveSubscriptions(registry), 0);
+        Assert.assertEquals(1,
+                getEventCount(registry, PushMetrics.Event.SUBSCRIBE), 0);
+        Assert.assertEquals(1,
+                getEventCount(registry, PushMetrics.Event.UNSUBSCRIBE), 0);
+        Assert.assertEquals(0,
+                registry.get(MicrometerPushMetrics.CONNECTIONS).gauge().value(),
+                0);
+    }
+
+    @Test
+    public void metrics_firstItemAndCompletionAreRecorded() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+        CountDownLatch wait = new CountDownLatch(1);
+
+        pushMessageHandler.handleMessage(connectionId, createFluxSubscribe(),
+                msg -> {
+                    if (msg instanceof ClientMessageComplete) {
+                        wait.countDown();
+                    }
+                });
+
+        Assert.assertTrue(wait.await(2, TimeUnit.SECONDS));
+        Assert.assertEquals(1, registry.get(MicrometerPushMetrics.FIRST_ITEM)
+                .tag("method", FLUX_METHOD).timer().count());
+        Assert.assertEquals(1,
+                getEventCount(registry, PushMetrics.Event.COMPLETE), 0);
+        Assert.assertEquals(0, registry.get(MicrometerPushMetrics.SUBSCRIPTIONS)
+                .tag("method", FLUX_METHOD).gauge().value(), 0);
+    }
+
+    @Test
+    public void metrics_jsonMessageSizeIsRecordedInBytes() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        PushMetrics metrics = new MicrometerPushMetrics(registry,
+                pushMessageHandler);
+
+        metrics.recordSend(metrics.startSend(), "\"aé€😀\"");
+        metrics.recordSend(metrics.startSend(), 3);
+
+        Assert.assertEquals(15, registry.get(MicrometerPushMetrics.MESSAGE_SIZE)
+                .summary().totalAmount(), 0);
+    }
+
+    @Test
+    public void metrics_registeredNamesAreUsedAsTags() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+        String endpointName = ENDPOINT_NAME.toLowerCase();
+        String methodName = MOCKED_FLUX_METHOD.toUpperCase();
+        Mockito.doReturn(Flux.class).when(endpointInvoker)
+                .getReturnType(endpointName, methodName);
+        Mockito.doReturn(Flux.never()).when(endpointInvoker).invoke(
+                Mockito.eq(endpointName), Mockito.eq(methodName), Mockito.any(),
+                Mockito.any(), Mockito.any());
+        Mockito.doReturn(ENDPOINT_NAME).when(endpointInvoker)
+                .getRegisteredEndpointName(endpointName, methodName);
+        Mockito.doReturn(MOCKED_FLUX_METHOD).when(endpointInvoker)
+                .getRegisteredMethodName(endpointName, methodName);
+
+        SubscribeMessage subscribeMessage = createSubscribe(methodName);
+        subscribeMessage.setEndpointName(endpointName);
+        pushMessageHandler.handleMessage(connectionId, subscribeMessage,
+                ignoreAll());
+
+        Assert.assertEquals(1, registry.get(MicrometerPushMetrics.SUBSCRIPTIONS)
+                .tags("endpoint", ENDPOINT_NAME, "method", MOCKED_FLUX_METHOD)
+                .gauge().value(), 0);
+    }
+
+    @Test
+    public void metrics_missingMethod_failureIsRecordedWithUnknownNames() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+        List<AbstractClientMessage> messages = new ArrayList<>();
+
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe("missing"), messages::add);
+
+        Assert.assertTrue(messages.get(0) instanceof ClientMessageError);
+        assertFailedSubscribeRecorded(registry, PushMetrics.UNKNOWN_NAME,
+                PushMetrics.UNKNOWN_NAME);
+        Assert.assertTrue(
+                registry.find(MicrometerPushMetrics.SUBSCRIPTION_EVENTS)
+                        .tag("method", "missing").counters().isEmpty());
+    }
+
+    @Test
+    public void metrics_endpointNotFound_failureIsRecorded() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+        mockFlux(Flux.never());
+        Mockito.doThrow(new EndpointNotFoundException()).when(endpointInvoker)
+                .invoke(Mockito.eq(ENDPOINT_NAME),
+                        Mockito.eq(MOCKED_FLUX_METHOD), Mockito.any(),
+                        Mockito.any(), Mockito.any());
+        List<AbstractClientMessage> messages = new ArrayList<>();
+
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), messages::add);
+
+        Assert.assertEquals("No such endpoint",
+                ((ClientMessageError) messages.get(0)).getMessage());
+        assertFailedSubscribeRecorded(registry, PushMetrics.UNKNOWN_NAME,
+                PushMetrics.UNKNOWN_NAME);
+    }
+
+    @Test
+    public void metrics_accessDenied_failureIsRecorded() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+        mockFlux(Flux.never());
+        mockRegisteredNames();
+        Mockito.doThrow(new EndpointAccessDeniedException("Access denied"))
+                .when(endpointInvoker).invoke(Mockito.eq(ENDPOINT_NAME),
+                        Mockito.eq(MOCKED_FLUX_METHOD), Mockito.any(),
+                        Mockito.any(), Mockito.any());
+        List<AbstractClientMessage> messages = new ArrayList<>();
+
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), messages::add);
+
+        Assert.assertEquals("Access denied",
+                ((ClientMessageError) messages.get(0)).getMessage());
+        assertFailedSubscribeRecorded(registry, ENDPOINT_NAME,
+                MOCKED_FLUX_METHOD);
+        // Never counted as active
+        Assert.assertEquals(0, registry.get(MicrometerPushMetrics.SUBSCRIPTIONS)
+                .tags("endpoint", ENDPOINT_NAME, "method", MOCKED_FLUX_METHOD)
+                .gauge().value(), 0);
+    }
+
+    @Test
+    public void metrics_badRequest_failureIsRecorded() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+        mockFlux(Flux.never());
+        mockRegisteredNames();
+        Mockito.doThrow(new EndpointBadRequestException("Invalid parameters"))
+                .when(endpointInvoker).invoke(Mockito.eq(ENDPOINT_NAME),
+                        Mockito.eq(MOCKED_FLUX_METHOD), Mockito.any(),
+                        Mockito.any(), Mockito.any());
+
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), ignoreAll());
+
+        assertFailedSubscribeRecorded(registry, ENDPOINT_NAME,
+                MOCKED_FLUX_METHOD);
+    }
+
+    @Test
+    public void metrics_timeout_failureIsRecordedOnce() throws Exception {
+        pushMessageHandler.setSubscribeExecution(1, 100);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+        mockRegisteredNames();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch unsubscribed = new CountDownLatch(1);
+        mockBlockingSubscription(release, unsubscribed);
+        CountDownLatch error = new CountDownLatch(1);
+
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), msg -> {
+                    if (msg instanceof ClientMessageError) {
+                        error.countDown();
+                    } else {
+                        unexpectedMessages.add(msg);
+                    }
+                });
+
+        Assert.assertTrue(error.await(2, TimeUnit.SECONDS));
+        release.countDown();
+        Assert.assertTrue(unsubscribed.await(2, TimeUnit.SECONDS));
+        assertFailedSubscribeRecorded(registry, ENDPOINT_NAME,
+                MOCKED_FLUX_METHOD);
+    }
+
+    @Test
+    public void buffer_itemsAreSentInOrder() throws Exception {
+        pushMessageHandler.setBuffer(4, PushOverflowStrategy.ERROR);
+        mockFlux(Flux.range(0, 100));
+
+        Assert.assertEquals(range(0, 100), receiveItems());
+    }
+
+    @Test
+    public void buffer_errorStrategy_overflowEndsSubscription()
+            throws Exception {
+        pushMessageHandler.setBuffer(2, PushOverflowStrategy.ERROR);
+        mockFlux(createDemandIgnoringFlux(20));
+        List<Object> items = new ArrayList<>();
+        CompletableFuture<ClientMessageError> error = new CompletableFuture<>();
+
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), msg -> {
+                    if (msg instanceof ClientMessageUpdate update) {
+                        items.add(update.getItem());
+                    } else if (msg instanceof ClientMessageError e) {
+                        error.complete(e);
+                    } else {
+                        unexpectedMessages.add(msg);
+                    }
+                });
+
+        Assert.assertEquals("Exception in Flux",
+                error.get(2, TimeUnit.SECONDS).getMessage());
+        // The buffer overflows while the first items are being sent
+        Assert.assertTrue(items.size() < 20);
+        Assert.assertEquals(range(0, items.size()), items);
+        Assert.assertTrue(
+                pushMessageHandler.connections.get(connectionId).isEmpty());
+    }
+
+    @Test
+    public void buffer_dropOldestStrategy_latestItemsAreKept()
+            throws Exception {
+        pushMessageHandler.setBuffer(2, PushOverflowStrategy.DROP_OLDEST);
+        mockFlux(createDemandIgnoringFlux(20));
+
+        Assert.assertEquals(List.of(0, 1, 18, 19), receiveItems());
+    }
+
+    @Test
+    public void buffer_latestStrategy_latestItemIsKept() throws Exception {
+        pushMessageHandler.setBuffer(2, PushOverflowStrategy.LATEST);
+        mockFlux(createDemandIgnoringFlux(20));
+
+        Assert.assertEquals(List.of(0, 1, 19), receiveItems());
+    }
+
+    @Test
+    public void buffer_slowConnection_doesNotHoldUpOtherConnections()
+            throws Exception {
+        pushMessageHandler.setBuffer(4, PushOverflowStrategy.ERROR);
+        mockFlux(Flux.range(0, 10));
+        String slowConnectionId = UUID.randomUUID().toString();
+        pushMessageHandler.handleBrowserConnect(slowConnectionId);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch sending = new CountDownLatch(1);
+        pushMessageHandler.handleMessage(slowConnectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), msg -> {
+                    sending.countDown();
+                    awaitUninterruptibly(release);
+                });
+        Assert.assertTrue(sending.await(2, TimeUnit.SECONDS));
+
+        try {
+            Assert.assertEquals(range(0, 10), receiveItems());
+        } finally {
+            release.countDown();
+            pushMessageHandler.handleBrowserDisconnect(slowConnectionId);
+        }
+    }
+
+    @Test
+    public void buffer_negativeSize_throws() {
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> pushMessageHandler.setBuffer(-1,
+                        PushOverflowStrategy.ERROR));
+    }
+
+    @Test
+    public void sharedSubscriptions_fluxIsSubscribedOnce() throws Exception {
+        mockSharedSubscription();
+        Sinks.Many<Integer> sink = Sinks.many().multicast().directBestEffort();
+        AtomicInteger subscriptions = new AtomicInteger();
+        mockFlux(sink.asFlux()
+                .doOnSubscribe(s -> subscriptions.incrementAndGet()));
+        String otherConnectionId = UUID.randomUUID().toString();
+        pushMessageHandler.handleBrowserConnect(otherConnectionId);
+        List<ClientMessageUpdate> updates = new ArrayList<>();
+
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), collectUpdates(updates));
+        pushMessageHandler.handleMessage(otherConnectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), collectUpdates(updates));
+        sink.tryEmitNext(42);
+        pushMessageHandler.handleBrowserDisconnect(otherConnectionId);
+        pushMessageHandler.handleBrowserDisconnect(connectionId);
+
+        Assert.assertEquals(1, subscriptions.get());
+        Mockito.verify(endpointInvoker, Mockito.times(2)).checkInvocation(
+                Mockito.eq(ENDPOINT_NAME), Mockito.eq(MOCKED_FLUX_METHOD),
+                Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(endpointInvoker, Mockito.times(1)).invoke(
+                Mockito.eq(ENDPOINT_NAME), Mockito.eq(MOCKED_FLUX_METHOD),
+                Mockito.any(), Mockito.any(), Mockito.any());
+        Assert.assertEquals(2, updates.size());
+        // Serialized once and written as is for each connection
+        Assert.assertSame(updates.get(0).getItem(), updates.get(1).getItem());
+        Assert.assertEquals("{\"@type\":\"update\",\"id\":\"1\",\"item\":42}",
+                objectMapper.writeValueAsString(new ClientMessageUpdate("1",
+                        updates.get(0).getItem())));
+    }
+
+    @Test
+    public void sharedSubscriptions_lastUnsubscribe_nextSubscriptionCallsEndpointAgain()
+            throws Exception {
+        mockSharedSubscription();
+        AtomicInteger subscriptions = new AtomicInteger();
+        mockFlux(Flux.<Integer> never()
+                .doOnSubscribe(s -> subscriptions.incrementAndGet()));
+        SubscribeMessage subscribe = createSubscribe(MOCKED_FLUX_METHOD);
+
+        pushMessageHandler.handleMessage(connectionId, subscribe,
+                ignoreUpdateMessages());
+        UnsubscribeMessage unsubscribe = new UnsubscribeMessage();
+        unsubscribe.setId(subscribe.getId());
+        pushMessageHandler.handleMessage(connectionId, unsubscribe,
+                ignoreUpdateMessages());
+        pushMessageHandler.handleMessage(connectionId, subscribe,
+                ignoreUpdateMessages());
+
+        Assert.assertEquals(2, subscriptions.get());
+        pushMessageHandler.handleBrowserDisconnect(connectionId);
+    }
+
+    @Test
+    public void sharedSubscriptions_differentUsers_fluxIsNotShared()
+            throws Exception {
+        mockSharedSubscription();
+        Mockito.doReturn(Flux.class).when(endpointInvoker)
+                .getReturnType(ENDPOINT_NAME, MOCKED_FLUX_METHOD);
+        // Emits the name of the user it is invoked for
+        Mockito.doAnswer(invocation -> Flux
+                .just(invocation.<Principal> getArgument(3).getName())
+                .concatWith(Flux.never())).when(endpointInvoker)
+                .invoke(Mockito.eq(ENDPOINT_NAME),
+                        Mockito.eq(MOCKED_FLUX_METHOD), Mockito.any(),
+                        Mockito.any(), Mockito.any());
+        String otherConnectionId = UUID.randomUUID().toString();
+        pushMessageHandler.handleBrowserConnect(otherConnectionId);
+        String thirdConnectionId = UUID.randomUUID().toString();
+        pushMessageHandler.handleBrowserConnect(thirdConnectionId);
+        List<ClientMessageUpdate> aliceUpdates = new ArrayList<>();
+        List<ClientMessageUpdate> bobUpdates = new ArrayList<>();
+
+        try {
+            setAuthentication("alice");
+            pushMessageHandler.handleMessage(connectionId,
+                    createSubscribe(MOCKED_FLUX_METHOD),
+                    collectUpdates(aliceUpdates));
+            setAuthentication("bob");
+            pushMessageHandler.handleMessage(otherConnectionId,
+                    createSubscribe(MOCKED_FLUX_METHOD),
+                    collectUpdates(bobUpdates));
+            setAuthentication("alice");
+            pushMessageHandler.handleMessage(thirdConnectionId,
+                    createSubscribe(MOCKED_FLUX_METHOD),
+                    collectUpdates(aliceUpdates));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        pushMessageHandler.handleBrowserDisconnect(thirdConnectionId);
+        pushMessageHandler.handleBrowserDisconnect(otherConnectionId);
+        pushMessageHandler.handleBrowserDisconnect(connectionId);
+
+        // Invoked once for each user
+        Mockito.verify(endpointInvoker, Mockito.times(2)).invoke(
+                Mockito.eq(ENDPOINT_NAME), Mockito.eq(MOCKED_FLUX_METHOD),
+                Mockito.any(), Mockito.any(), Mockito.any());
+        Assert.assertEquals(List.of("\"bob\""), serializedItems(bobUpdates));
+        // The second subscription of alice joins after the first item
+        Assert.assertEquals(List.of("\"alice\""),
+                serializedItems(aliceUpdates));
+    }
+
+    @Test
+    public void sharedSubscriptions_accessDenied_subscriberIsNotAdded()
+            throws Exception {
+        mockSharedSubscription();
+        Sinks.Many<Integer> sink = Sinks.many().multicast().directBestEffort();
+        mockFlux(sink.asFlux());
+        String otherConnectionId = UUID.randomUUID().toString();
+        pushMessageHandler.handleBrowserConnect(otherConnectionId);
+        List<ClientMessageUpdate> updates = new ArrayList<>();
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), collectUpdates(updates));
+
+        Mockito.doThrow(new EndpointAccessDeniedException("Access denied"))
+                .when(endpointInvoker)
+                .checkInvocation(Mockito.eq(ENDPOINT_NAME),
+                        Mockito.eq(MOCKED_FLUX_METHOD), Mockito.any(),
+                        Mockito.any(), Mockito.any());
+        List<AbstractClientMessage> otherMessages = new ArrayList<>();
+        pushMessageHandler.handleMessage(otherConnectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), otherMessages::add);
+        sink.tryEmitNext(42);
+
+        Assert.assertEquals(1, updates.size());
+        Assert.assertEquals(1, otherMessages.size());
+        Assert.assertEquals("Access denied",
+                ((ClientMessageError) otherMessages.get(0)).getMessage());
+        Assert.assertTrue(pushMessageHandler.connections.get(otherConnectionId)
+                .isEmpty());
+        pushMessageHandler.handleBrowserDisconnect(otherConnectionId);
+        pushMessageHandler.handleBrowserDisconnect(connectionId);
+    }
+
+    @Test
+    public void subscribeExecution_endpointIsInvokedOnSubscribeThread()
+            throws Exception {
+        pushMessageHandler.setSubscribeExecution(2, 2000);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+        CompletableFuture<Thread> itemThread = new CompletableFuture<>();
+        CountDownLatch completed = new CountDownLatch(1);
+
+        pushMessageHandler.handleMessage(connectionId, createFluxSubscribe(),
+                msg -> {
+                    if (msg instanceof ClientMessageUpdate) {
+                        itemThread.complete(Thread.currentThread());
+                    } else if (msg instanceof ClientMessageComplete) {
+                        completed.countDown();
+                    } else {
+                        unexpectedMessages.add(msg);
+                    }
+                });
+
+        Assert.assertTrue(completed.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(
+                itemThread.get().getName().startsWith("hilla-push-subscribe"));
+        // Does not keep the JVM from exiting
+        Assert.assertTrue(itemThread.get().isDaemon());
+        Assert.assertEquals(1, registry.get(MicrometerPushMetrics.SUBSCRIBE)
+                .tag("method", FLUX_METHOD).timer().count());
+    }
+
+    @Test
+    public void subscribeExecution_slowEndpointTimesOut() throws Exception {
+        pushMessageHandler.setSubscribeExecution(1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch unsubscribed = new CountDownLatch(1);
+        mockBlockingSubscription(release, unsubscribed);
+        CompletableFuture<ClientMessageError> error = new CompletableFuture<>();
+
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), msg -> {
+                    if (msg instanceof ClientMessageError clientMessageError) {
+                        error.complete(clientMessageError);
+                    } else {
+                        unexpectedMessages.add(msg);
+                    }
+                });
+
+        Assert.assertEquals("Subscription timed out",
+                error.get(2, TimeUnit.SECONDS).getMessage());
+        Assert.assertTrue(
+                pushMessageHandler.connections.get(connectionId).isEmpty());
+        release.countDown();
+        // The endpoint subscription returned after the timeout is
+        // unsubscribed right away
+        Assert.assertTrue(unsubscribed.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void subscribeExecution_unsubscribeWhileInvoking_endpointSubscriptionIsUnsubscribed()
+            throws Exception {
+        pushMessageHandler.setSubscribeExecution(1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch unsubscribed = new CountDownLatch(1);
+        mockBlockingSubscription(release, unsubscribed);
+        SubscribeMessage subscribeMessage = createSubscribe(MOCKED_FLUX_METHOD);
+
+        pushMessageHandler.handleMessage(connectionId, subscribeMessage,
+                ignore());
+        UnsubscribeMessage unsubscribeMessage = new UnsubscribeMessage();
+        unsubscribeMessage.setId(subscribeMessage.getId());
+        pushMessageHandler.handleMessage(connectionId, unsubscribeMessage,
+                ignore());
+        release.countDown();
+
+        Assert.assertTrue(unsubscribed.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(
+                pushMessageHandler.connections.get(connectionId).isEmpty());
+    }
+
+    @Test
+    public void destroy_endpointIsInvokedOnMessageThread() throws Exception {
+        pushMessageHandler.setSubscribeExecution(1, 0);
+        pushMessageHandler.destroy();
+        List<String> itemThreads = new ArrayList<>();
+
+        pushMessageHandler.handleMessage(connectionId, createFluxSubscribe(),
+                msg -> {
+                    if (msg instanceof ClientMessageUpdate) {
+                        itemThreads.add(Thread.currentThread().getName());
+                    } else if (!(msg instanceof ClientMessageComplete)) {
+                        unexpectedMessages.add(msg);
+                    }
+                });
+
+        Assert.assertEquals(List.of(Thread.currentThread().getName()),
+                itemThreads);
+    }
+
+    @Test
+    public void subscribeExecution_negativeTimeout_throws() {
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> pushMessageHandler.setSubscribeExecution(1, -1));
+    }
+
+    @Test
+    public void idleConnections_silentConnectionIsIdle() throws Exception {
+        Thread.sleep(20);
+        Assert.assertEquals(List.of(connectionId),
+                pushMessageHandler.getIdleConnections(10));
+
+        pushMessageHandler.handleMessage(connectionId, new HeartbeatMessage(),
+                ignore());
+
+        Assert.assertEquals(List.of(),
+                pushMessageHandler.getIdleConnections(10));
+    }
+
+    @Test
+    public void idleConnections_reapedConnectionIsUnsubscribed()
+            throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        pushMessageHandler.setMetrics(
+                new MicrometerPushMetrics(registry, pushMessageHandler));
+        pushMessageHandler.handleMessage(connectionId,
+                createInfiniteEndpointSubscriptionSubscribe(),
+                ignoreUpdateMessages());
+        String activeConnectionId = UUID.randomUUID().toString();
+        pushMessageHandler.handleBrowserConnect(activeConnectionId);
+        Thread.sleep(20);
+        pushMessageHandler.handleMessage(activeConnectionId,
+                new HeartbeatMessage(), ignore());
+
+        Assert.assertEquals(List.of(connectionId),
+                pushMessageHandler.reapIdleConnections(10));
+
+        Assert.assertEquals(1, unsubscribeCalled);
+        Assert.assertEquals(Set.of(activeConnectionId),
+                pushMessageHandler.connections.keySet());
+        Assert.assertEquals(1,
+                registry.get(MicrometerPushMetrics.CONNECTIONS_REAPED).counter()
+                        .count(),
+                0);
+        pushMessageHandler.handleBrowserDisconnect(activeConnectionId);
+    }
+
+    private void mockBlockingSubscription(CountDownLatch release,
+            CountDownLatch unsubscribed) throws Exception {
+        Mockito.doReturn(EndpointSubscription.class).when(endpointInvoker)
+                .getReturnType(ENDPOINT_NAME, MOCKED_FLUX_METHOD);
+        Mockito.doAnswer(invocation -> {
+            awaitUninterruptibly(release);
+            return EndpointSubscription.of(Flux.never(),
+                    unsubscribed::countDown);
+        }).when(endpointInvoker).invoke(Mockito.eq(ENDPOINT_NAME),
+                Mockito.eq(MOCKED_FLUX_METHOD), Mockito.any(), Mockito.any(),
+                Mockito.any());
+    }
+
+    private static List<Object> serializedItems(
+            List<ClientMessageUpdate> updates) {
+        return updates.stream()
+                .map(update -> ((RawValue) update.getItem()).rawValue())
+                .toList();
+    }
+
+    private static void setAuthentication(String userName) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(userName, null));
+    }
+
+    private void mockSharedSubscription() {
+        Mockito.doReturn(true).when(endpointInvoker)
+                .isSharedSubscription(ENDPOINT_NAME, MOCKED_FLUX_METHOD);
+    }
+
+    private Consumer<AbstractClientMessage> collectUpdates(
+            List<ClientMessageUpdate> updates) {
+        return msg -> {
+            if (msg instanceof ClientMessageUpdate update) {
+                updates.add(update);
+            } else {
+                unexpectedMessages.add(msg);
+            }
+        };
+    }
+
+    private void mockFlux(Flux<Integer> flux) throws Exception {
+        Mockito.doReturn(Flux.class).when(endpointInvoker)
+                .getReturnType(ENDPOINT_NAME, MOCKED_FLUX_METHOD);
+        Mockito.doReturn(flux).when(endpointInvoker).invoke(
+                Mockito.eq(ENDPOINT_NAME), Mockito.eq(MOCKED_FLUX_METHOD),
+                Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    private List<Object> receiveItems() throws Exception {
+        List<Object> items = new ArrayList<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(1);
+        pushMessageHandler.handleMessage(connectionId,
+                createSubscribe(MOCKED_FLUX_METHOD), msg -> {
+                    // Send slower than the flux emits, until it has emitted
+                    // all the items on subscribe
+                    awaitUninterruptibly(subscribed);
+                    if (msg instanceof ClientMessageUpdate update) {
+                        items.add(update.getItem());
+                    } else if (msg instanceof ClientMessageComplete) {
+                        completed.countDown();
+                    } else {
+                        unexpectedMessages.add(msg);
+                    }
+                });
+        subscribed.countDown();
+        Assert.assertTrue(completed.await(2, TimeUnit.SECONDS));
+        return items;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Object> range(int from, int to) {
+        List<Object> items = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    /**
+     * Creates a flux that emits all its items as soon as it is subscribed to,
+     * like a hot source would.
+     */
+    private static Flux<Integer> createDemandIgnoringFlux(int count) {
+        return Flux.create(sink -> {
+            for (int i = 0; i < count; i++) {
+                sink.next(i);
+            }
+            sink.complete();
+        }, FluxSink.OverflowStrategy.IGNORE);
+    }
+
+    private SubscribeMessage createSubscribe(String methodName) {
+        SubscribeMessage subscribeMessage = new SubscribeMessage();
+        subscribeMessage.setId(connectionId);
+        subscribeMessage.setEndpointName(ENDPOINT_NAME);
+        subscribeMessage.setMethodName(methodName);
+        subscribeMessage.setParams(objectMapper.createArrayNode());
+        return subscribeMessage;
+    }
+
+    private double getActiveSubscriptions(MeterRegistry registry) {
+        return registry.get(MicrometerPushMetrics.SUBSCRIPTIONS)
+                .tags("endpoint", ENDPOINT_NAME, "method", INFINITE_FLUX_METHOD)
+                .gauge().value();
+    }
+
+    private static void assertFailedSubscribeRecorded(MeterRegistry registry,
+            String endpointName, String methodName) {
+        for (PushMetrics.Event event : List.of(PushMetrics.Event.SUBSCRIBE,
+                PushMetrics.Event.ERROR)) {
+            Assert.assertEquals(1,
+                    registry.get(MicrometerPushMetrics.SUBSCRIPTION_EVENTS)
+                            .tags("endpoint", endpointName, "method",
+                                    methodName, "event", event.getTag())
+                            .counter().count(),
+                    0);
+        }
+    }
+
+    private void mockRegisteredNames() {
+        Mockito.doReturn(ENDPOINT_NAME).when(endpointInvoker)
+                .getRegisteredEndpointName(ENDPOINT_NAME, MOCKED_FLUX_METHOD);
+        Mockito.doReturn(MOCKED_FLUX_METHOD).when(endpointInvoker)
+                .getRegisteredMethodName(ENDPOINT_NAME, MOCKED_FLUX_METHOD);
+    }
+
+    private double getEventCount(MeterRegistry registry,
+            PushMetrics.Event event) {
+        return registry.get(MicrometerPushMetrics.SUBSCRIPTION_EVENTS)
+                .tag("event", event.getTag()).counter().count();
+    }
+
     private Consumer<AbstractClientMessage> ignoreAll() {
         return msg -> {
         };
@@ -0,0 +1,50 @@
+package com.vaadin.hilla.push;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vaadin.hilla.push.messages.toclient.AbstractClientMessage;
+import com.vaadin.hilla.push.messages.toclient.ClientMessageComplete;
+import com.vaadin.hilla.push.messages.toclient.ClientMessageError;
+import com.vaadin.hilla.push.messages.toclient.ClientMessageUpdate;
+
+public class PushMessageWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PushMessageWriter writer = new PushMessageWriter(
+            objectMapper);
+
+    @Test
+    public void should_WriteUpdateLikeJackson() throws Exception {
+        assertWrittenLikeJackson(new ClientMessageUpdate("1", "Hello"));
+        assertWrittenLikeJackson(new ClientMessageUpdate("2",
+                Map.of("name", "\"quoted\"\n", "count", 3)));
+        assertWrittenLikeJackson(new ClientMessageUpdate("3", null));
+        assertWrittenLikeJackson(new ClientMessageUpdate("\"4\\", 4));
+        assertWrittenLikeJackson(new ClientMessageUpdate(null, 5));
+    }
+
+    @Test
+    public void should_WriteOtherMessagesLikeJackson() throws Exception {
+        assertWrittenLikeJackson(new ClientMessageComplete("1"));
+        assertWrittenLikeJackson(new ClientMessageError("1", "Failed"));
+    }
+
+    @Test
+    public void should_SpliceSerializedItem() throws Exception {
+        Assert.assertEquals(
+                "{\"@type\":\"update\",\"id\":\"1\",\"item\":[1,2]}",
+                writer.write(
+                        new ClientMessageUpdate("1", new RawValue("[1,2]"))));
+    }
+
+    private void assertWrittenLikeJackson(AbstractClientMessage message)
+            throws Exception {
+        Assert.assertEquals(objectMapper.writeValueAsString(message),
+                writer.write(message));
+    }
+}
@@ -283,6 +283,34 @@ public class SecurityIT extends ChromeBrowserTest {
         assertLoginViewShown();
     }
 
+    @Test
+    public void batch_calls_checked_separately_for_anonymous_user() {
+        open("");
+        assertRootPageShown();
+        String response = (String) getJavascriptExecutor().executeAsyncScript(
+                "const done = arguments[arguments.length - 1];"
+                        + "const meta = (name) => document.head"
+                        + "  .querySelector(`meta[name=\"${name}\"]`)?.content;"
+                        + "const headers = { 'Content-Type': 'application/json' };"
+                        + "if (meta('_csrf') && meta('_csrf_header')) {"
+                        + "  headers[meta('_csrf_header')] = meta('_csrf');"
+                        + "} else {"
+                        + "  headers['X-CSRF-Token'] = document.cookie.split('; ')"
+                        + "    .find((c) => c.startsWith('csrfToken='))"
+                        + "    ?.substring('csrfToken='.length) ?? '';"
+                        + "}"
+                        + "fetch('/connect/batch', { method: 'POST', headers,"
+                        + "  body: JSON.stringify(["
+                        + "    { endpoint: 'PublicEndpoint', method: 'getServerTime' },"
+                        + "    { endpoint: 'BalanceEndpoint', method: 'getBalance' }]) })"
+                        + "  .then((r) => r.text().then((t) => done(r.status + ' ' + t)),"
+                        + "    (e) => done('error ' + e));");
+        Assert.assertTrue(response, response.startsWith("200 "));
+        String results = response.substring("200 ".length());
+        Assert.assertTrue(results, results.matches(
+                "\\[\\{\"status\":200,\"result\":.*\\},\\{\"status\":401,.*\\}\\]"));
+    }
+
     @Test
     public void private_page_reactive_endpoint_works() {
         open("login");
@@ -0,0 +1,229 @@
+const BREAK = Symbol('break');
+
+function toBase64(bytes: Uint8Array): string {
+  let binary = '';
+  // In chunks, as the number of arguments of a call is limited
+  for (let i = 0; i < bytes.length; i += 0x8000) {
+    binary += String.fromCharCode(...bytes.subarray(i, i + 0x8000));
+  }
+  return btoa(binary);
+}
+
+/**
+ * Decodes the CBOR encoded push messages of the server.
+ *
+ * Supports the subset of CBOR written by Jackson: integers, floats, strings, byte strings, arrays and maps of definite
+ * or indefinite length, and the simple values. The values are decoded as in the JSON messages: byte strings as Base64
+ * strings, and bignums, decimal fractions and bigfloats as numbers. The other tags are skipped.
+ */
+class CborDecoder {
+  readonly #view: DataView;
+  readonly #bytes: Uint8Array;
+  readonly #textDecoder = new TextDecoder();
+  #offset = 0;
+
+  constructor(bytes: Uint8Array) {
+    this.#bytes = bytes;
+    this.#view = new DataView(bytes.buffer, bytes.byteOffset, bytes.byteLength);
+  }
+
+  get done(): boolean {
+    return this.#offset >= this.#bytes.length;
+  }
+
+  decode(): unknown {
+    const value = this.#decodeRaw();
+    // Jackson writes byte arrays as Base64 strings in JSON
+    return value instanceof Uint8Array ? toBase64(value) : value;
+  }
+
+  #decodeRaw(): unknown {
+    const value = this.#decodeItem();
+    if (value === BREAK) {
+      throw new Error('Unexpected break in CBOR data');
+    }
+    return value;
+  }
+
+  #decodeItem(): unknown {
+    const initial = this.#readUint8();
+    const major = Math.floor(initial / 32);
+    const info = initial % 32;
+
+    if (major === 7) {
+      return this.#decodeSimple(info);
+    }
+    if (info === 31) {
+      return this.#decodeIndefinite(major);
+    }
+
+    const argument = this.#readArgument(info);
+    switch (major) {
+      case 0:
+        return argument;
+      case 1:
+        return -1 - argument;
+      case 2:
+        return this.#readBytes(argument).slice();
+      case 3:
+        return this.#textDecoder.decode(this.#readBytes(argument));
+      case 4:
+        return Array.from({ length: argument }, () => this.decode());
+      case 5: {
+        const map: Record<string, unknown> = {};
+        for (let i = 0; i < argument; i += 1) {
+          map[String(this.decode())] = this.decode();
+        }
+        return map;
+      }
+      default:
+        return this.#decodeTag(argument);
+    }
+  }
+
+  #decodeIndefinite(major: number): unknown {
+    switch (major) {
+      case 2:
+      case 3: {
+        const chunks: unknown[] = [];
+        for (let chunk = this.#decodeItem(); chunk !== BREAK; chunk = this.#decodeItem()) {
+          chunks.push(chunk);
+        }
+        if (major === 3) {
+          return chunks.join('');
+        }
+        const bytes = new Uint8Array(chunks.reduce<number>((length, chunk) => length + (chunk as Uint8Array).length, 0));
+        chunks.reduce<number>((offset, chunk) => {
+          bytes.set(chunk as Uint8Array, offset);
+          return offset + (chunk as Uint8Array).length;
+        }, 0);
+        return bytes;
+      }
+      case 4: {
+        const array: unknown[] = [];
+        for (let item = this.#decodeItem(); item !== BREAK; item = this.#decodeItem()) {
+          array.push(item);
+        }
+        return array;
+      }
+      case 5: {
+        const map: Record<string, unknown> = {};
+        for (let key = this.#decodeItem(); key !== BREAK; key = this.#decodeItem()) {
+          map[String(key)] = this.decode();
+        }
+        return map;
+      }
+      default:
+        throw new Error(`Unsupported indefinite length CBOR item of major type ${major}`);
+    }
+  }
+
+  #decodeTag(tag: number): unknown {
+    const value = this.#decodeRaw();
+    if ((tag === 2 || tag === 3) && value instanceof Uint8Array) {
+      const magnitude = value.reduce((result, byte) => result * 256 + byte, 0);
+      return tag === 2 ? magnitude : -1 - magnitude;
+    }
+    if ((tag === 4 || tag === 5) && Array.isArray(value) && value.length === 2) {
+      const [exponent, mantissa] = value;
+      if (typeof exponent === 'number' && typeof mantissa === 'number') {
+        // A BigDecimal is written as a decimal fraction. With a safe integer
+        // mantissa, dividing by an exact power of ten gives the same number
+        // as parsing it from JSON.
+        const base = tag === 4 ? 10 : 2;
+        return exponent < 0 ? mantissa / base ** -exponent : mantissa * base ** exponent;
+      }
+    }
+    return value;
+  }
+
+  #decodeSimple(info: number): unknown {
+    switch (info) {
+      case 20:
+        return false;
+      case 21:
+        return true;
+      case 22:
+        return null;
+      case 23:
+        return undefined;
+      case 25:
+        return this.#readHalfFloat();
+      case 26:
+        return this.#read(4, (offset) => this.#view.getFloat32(offset));
+      case 27:
+        return this.#read(8, (offset) => this.#view.getFloat64(offset));
+      case 31:
+        return BREAK;
+      default:
+        if (info < 24) {
+          return undefined;
+        }
+        throw new Error(`Unsupported CBOR simple value ${info}`);
+    }
+  }
+
+  #readArgument(info: number): number {
+    if (info < 24) {
+      return info;
+    }
+    switch (info) {
+      case 24:
+        return this.#readUint8();
+      case 25:
+        return this.#read(2, (offset) => this.#view.getUint16(offset));
+      case 26:
+        return this.#read(4, (offset) => this.#view.getUint32(offset));
+      case 27:
+        return Number(this.#read(8, (offset) => this.#view.getBigUint64(offset)));
+      default:
+        throw new Error(`Invalid CBOR additional information ${info}`);
+    }
+  }
+
+  #readHalfFloat(): number {
+    const half = this.#read(2, (offset) => this.#view.getUint16(offset));
+    const sign = half >= 0x8000 ? -1 : 1;
+    const exponent = Math.floor(half / 0x400) % 0x20;
+    const fraction = half % 0x400;
+    if (exponent === 0) {
+      return sign * 2 ** -14 * (fraction / 0x400);
+    }
+    if (exponent === 0x1f) {
+      return fraction === 0 ? sign * Infinity : NaN;
+    }
+    return sign * 2 ** (exponent - 15) * (1 + fraction / 0x400);
+  }
+
+  #readUint8(): number {
+    return this.#read(1, (offset) => this.#view.getUint8(offset));
+  }
+
+  #readBytes(length: number): Uint8Array {
+    return this.#read(length, (offset) => this.#bytes.subarray(offset, offset + length));
+  }
+
+  #read<T>(length: number, reader: (offset: number) => T): T {
+    if (this.#offset + length > this.#bytes.length) {
+      throw new Error('Unexpected end of CBOR data');
+    }
+    const value = reader(this.#offset);
+    this.#offset += length;
+    return value;
+  }
+}
+
+/**
+ * Decodes a sequence of CBOR data items, as in a batch of push messages.
+ *
+ * @param data - the CBOR encoded data
+ * @returns the decoded items, in order
+ */
+export function decodeCborSequence(data: ArrayBuffer): unknown[] {
+  const decoder = new CborDecoder(new Uint8Array(data));
+  const items: unknown[] = [];
+  while (!decoder.done) {
+    items.push(decoder.decode());
+  }
+  return items;
+}
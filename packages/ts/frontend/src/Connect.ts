@@ -92,6 +92,55 @@ const assertResponseIsOk = async (response: Response): Promise<void> => {
   }
 };
 
+/**
+ * Makes the request, keeping the connection state in sync.
+ * @param request - The request to send.
+ * @param signal - An optional signal to abort the request.
+ */
+async function fetchWithConnectionState(request: Request, signal?: AbortSignal | null): Promise<Response> {
+  $wnd.Vaadin?.connectionState?.loadingStarted();
+  try {
+    const response = await fetch(request, { signal });
+    $wnd.Vaadin?.connectionState?.loadingFinished();
+    return response;
+  } catch (error: unknown) {
+    // don't bother about connections aborted by purpose
+    if (error instanceof Error && error.name === 'AbortError') {
+      $wnd.Vaadin?.connectionState?.loadingFinished();
+    } else {
+      $wnd.Vaadin?.connectionState?.loadingFailed();
+    }
+    return Promise.reject(error);
+  }
+}
+
+/**
+ * Serializes the headers, so that the changes made to them can be detected.
+ */
+function serializeHeaders(headers: Headers): string {
+  const lines: string[] = [];
+  headers.forEach((value, name) => lines.push(`${name}: ${value}`));
+  return lines.join('\n');
+}
+
+/**
+ * A call waiting to be sent as a part of a batch request.
+ */
+interface BatchedCall {
+  context: MiddlewareContext;
+  reject(reason: unknown): void;
+  resolve(response: Response): void;
+}
+
+/**
+ * The result of a single call in a batch response.
+ */
+interface BatchedCallResult {
+  error?: unknown;
+  result?: unknown;
+  status: number;
+}
+
 /**
  * The `ConnectClient` constructor options.
  */
@@ -108,6 +157,14 @@ export interface ConnectClientOptions {
    * The Atmosphere options for the FluxConnection.
    */
   atmosphereOptions?: Partial<Atmosphere.Request>;
+  /**
+   * The `batch` property value.
+   */
+  batch?: boolean;
+  /**
+   * The `binaryPush` property value.
+   */
+  binaryPush?: boolean;
 }
 
 export interface EndpointCallMetaInfo {
@@ -203,6 +260,18 @@ export interface EndpointRequestInit {
  *
  * The default prefix is '/connect'.
  *
+ * ### Batching
+ *
+ * When the `batch` option is enabled, the calls made in the same microtask
+ * are sent to the server in a single request:
+ * ```js
+ * const client = new ConnectClient({batch: true});
+ * ```
+ *
+ * The middlewares still see a separate request and response for each call.
+ * Calls with an abort signal, and calls whose request was replaced or had its
+ * headers changed by a middleware, are always sent separately.
+ *
  */
 export class ConnectClient {
   /**
@@ -217,7 +286,17 @@ export class ConnectClient {
    * The Atmosphere options for the FluxConnection.
    */
   atmosphereOptions: Partial<Atmosphere.Request> = {};
+  /**
+   * Whether the calls made in the same microtask are sent in a single request
+   */
+  batch = false;
+  /**
+   * Whether the FluxConnection asks the server for binary (CBOR) push messages. Only used with the websocket transport,
+   * so the connection then does not fall back to long polling.
+   */
+  binaryPush = false;
 
+  #batchQueue: BatchedCall[] = [];
   #fluxConnection?: FluxConnection;
 
   /**
@@ -236,6 +315,14 @@ export class ConnectClient {
       this.atmosphereOptions = options.atmosphereOptions;
     }
 
+    if (options.batch) {
+      this.batch = options.batch;
+    }
+
+    if (options.binaryPush) {
+      this.binaryPush = options.binaryPush;
+    }
+
     // add connection indicator to DOM
     ConnectionIndicator.create();
 
@@ -259,7 +346,7 @@ export class ConnectClient {
    */
   get fluxConnection(): FluxConnection {
     if (!this.#fluxConnection) {
-      this.#fluxConnection = new FluxConnection(this.prefix, this.atmosphereOptions);
+      this.#fluxConnection = new FluxConnection(this.prefix, this.atmosphereOptions, this.binaryPush);
     }
     return this.#fluxConnection;
   }
@@ -321,23 +408,19 @@ export class ConnectClient {
 
     // The actual fetch call itself is expressed as a middleware
     // chain item for our convenience. Always having an ending of the chain
-    // this way makes the folding down below more concise.
-    async function fetchNext(context: MiddlewareContext) {
-      $wnd.Vaadin?.connectionState?.loadingStarted();
-      try {
-        const response = await fetch(context.request, { signal: init?.signal });
-        $wnd.Vaadin?.connectionState?.loadingFinished();
-        return response;
-      } catch (error: unknown) {
-        // don't bother about connections aborted by purpose
-        if (error instanceof Error && error.name === 'AbortError') {
-          $wnd.Vaadin?.connectionState?.loadingFinished();
-        } else {
-          $wnd.Vaadin?.connectionState?.loadingFailed();
-        }
-        return Promise.reject(error);
-      }
-    }
+    // this way makes the folding down below more concise. Calls that can be
+    // batched are queued instead, and sent together with the other calls made
+    // in the same microtask. The batch request is built from the call
+    // arguments, so the calls whose request was changed by a middleware are
+    // sent as is.
+    const initialHeaders = serializeHeaders(request.headers);
+    const fetchNext: MiddlewareNext = async (context) =>
+      this.batch &&
+      !init?.signal &&
+      context.request === request &&
+      serializeHeaders(context.request.headers) === initialHeaders
+        ? this.#enqueueBatchedCall(context)
+        : fetchWithConnectionState(context.request, init?.signal);
 
     // Assemble the final middlewares array from internal
     // and external middlewares
@@ -363,6 +446,68 @@ export class ConnectClient {
     return chain(initialContext);
   }
 
+  async #enqueueBatchedCall(context: MiddlewareContext): Promise<Response> {
+    return new Promise((resolve, reject) => {
+      if (this.#batchQueue.length === 0) {
+        queueMicrotask(() => {
+          this.#sendBatch().catch(() => {});
+        });
+      }
+      this.#batchQueue.push({ context, reject, resolve });
+    });
+  }
+
+  async #sendBatch(): Promise<void> {
+    const calls = this.#batchQueue;
+    this.#batchQueue = [];
+
+    if (calls.length === 1) {
+      // Nothing to coalesce, the call is sent as is
+      const [{ context, reject, resolve }] = calls;
+      await fetchWithConnectionState(context.request).then(resolve, reject);
+      return;
+    }
+
+    const request = new Request(`${this.prefix}/batch`, {
+      body: JSON.stringify(
+        calls.map(({ context: { endpoint, method, params } }) => ({ endpoint, method, params })),
+        (_, value) => (value === undefined ? null : value),
+      ),
+      headers: {
+        Accept: 'application/json',
+        'Content-Type': 'application/json',
+        ...getCsrfTokenHeadersForEndpointRequest(document),
+      },
+      method: 'POST',
+    });
+
+    try {
+      const response = await fetchWithConnectionState(request);
+      if (!response.ok) {
+        // The whole batch was rejected, so is every call in it
+        const text = await response.text();
+        calls.forEach(({ resolve }) =>
+          resolve(new Response(text, { headers: response.headers, status: response.status })),
+        );
+        return;
+      }
+
+      const results: BatchedCallResult[] = await response.json();
+      if (!Array.isArray(results) || results.length !== calls.length) {
+        throw new TypeError(`expected ${calls.length} results in the batch response`);
+      }
+
+      calls.forEach(({ resolve }, index) => {
+        const { error, result, status } = results[index];
+        const ok = status >= 200 && status < 300;
+        const body = ok ? JSON.stringify(result ?? null) : error !== undefined ? JSON.stringify(error) : '';
+        resolve(new Response(body, { headers: { 'Content-Type': 'application/json' }, status }));
+      });
+    } catch (error: unknown) {
+      calls.forEach(({ reject }) => reject(error));
+    }
+  }
+
   /**
    * Subscribes to the given method defined using the endpoint and method
    * parameters with the parameters given as params. The method must return a
@@ -1,5 +1,6 @@
 import type { ReactiveControllerHost } from '@lit/reactive-element';
 import atmosphere from 'atmosphere.js';
+import { decodeCborSequence } from './CborDecoder.js';
 import type { Subscription } from './Connect.js';
 import { getCsrfTokenHeadersForEndpointRequest } from './CsrfUtils.js';
 import {
@@ -9,6 +10,8 @@ import {
   type ServerMessage,
 } from './FluxMessages.js';
 
+const PUSH_ENCODING_HEADER = 'X-Hilla-Push-Encoding';
+
 export enum State {
   ACTIVE = 'active',
   INACTIVE = 'inactive',
@@ -39,9 +42,15 @@ export class FluxConnection extends EventTarget {
   #pendingMessages: ServerMessage[] = [];
   #socket?: Atmosphere.Request;
 
-  constructor(connectPrefix: string, atmosphereOptions?: Partial<Atmosphere.Request>) {
+  /**
+   * @param connectPrefix - the Hilla endpoint prefix
+   * @param atmosphereOptions - the options overriding the default Atmosphere ones
+   * @param binary - whether to ask the server for binary (CBOR) push messages, which are only supported with the
+   * websocket transport, so the connection does not fall back to long polling
+   */
+  constructor(connectPrefix: string, atmosphereOptions?: Partial<Atmosphere.Request>, binary = false) {
     super();
-    this.#connectWebsocket(connectPrefix.replace(/connect$/u, ''), atmosphereOptions ?? {});
+    this.#connectWebsocket(connectPrefix.replace(/connect$/u, ''), atmosphereOptions ?? {}, binary);
   }
 
   /**
@@ -96,8 +105,17 @@ export class FluxConnection extends EventTarget {
     return hillaSubscription;
   }
 
-  #connectWebsocket(prefix: string, atmosphereOptions: Partial<Atmosphere.Request>) {
+  #connectWebsocket(prefix: string, atmosphereOptions: Partial<Atmosphere.Request>, binary: boolean) {
     const extraHeaders = getCsrfTokenHeadersForEndpointRequest(document);
+    // Binary messages are written one per frame, without the length prefix.
+    // They are only sent through websockets, so the connection does not fall
+    // back to long polling, which would expect the length prefix.
+    const binaryOptions: Partial<Atmosphere.Request> = binary
+      ? { fallbackTransport: 'websocket', trackMessageLength: false, webSocketBinaryType: 'arraybuffer' }
+      : {};
+    if (binary) {
+      extraHeaders[PUSH_ENCODING_HEADER] = 'cbor';
+    }
     const pushUrl = 'HILLA/push';
     const url = prefix.length === 0 ? pushUrl : (prefix.endsWith('/') ? prefix : `${prefix}/`) + pushUrl;
     this.#socket = atmosphere.subscribe?.({
@@ -118,8 +136,18 @@ export class FluxConnection extends EventTarget {
         console.error('error in push communication', response);
       },
       onMessage: (response) => {
-        if (response.responseBody) {
-          this.#handleMessage(JSON.parse(response.responseBody));
+        // A binary message may also contain several messages
+        const body: unknown = response.responseBody;
+        if (body instanceof ArrayBuffer) {
+          decodeCborSequence(body).forEach((item) => this.#handleMessage(item));
+        } else if (response.responseBody) {
+          const message: unknown = JSON.parse(response.responseBody);
+          // The server may combine several messages into one batch
+          if (Array.isArray(message)) {
+            message.forEach((item) => this.#handleMessage(item));
+          } else {
+            this.#handleMessage(message);
+          }
         }
       },
       onOpen: (_response: any) => {
@@ -141,12 +169,18 @@ export class FluxConnection extends EventTarget {
       trackMessageLength: true,
       transport: 'websocket',
       url,
+      ...binaryOptions,
       ...atmosphereOptions,
     } satisfies Atmosphere.Request);
   }
 
   #handleMessage(message: unknown) {
     if (isClientMessage(message)) {
+      if (message['@type'] === 'heartbeat') {
+        // Shows the server that the connection is still alive
+        this.#send({ '@type': 'heartbeat' });
+        return;
+      }
       const { id } = message;
       const endpointInfo = this.#endpointInfos.get(id) ?? 'unknown';
 
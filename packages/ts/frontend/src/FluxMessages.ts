@@ -15,7 +15,11 @@ export interface ClientUpdateMessage extends AbstractMessage {
   item: any;
 }
 
-export type ClientMessage = ClientCompleteMessage | ClientErrorMessage | ClientUpdateMessage;
+export interface ClientHeartbeatMessage {
+  '@type': 'heartbeat';
+}
+
+export type ClientMessage = ClientCompleteMessage | ClientErrorMessage | ClientHeartbeatMessage | ClientUpdateMessage;
 
 export function isClientMessage(value: unknown): value is ClientMessage {
   return value != null && typeof value === 'object' && '@type' in value;
@@ -33,4 +37,8 @@ export interface ServerCloseMessage extends AbstractMessage {
   '@type': 'unsubscribe';
 }
 
-export type ServerMessage = ServerCloseMessage | ServerConnectMessage;
+export interface ServerHeartbeatMessage {
+  '@type': 'heartbeat';
+}
+
+export type ServerMessage = ServerCloseMessage | ServerConnectMessage | ServerHeartbeatMessage;
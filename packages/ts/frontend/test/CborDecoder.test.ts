@@ -0,0 +1,63 @@
+import { expect } from '@esm-bundle/chai';
+import { decodeCborSequence } from '../src/CborDecoder.js';
+
+describe('@vaadin/hilla-frontend', () => {
+  describe('CborDecoder', () => {
+    function decode(...bytes: number[]): unknown[] {
+      return decodeCborSequence(new Uint8Array(bytes).buffer);
+    }
+
+    it('should decode integers', () => {
+      expect(decode(0x01, 0x21, 0x18, 0x64, 0x19, 0x03, 0xe8, 0x1a, 0x00, 0x0f, 0x42, 0x40, 0x38, 0x63)).to.eql([
+        1, -2, 100, 1000, 1000000, -100,
+      ]);
+    });
+
+    it('should decode floats', () => {
+      expect(
+        decode(0xf9, 0x3c, 0x00, 0xfa, 0x47, 0xc3, 0x50, 0x00, 0xfb, 0x3f, 0xf8, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00),
+      ).to.eql([1, 100000, 1.5]);
+    });
+
+    it('should decode simple values', () => {
+      expect(decode(0xf4, 0xf5, 0xf6)).to.eql([false, true, null]);
+    });
+
+    it('should decode strings of definite and indefinite length', () => {
+      expect(decode(0x62, 0x68, 0x69, 0x7f, 0x61, 0x61, 0x61, 0x62, 0xff)).to.eql(['hi', 'ab']);
+    });
+
+    it('should decode arrays and maps of definite and indefinite length', () => {
+      expect(decode(0x82, 0x01, 0x02, 0x9f, 0x03, 0xff, 0xa1, 0x61, 0x61, 0x01, 0xbf, 0x61, 0x62, 0x80, 0xff)).to.eql([
+        [1, 2],
+        [3],
+        { a: 1 },
+        { b: [] },
+      ]);
+    });
+
+    it('should decode bignums as numbers', () => {
+      expect(decode(0xc2, 0x42, 0x01, 0x00, 0xc3, 0x41, 0x01)).to.eql([256, -2]);
+    });
+
+    it('should decode decimal fractions and bigfloats as numbers', () => {
+      // 123.45 and 1.5E+3 as written for a BigDecimal, 123.45 with a bignum mantissa, and 3 * 2^-1
+      const decimals = [0xc4, 0x82, 0x21, 0x19, 0x30, 0x39, 0xc4, 0x82, 0x02, 0x0f];
+      const bignumDecimal = [0xc4, 0x82, 0x21, 0xc2, 0x42, 0x30, 0x39];
+      const bigfloat = [0xc5, 0x82, 0x20, 0x03];
+      expect(decode(...decimals, ...bignumDecimal, ...bigfloat)).to.eql([123.45, 1500, 123.45, 1.5]);
+    });
+
+    it('should decode byte strings as Base64 strings', () => {
+      expect(decode(0x43, 0x01, 0x02, 0x03, 0x5f, 0x41, 0xff, 0x41, 0x00, 0xff, 0xa1, 0x61, 0x62, 0x40)).to.eql([
+        'AQID',
+        '/wA=',
+        { b: '' },
+      ]);
+    });
+
+    it('should fail on truncated data', () => {
+      expect(() => decode(0x82, 0x01)).to.throw('Unexpected end of CBOR data');
+    });
+  });
+});
@@ -585,6 +585,118 @@ describe('@vaadin/hilla-frontend', () => {
       });
     });
 
+    describe('batching', () => {
+      let client: ConnectClient;
+
+      beforeEach(() => {
+        client = new ConnectClient({ batch: true });
+      });
+
+      afterEach(() => {
+        fetchMock.restore();
+      });
+
+      it('should send the calls made together in a single request', async () => {
+        fetchMock.post(`${base}/connect/batch`, [
+          { status: 200, result: 'foo' },
+          { status: 200, result: { bar: 1 } },
+        ]);
+
+        const results = await Promise.all([
+          client.call('FooEndpoint', 'fooMethod', { fooParam: 'foo' }),
+          client.call('BarEndpoint', 'barMethod'),
+        ]);
+
+        expect(results).to.deep.equal(['foo', { bar: 1 }]);
+        expect(fetchMock.calls()).to.have.lengthOf(1);
+        const body = await fetchMock.lastOptions()?.body;
+        expect(JSON.parse(body as string)).to.deep.equal([
+          { endpoint: 'FooEndpoint', method: 'fooMethod', params: { fooParam: 'foo' } },
+          { endpoint: 'BarEndpoint', method: 'barMethod', params: null },
+        ]);
+      });
+
+      it('should reject only the failed calls of a batch', async () => {
+        fetchMock.post(`${base}/connect/batch`, [
+          { status: 200, result: 'foo' },
+          { status: 400, error: { message: 'Something bad happened', type: 'java.lang.IllegalStateException' } },
+        ]);
+
+        const [foo, bar] = await Promise.allSettled([
+          client.call('FooEndpoint', 'fooMethod'),
+          client.call('BarEndpoint', 'barMethod'),
+        ]);
+
+        expect(foo).to.deep.equal({ status: 'fulfilled', value: 'foo' });
+        expect(bar.status).to.equal('rejected');
+        expect((bar as PromiseRejectedResult).reason)
+          .to.be.instanceOf(EndpointError)
+          .and.have.property('message', 'Something bad happened');
+      });
+
+      it('should send a single call as a regular request', async () => {
+        fetchMock.post(`${base}/connect/FooEndpoint/fooMethod`, { fooData: 'foo' });
+
+        const result = await client.call('FooEndpoint', 'fooMethod');
+
+        expect(result).to.deep.equal({ fooData: 'foo' });
+        expect(fetchMock.calls()).to.have.lengthOf(1);
+      });
+
+      it('should not batch calls whose request was changed by a middleware', async () => {
+        fetchMock.post(`${base}/connect/FooEndpoint/fooMethod`, { fooData: 'foo' });
+        fetchMock.post(`${base}/connect/BarEndpoint/barMethod`, { barData: 'bar' });
+        fetchMock.post(`${base}/connect/batch`, [
+          { status: 200, result: 'baz' },
+          { status: 200, result: 'qux' },
+        ]);
+
+        client.middlewares = [
+          async (context, next) => {
+            if (context.method === 'fooMethod') {
+              context.request.headers.set('X-Foo', 'foo');
+            } else if (context.method === 'barMethod') {
+              context.request = new Request(context.request, { body: '{"changed":true}' });
+            }
+            return next(context);
+          },
+        ];
+
+        const results = await Promise.all([
+          client.call('FooEndpoint', 'fooMethod'),
+          client.call('BarEndpoint', 'barMethod'),
+          client.call('BazEndpoint', 'bazMethod'),
+          client.call('QuxEndpoint', 'quxMethod'),
+        ]);
+
+        expect(results).to.deep.equal([{ fooData: 'foo' }, { barData: 'bar' }, 'baz', 'qux']);
+        expect(fetchMock.lastOptions(`${base}/connect/FooEndpoint/fooMethod`)?.headers).to.deep.include({
+          'x-foo': 'foo',
+        });
+        expect(await fetchMock.lastOptions(`${base}/connect/BarEndpoint/barMethod`)?.body).to.equal(
+          '{"changed":true}',
+        );
+        const body = await fetchMock.lastOptions(`${base}/connect/batch`)?.body;
+        expect(JSON.parse(body as string)).to.deep.equal([
+          { endpoint: 'BazEndpoint', method: 'bazMethod', params: null },
+          { endpoint: 'QuxEndpoint', method: 'quxMethod', params: null },
+        ]);
+      });
+
+      it('should not batch calls with an abort signal', async () => {
+        fetchMock.post(`${base}/connect/FooEndpoint/fooMethod`, { fooData: 'foo' });
+        fetchMock.post(`${base}/connect/BarEndpoint/barMethod`, { barData: 'bar' });
+
+        await Promise.all([
+          client.call('FooEndpoint', 'fooMethod', undefined, { signal: new AbortController().signal }),
+          client.call('BarEndpoint', 'barMethod', undefined, { signal: new AbortController().signal }),
+        ]);
+
+        expect(fetchMock.calls()).to.have.lengthOf(2);
+        expect(fetchMock.called(`${base}/connect/batch`)).to.be.false;
+      });
+    });
+
     describe('subscribe method', () => {
       let client: ConnectClient;
 
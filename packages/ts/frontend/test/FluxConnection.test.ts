@@ -6,6 +6,7 @@ import type {
   AbstractMessage,
   ClientCompleteMessage,
   ClientErrorMessage,
+  ClientHeartbeatMessage,
   ClientUpdateMessage,
 } from '../src/FluxMessages.js';
 import { getSubscriptionEventSpies, subscribeStub } from './mocks/atmosphere.js';
@@ -93,6 +94,58 @@ describe('@vaadin/hilla-frontend', () => {
       expect(receivedValues[0]).to.eql({ foo: 'bar' });
     });
 
+    it('should handle each message of a batch in order', () => {
+      const sub = fluxConnection.subscribe('MyEndpoint', 'myMethod');
+      const receivedValues: any[] = [];
+      sub.onNext((value: any) => {
+        receivedValues.push(value);
+      });
+      const onComplete = sinon.stub();
+      sub.onComplete(onComplete);
+      const batch: Array<ClientCompleteMessage | ClientUpdateMessage> = [
+        { '@type': 'update', id: '0', item: 1 },
+        { '@type': 'update', id: '0', item: 2 },
+        { '@type': 'complete', id: '0' },
+      ];
+      getSubscriptionEventSpies()?.onMessage?.({ responseBody: JSON.stringify(batch) });
+      expect(receivedValues).to.eql([1, 2]);
+      expect(onComplete).to.have.been.calledOnce;
+    });
+
+    it('should decode binary messages', () => {
+      const sub = fluxConnection.subscribe('MyEndpoint', 'myMethod');
+      const receivedValues: any[] = [];
+      sub.onNext((value: any) => {
+        receivedValues.push(value);
+      });
+      // Two CBOR encoded messages: {"@type":"update","id":"0","item":1} {"@type":"update","id":"0","item":2}
+      const message = [0xbf, 0x65, 0x40, 0x74, 0x79, 0x70, 0x65, 0x66, 0x75, 0x70, 0x64, 0x61, 0x74, 0x65];
+      const bytes = new Uint8Array([
+        ...message,
+        ...[0x62, 0x69, 0x64, 0x61, 0x30, 0x64, 0x69, 0x74, 0x65, 0x6d, 0x01, 0xff],
+        ...message,
+        ...[0x62, 0x69, 0x64, 0x61, 0x30, 0x64, 0x69, 0x74, 0x65, 0x6d, 0x02, 0xff],
+      ]);
+      getSubscriptionEventSpies()?.onMessage?.({ responseBody: bytes.buffer } as unknown as Atmosphere.Response);
+      expect(receivedValues).to.eql([1, 2]);
+    });
+
+    it('should ask for binary messages when enabled', () => {
+      subscribeStub.resetHistory();
+      fluxConnection = new FluxConnection('/connect', {}, true);
+      const request = subscribeStub.lastCall.firstArg;
+      expect(request).to.have.nested.property('headers.X-Hilla-Push-Encoding').which.equals('cbor');
+      expect(request).to.have.property('trackMessageLength').which.equals(false);
+      expect(request).to.have.property('webSocketBinaryType').which.equals('arraybuffer');
+      expect(request).to.have.property('fallbackTransport').which.equals('websocket');
+    });
+
+    it('should reply to a heartbeat of the server', () => {
+      const heartbeat: ClientHeartbeatMessage = { '@type': 'heartbeat' };
+      getSubscriptionEventSpies()?.onMessage?.({ responseBody: JSON.stringify(heartbeat) });
+      expect(getSubscriptionEventSpies()?.push).to.have.been.calledWith(JSON.stringify({ '@type': 'heartbeat' }));
+    });
+
     it('should call onComplete when receiving a server message', () => {
       const sub = fluxConnection.subscribe('MyEndpoint', 'myMethod');
       const onComplete = sinon.stub();